@@ -12,8 +12,10 @@
 package apgas;
 
 import java.io.Serializable;
+import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * The {@link Constructs} class defines the APGAS constructs by means of static
@@ -78,6 +80,22 @@ public final class Constructs {
 		GlobalRuntime.getRuntimeImpl().asyncAt(p, f);
 	}
 
+	/**
+	 * Submits a task with body {@code f} to each {@link Place} of the given
+	 * collection and returns immediately.
+	 * <p>
+	 * Unlike a loop of {@link #asyncAt(Place, SerializableJob)} calls, {@code f}
+	 * is serialized only once and forwarded along a tree spanning the places. The
+	 * tasks are governed by the enclosing finish. Dead places are reported to the
+	 * enclosing finish rather than thrown.
+	 *
+	 * @param places the places of execution, with no repetition
+	 * @param f      the function to run
+	 */
+	public static void asyncAtAll(Collection<? extends Place> places, SerializableJob f) {
+		GlobalRuntime.getRuntimeImpl().asyncAtAll(places, f);
+	}
+
 	/**
 	 * Submits an uncounted task to the global runtime to be run at {@link Place}
 	 * {@code p} with body {@code f} and returns immediately. The termination of
@@ -106,6 +124,26 @@ public final class Constructs {
 		return GlobalRuntime.getRuntimeImpl().at(p, f);
 	}
 
+	/**
+	 * Evaluates {@code f} at {@link Place} {@code p} and returns immediately a
+	 * future of the result.
+	 * <p>
+	 * Unlike {@link #at(Place, SerializableCallable)}, the evaluation is not
+	 * governed by a finish: the tasks spawned by {@code f} are not awaited. The
+	 * future completes exceptionally if {@code f} throws an exception or if place
+	 * {@code p} dies.
+	 *
+	 * @param <SerializableT> the type of the result (must implement
+	 *                        java.io.Serializable)
+	 * @param p               the place of execution
+	 * @param f               the function to run
+	 * @return the future of the result
+	 */
+	public static <SerializableT extends Serializable> CompletableFuture<SerializableT> asyncAtFuture(Place p,
+			SerializableCallable<SerializableT> f) {
+		return GlobalRuntime.getRuntimeImpl().asyncAtFuture(p, f);
+	}
+
 	/**
 	 * Runs {@code f} at {@link Place} {@code p} and waits for all the tasks
 	 * transitively spawned by {@code f}.
@@ -86,6 +86,26 @@ public abstract class GlobalRuntime {
 	 */
 	public abstract ExecutorService getExecutorService();
 
+	/**
+	 * Sets the number of worker threads the current place keeps active.
+	 * <p>
+	 * The value is bounded by 1 and {@code apgas.max.threads}. Workers blocked in
+	 * a finish or an {@code at} are still compensated for by the runtime. The
+	 * change only affects the current place and is subject to later adjustments
+	 * if the adaptive controller is enabled ({@code apgas.adaptive}).
+	 *
+	 * @param parallelism the desired parallelism
+	 * @return the parallelism actually set
+	 */
+	public abstract int setParallelism(int parallelism);
+
+	/**
+	 * Returns the number of worker threads the current place keeps active.
+	 *
+	 * @return the current parallelism
+	 */
+	public abstract int getParallelism();
+
 	/**
 	 * Initializes the global runtime.
 	 *
@@ -12,16 +12,36 @@
 package apgas;
 
 import java.util.Collection;
+import java.util.Map;
 
 /**
  * A {@link MultipleException} is thrown by the {@code finish} construct upon
  * termination when the code or tasks in its scope have uncaught exceptions. The
  * uncaught exceptions may be retrieved using the {@link #getSuppressed()}
  * method of this {@link MultipleException}.
+ * <p>
+ * Identical exceptions, i.e., exceptions with the same type, message, and stack
+ * trace, may be collapsed into a single suppressed exception. The number of
+ * occurrences of each suppressed exception is returned by
+ * {@link #getOccurrences(Throwable)}. If too many distinct exceptions are
+ * thrown, the excess exceptions are only counted by {@link #getOmitted()}.
  */
 public class MultipleException extends RuntimeException {
   private static final long serialVersionUID = 5931977184541245168L;
 
+  /**
+   * The occurrence counts of the suppressed exceptions thrown more than once.
+   * <p>
+   * Null if no exception was thrown more than once. Otherwise, the map is
+   * serialized with this exception, e.g., when it is rethrown at another place.
+   */
+  private Map<Throwable, Integer> occurrences;
+
+  /**
+   * The number of exceptions omitted from the suppressed exceptions.
+   */
+  private long omitted;
+
   /**
    * Constructs a new {@link MultipleException} from the specified
    * {@code exceptions}.
@@ -54,4 +74,50 @@ public class MultipleException extends RuntimeException {
     }
     return new DeadPlacesException(exceptions);
   }
+
+  /**
+   * Makes a new {@link MultipleException} from the specified deduplicated
+   * {@code exceptions}.
+   *
+   * @param exceptions
+   *          the distinct uncaught exceptions that contributed to this
+   *          {@code MultipleException}
+   * @param occurrences
+   *          the occurrence counts of the exceptions thrown more than once
+   * @param omitted
+   *          the number of uncaught exceptions not included in
+   *          {@code exceptions}
+   * @return the exception
+   * @see #make(Collection)
+   */
+  public static MultipleException make(Collection<Throwable> exceptions,
+      Map<Throwable, Integer> occurrences, long omitted) {
+    final MultipleException e = make(exceptions);
+    e.occurrences = occurrences;
+    e.omitted = omitted;
+    return e;
+  }
+
+  /**
+   * Returns the number of times the specified suppressed exception or
+   * exceptions identical to it were thrown.
+   *
+   * @param t
+   *          one of the suppressed exceptions
+   * @return the occurrence count
+   */
+  public int getOccurrences(Throwable t) {
+    final Integer count = occurrences == null ? null : occurrences.get(t);
+    return count == null ? 1 : count;
+  }
+
+  /**
+   * Returns the number of uncaught exceptions that were only counted because
+   * the number of distinct exceptions exceeded the configured bound.
+   *
+   * @return the number of omitted exceptions
+   */
+  public long getOmitted() {
+    return omitted;
+  }
 }
@@ -0,0 +1,497 @@
+/*
+ *  This file is part of the X10 project (http://x10-lang.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  (C) Copyright IBM Corporation 2006-2016.
+ */
+
+package apgas.collectives;
+
+import static apgas.Constructs.asyncAtAll;
+import static apgas.Constructs.at;
+import static apgas.Constructs.finish;
+import static apgas.Constructs.here;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import apgas.Constructs;
+import apgas.Place;
+import apgas.impl.GlobalRuntimeImpl;
+import apgas.impl.SerializableRunnable;
+import apgas.util.PlaceLocalObject;
+
+/**
+ * The {@link Clock} class implements X10-style clocks.
+ * <p>
+ * A clock synchronizes the activities registered with it in phases. A call to
+ * {@link #advance()} blocks until every registered activity has advanced or
+ * dropped the clock, at which point the clock moves to the next phase.
+ * <p>
+ * A {@link Clock} instance is the registration of one activity and must not be
+ * shared. The activity creating the clock is registered with it. A registered
+ * activity spawns clocked activities with {@link #async(Job)} and
+ * {@link #asyncAt(Place, Job)}. These activities are registered in the current
+ * phase of the spawning activity and drop the clock upon termination.
+ * <p>
+ * Clocked activities may run at any place in the list of places of the clock.
+ * Each place counts the arrivals of its local activities, and the places
+ * combine their counts along a binary tree. The last arrival of a phase
+ * triggers a notification down the tree. Advancing the clock therefore takes a
+ * logarithmic number of message rounds.
+ */
+public final class Clock {
+  /**
+   * A clocked activity.
+   */
+  @FunctionalInterface
+  public interface Job extends Serializable {
+    /**
+     * Runs the activity.
+     *
+     * @param clock
+     *          the registration of the activity with the clock
+     * @throws Exception
+     *           if the activity throws an exception
+     */
+    void run(Clock clock) throws Exception;
+  }
+
+  /**
+   * The state of the clock at the current place.
+   */
+  private final State state;
+
+  /**
+   * The place counting this registration in the current phase.
+   */
+  private Place home;
+
+  /**
+   * The current phase of this registration.
+   */
+  private long phase;
+
+  /**
+   * Whether this registration has been dropped.
+   */
+  private boolean dropped;
+
+  private Clock(State state, Place home, long phase) {
+    this.state = state;
+    this.home = home;
+    this.phase = phase;
+  }
+
+  /**
+   * Returns the current phase of this activity.
+   *
+   * @return the number of phases completed by this activity
+   */
+  public long phase() {
+    return phase;
+  }
+
+  /**
+   * Returns true if this activity has dropped the clock.
+   *
+   * @return true if dropped
+   */
+  public boolean dropped() {
+    return dropped;
+  }
+
+  /**
+   * Registers a new activity with the clock in the current phase of this
+   * activity.
+   * <p>
+   * The returned registration must be handed to exactly one local activity,
+   * which must eventually advance or drop it.
+   *
+   * @return the new registration
+   * @throws IllegalStateException
+   *           if this activity has dropped the clock
+   */
+  public Clock register() {
+    final Clock clock = enroll();
+    if (!home.equals(here())) {
+      state.defer(1);
+    }
+    return clock;
+  }
+
+  /**
+   * Spawns a clocked activity at the current place.
+   *
+   * @param job
+   *          the activity
+   * @throws IllegalStateException
+   *           if this activity has dropped the clock
+   */
+  public void async(Job job) {
+    asyncAt(here(), job);
+  }
+
+  /**
+   * Spawns a clocked activity at the specified place.
+   * <p>
+   * The activity is registered in the current phase of this activity and is
+   * tracked by the enclosing finish.
+   *
+   * @param p
+   *          the place of execution, which must belong to the clock
+   * @param job
+   *          the activity
+   * @throws IllegalStateException
+   *           if this activity has dropped the clock
+   */
+  public void asyncAt(Place p, Job job) {
+    enroll();
+    final State s = state;
+    final Place h = home;
+    final long k = phase;
+    try {
+      Constructs.asyncAt(p, () -> s.adopt(h, k).run(job));
+    } catch (final RuntimeException e) {
+      if (h.equals(here())) {
+        state.deregister();
+      } else {
+        send(h, () -> s.deregister());
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Blocks until all the activities registered with the clock have advanced
+   * or dropped the clock in the current phase.
+   *
+   * @throws IllegalStateException
+   *           if this activity has dropped the clock
+   */
+  public void advance() {
+    check();
+    final long k = phase;
+    if (home.equals(here())) {
+      state.arrive();
+    } else {
+      final State s = state;
+      send(home, () -> s.arriveAndLeave());
+      home = here();
+    }
+    state.await(k);
+    phase = k + 1;
+  }
+
+  /**
+   * Deregisters this activity from the clock. Does nothing if this activity
+   * has already dropped the clock.
+   */
+  public void drop() {
+    if (dropped) {
+      return;
+    }
+    dropped = true;
+    if (home.equals(here())) {
+      state.deregister();
+    } else {
+      final State s = state;
+      state.defer(-1);
+      send(home, () -> s.deregister());
+    }
+  }
+
+  /**
+   * Counts a new registration at the place counting this registration.
+   *
+   * @return the new registration
+   */
+  private Clock enroll() {
+    check();
+    if (home.equals(here())) {
+      state.register();
+    } else {
+      final State s = state;
+      at(home, () -> s.register());
+    }
+    return new Clock(state, home, phase);
+  }
+
+  private void run(Job job) throws Exception {
+    try {
+      job.run(this);
+    } finally {
+      drop();
+    }
+  }
+
+  private void check() {
+    if (dropped) {
+      throw new IllegalStateException("clock dropped");
+    }
+  }
+
+  private static void send(Place p, SerializableRunnable f) {
+    GlobalRuntimeImpl.getRuntime().immediateAsyncAt(p, f);
+  }
+
+  /**
+   * Constructs a new clock and registers the current activity with it.
+   *
+   * @param places
+   *          the places of the clock, with no repetition, including the current
+   *          place
+   * @return the registration of the current activity
+   */
+  public static Clock make(List<? extends Place> places) {
+    final ArrayList<Place> list = new ArrayList<>(places);
+    final Place creator = here();
+    if (!list.contains(creator)) {
+      throw new IllegalArgumentException(creator + " does not belong to "
+          + list);
+    }
+    final State state = PlaceLocalObject.make(list,
+        () -> new State(list, creator));
+    finish(() -> asyncAtAll(list, () -> state.progress()));
+    return new Clock(state, creator, 0);
+  }
+
+  /**
+   * The state of a clock at one place.
+   * <p>
+   * A place is ready when all the registrations it counts have arrived in the
+   * current phase and all its children in the tree are ready. A ready place
+   * reports to its parent the number of registrations of its subtree for the
+   * next phase. Once the root is ready, the phase is complete. The clock
+   * terminates when no registration remains.
+   * <p>
+   * A clocked activity spawned at a remote place stays counted by the place
+   * of its parent for the current phase if its own place has already reported.
+   * Its first arrival is then sent to the place of its parent and it is
+   * counted locally from the next phase on.
+   */
+  static final class State extends PlaceLocalObject {
+    /**
+     * The places of the clock.
+     */
+    private final List<Place> places;
+
+    /**
+     * The rank of this place in the list of places.
+     */
+    private final int rank;
+
+    /**
+     * The number of children of this place in the tree.
+     */
+    private final int children;
+
+    /**
+     * The current phase of this place.
+     */
+    private long phase;
+
+    /**
+     * The number of registrations counted here in the current phase.
+     */
+    private long registered;
+
+    /**
+     * The number of arrivals counted here in the current phase.
+     */
+    private long arrived;
+
+    /**
+     * The number of registrations added here for the next phase.
+     */
+    private long next;
+
+    /**
+     * The number of registrations counted here in the current phase that are
+     * counted elsewhere from the next phase on.
+     */
+    private long leaving;
+
+    /**
+     * The number of children ready in the current phase.
+     */
+    private int ready;
+
+    /**
+     * The number of registrations of the ready subtrees for the next phase.
+     */
+    private long total;
+
+    /**
+     * Whether this place has reported to its parent in the current phase.
+     */
+    private boolean reported;
+
+    State(List<Place> places, Place creator) {
+      this.places = places;
+      rank = places.indexOf(here());
+      children = Math.max(0, Math.min(2, places.size() - 2 * rank - 1));
+      registered = here().equals(creator) ? 1 : 0;
+    }
+
+    synchronized void register() {
+      registered++;
+    }
+
+    synchronized void defer(int delta) {
+      next += delta;
+    }
+
+    /**
+     * Registers an activity spawned by an activity counted by place
+     * {@code home} in phase {@code k}.
+     *
+     * @param home
+     *          the place counting the registration
+     * @param k
+     *          the phase of the registration
+     * @return the registration of the activity
+     */
+    Clock adopt(Place home, long k) {
+      await(k - 1);
+      final Place here = here();
+      if (home.equals(here)) {
+        return new Clock(this, here, k);
+      }
+      synchronized (this) {
+        if (reported) {
+          next++;
+          return new Clock(this, home, k);
+        }
+        registered++;
+      }
+      final State s = this;
+      send(home, () -> s.deregister());
+      return new Clock(this, here, k);
+    }
+
+    void arrive() {
+      synchronized (this) {
+        arrived++;
+      }
+      progress();
+    }
+
+    void arriveAndLeave() {
+      synchronized (this) {
+        arrived++;
+        leaving++;
+      }
+      progress();
+    }
+
+    void deregister() {
+      synchronized (this) {
+        registered--;
+      }
+      progress();
+    }
+
+    /**
+     * Blocks until this place completes phase {@code k}.
+     *
+     * @param k
+     *          the phase
+     */
+    void await(long k) {
+      try {
+        ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+          @Override
+          public boolean isReleasable() {
+            synchronized (State.this) {
+              return phase > k;
+            }
+          }
+
+          @Override
+          public boolean block() throws InterruptedException {
+            synchronized (State.this) {
+              while (phase <= k) {
+                State.this.wait();
+              }
+            }
+            return true;
+          }
+        });
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException(e);
+      }
+    }
+
+    /**
+     * Reports to the parent or completes the phase if this place is ready.
+     */
+    void progress() {
+      for (;;) {
+        final long k;
+        final long count;
+        synchronized (this) {
+          if (reported || arrived != registered || ready != children) {
+            return;
+          }
+          reported = true;
+          k = phase;
+          count = total + registered + next;
+        }
+        if (rank > 0) {
+          final State s = this;
+          send(places.get((rank - 1) / 2), () -> s.ready(k, count));
+          return;
+        }
+        if (count == 0) {
+          return;
+        }
+        advance(k);
+      }
+    }
+
+    private void ready(long k, long count) {
+      synchronized (this) {
+        ready++;
+        total += count;
+      }
+      progress();
+    }
+
+    private void complete(long k) {
+      advance(k);
+      progress();
+    }
+
+    /**
+     * Moves this place to the phase after {@code k} and notifies the children.
+     *
+     * @param k
+     *          the completed phase
+     */
+    private void advance(long k) {
+      synchronized (this) {
+        phase = k + 1;
+        registered += next - leaving;
+        arrived = 0;
+        next = 0;
+        leaving = 0;
+        ready = 0;
+        total = 0;
+        reported = false;
+        notifyAll();
+      }
+      final State s = this;
+      for (int c = 2 * rank + 1; c <= 2 * rank + children; c++) {
+        send(places.get(c), () -> s.complete(k));
+      }
+    }
+  }
+}
@@ -0,0 +1,649 @@
+/*
+ *  This file is part of the X10 project (http://x10-lang.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  (C) Copyright IBM Corporation 2006-2016.
+ */
+
+package apgas.collectives;
+
+import static apgas.Constructs.here;
+
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BinaryOperator;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.IntBinaryOperator;
+import java.util.function.LongBinaryOperator;
+
+import apgas.DeadPlaceException;
+import apgas.Place;
+import apgas.impl.GlobalRuntimeImpl;
+import apgas.util.PlaceLocalObject;
+
+/**
+ * The {@link Team} class implements collective operations over a fixed list of
+ * places.
+ * <p>
+ * Collective operations are invoked in SPMD style: every member of the team
+ * must invoke the same operations in the same order, typically from a task
+ * spawned at each member with {@link apgas.Constructs#asyncAtAll}. A team
+ * supports a single collective operation at a time per place.
+ * <p>
+ * Broadcast, reduce, scatter, and gather use binomial trees, allreduce uses
+ * recursive doubling, and barrier uses the dissemination algorithm. Each
+ * operation completes in a logarithmic number of message rounds. Messages are
+ * delivered by immediate tasks and do not require an idle worker at the
+ * receiver.
+ * <p>
+ * Members are identified by their rank, i.e., their index in the list of
+ * places of the team. Combiners must be associative. They are applied to the
+ * contributions in rank order, hence need not be commutative. A combiner may
+ * return one of its arguments but must not modify the other.
+ */
+public class Team extends PlaceLocalObject {
+  /**
+   * The number of bits reserved for the step of an operation in a message key.
+   */
+  private static final int STEP_BITS = 6;
+
+  /**
+   * The step of the messages folding the excess members in allreduce.
+   */
+  private static final int FOLD = 32;
+
+  /**
+   * The step of the messages unfolding the excess members in allreduce.
+   */
+  private static final int UNFOLD = 33;
+
+  /**
+   * The step of the message forwarding the result of reduce to its root.
+   */
+  private static final int FORWARD = 34;
+
+  /**
+   * How long to wait for a message before checking the sender is alive, in
+   * milliseconds.
+   */
+  private static final long TIMEOUT = 1000;
+
+  /**
+   * The members of this team.
+   */
+  private final List<Place> places;
+
+  /**
+   * The rank of this place.
+   */
+  private final int rank;
+
+  /**
+   * The messages received by this place and not consumed yet.
+   */
+  private final Map<Long, Object> mailbox = new HashMap<>();
+
+  /**
+   * The number of collective operations initiated by this place.
+   */
+  private long sequence;
+
+  /**
+   * Initializes the local state of the team.
+   *
+   * @param places
+   *          the members of the team
+   */
+  protected Team(List<Place> places) {
+    this.places = places;
+    rank = places.indexOf(here());
+  }
+
+  /**
+   * Returns the number of members of this team.
+   *
+   * @return the size of the team
+   */
+  public int size() {
+    return places.size();
+  }
+
+  /**
+   * Returns the rank of this place in this team.
+   *
+   * @return the rank
+   */
+  public int rank() {
+    return rank;
+  }
+
+  /**
+   * Returns the members of this team indexed by rank.
+   *
+   * @return the list of places
+   */
+  public List<Place> places() {
+    return Collections.unmodifiableList(places);
+  }
+
+  /**
+   * Waits until all members of this team have invoked this method.
+   */
+  public void barrier() {
+    final long tag = next();
+    final int n = places.size();
+    for (int k = 1, step = 0; k < n; k <<= 1, step++) {
+      send((rank + k) % n, tag, step, null);
+      receive((rank - k + n) % n, tag, step);
+    }
+  }
+
+  /**
+   * Returns the value contributed by the root at every member.
+   *
+   * @param <T>
+   *          the type of the value
+   * @param root
+   *          the rank of the root
+   * @param value
+   *          the value to broadcast, ignored at other members
+   * @return the value of the root
+   */
+  @SuppressWarnings("unchecked")
+  public <T extends Serializable> T broadcast(int root, T value) {
+    final long tag = next();
+    final int n = places.size();
+    final int vr = (rank - root + n) % n;
+    Object v = value;
+    int mask = 1;
+    while (mask < n) {
+      if ((vr & mask) != 0) {
+        v = receive((vr - mask + root) % n, tag, step(mask));
+        break;
+      }
+      mask <<= 1;
+    }
+    for (mask >>= 1; mask > 0; mask >>= 1) {
+      if (vr + mask < n) {
+        send((vr + mask + root) % n, tag, step(mask), v);
+      }
+    }
+    return (T) v;
+  }
+
+  /**
+   * Combines the values contributed by all members at the root.
+   *
+   * @param <T>
+   *          the type of the values
+   * @param root
+   *          the rank of the root
+   * @param value
+   *          the contribution of this place
+   * @param op
+   *          the associative combiner
+   * @return the combined value at the root, null at other members
+   */
+  public <T extends Serializable> T reduce(int root, T value,
+      BinaryOperator<T> op) {
+    final long tag = next();
+    final T v = combine(tag, value, op);
+    if (root == 0) {
+      return v;
+    } else if (rank == 0) {
+      send(root, tag, FORWARD, v);
+    } else if (rank == root) {
+      @SuppressWarnings("unchecked")
+      final T result = (T) receive(0, tag, FORWARD);
+      return result;
+    }
+    return null;
+  }
+
+  /**
+   * Combines the values contributed by all members at every member.
+   *
+   * @param <T>
+   *          the type of the values
+   * @param value
+   *          the contribution of this place
+   * @param op
+   *          the associative combiner
+   * @return the combined value
+   */
+  @SuppressWarnings("unchecked")
+  public <T extends Serializable> T allreduce(T value, BinaryOperator<T> op) {
+    final long tag = next();
+    final int n = places.size();
+    final int p = Integer.highestOneBit(n);
+    final int excess = n - p;
+    // fold pairs of adjacent members until the number of members is a power
+    // of two, preserving rank order
+    T v = value;
+    int vr = rank - excess;
+    if (rank < 2 * excess) {
+      if (rank % 2 == 0) {
+        send(rank + 1, tag, FOLD, v);
+        vr = -1;
+      } else {
+        v = op.apply((T) receive(rank - 1, tag, FOLD), v);
+        vr = rank / 2;
+      }
+    }
+    if (vr >= 0) {
+      for (int mask = 1; mask < p; mask <<= 1) {
+        final int peer = vr ^ mask;
+        final int dst = peer < excess ? 2 * peer + 1 : peer + excess;
+        send(dst, tag, step(mask), v);
+        final T w = (T) receive(dst, tag, step(mask));
+        v = peer < vr ? op.apply(w, v) : op.apply(v, w);
+      }
+    }
+    if (rank < 2 * excess) {
+      if (rank % 2 == 0) {
+        v = (T) receive(rank + 1, tag, UNFOLD);
+      } else {
+        send(rank - 1, tag, UNFOLD, v);
+      }
+    }
+    return v;
+  }
+
+  /**
+   * Collects the values contributed by all members at the root.
+   *
+   * @param <T>
+   *          the type of the values
+   * @param root
+   *          the rank of the root
+   * @param value
+   *          the contribution of this place
+   * @return the values indexed by rank at the root, null at other members
+   */
+  @SuppressWarnings("unchecked")
+  public <T extends Serializable> List<T> gather(int root, T value) {
+    final long tag = next();
+    final int n = places.size();
+    final int vr = (rank - root + n) % n;
+    final ArrayList<Object> block = new ArrayList<>();
+    block.add(value);
+    for (int mask = 1; mask < n; mask <<= 1) {
+      if ((vr & mask) != 0) {
+        send((vr - mask + root) % n, tag, step(mask), block);
+        return null;
+      }
+      if (vr + mask < n) {
+        block.addAll((List<Object>) receive((vr + mask + root) % n, tag,
+            step(mask)));
+      }
+    }
+    final List<T> result = new ArrayList<>(n);
+    for (int r = 0; r < n; r++) {
+      result.add((T) block.get((r - root + n) % n));
+    }
+    return result;
+  }
+
+  /**
+   * Distributes a list of values from the root to all members.
+   *
+   * @param <T>
+   *          the type of the values
+   * @param root
+   *          the rank of the root
+   * @param values
+   *          the values indexed by rank, ignored at other members
+   * @return the value for this place
+   */
+  @SuppressWarnings("unchecked")
+  public <T extends Serializable> T scatter(int root,
+      List<? extends T> values) {
+    final long tag = next();
+    final int n = places.size();
+    final int vr = (rank - root + n) % n;
+    Object[] block = null;
+    if (vr == 0) {
+      if (values.size() != n) {
+        throw new IllegalArgumentException(
+            values.size() + " values for " + n + " members");
+      }
+      block = new Object[n];
+      for (int r = 0; r < n; r++) {
+        block[(r - root + n) % n] = values.get(r);
+      }
+    }
+    int mask = 1;
+    while (mask < n) {
+      if ((vr & mask) != 0) {
+        block = (Object[]) receive((vr - mask + root) % n, tag, step(mask));
+        break;
+      }
+      mask <<= 1;
+    }
+    for (mask >>= 1; mask > 0; mask >>= 1) {
+      if (vr + mask < n) {
+        send((vr + mask + root) % n, tag, step(mask),
+            Arrays.copyOfRange(block, mask, block.length));
+        block = Arrays.copyOf(block, mask);
+      }
+    }
+    return (T) block[0];
+  }
+
+  /**
+   * Computes the element-wise combination of the arrays contributed by all
+   * members at the root, in place.
+   *
+   * @param root
+   *          the rank of the root
+   * @param values
+   *          the contribution of this place, replaced by the result at the
+   *          root
+   * @param op
+   *          the associative combiner
+   */
+  public void reduce(int root, double[] values, DoubleBinaryOperator op) {
+    copy(reduce(root, values, combiner(op)), values);
+  }
+
+  /**
+   * Computes the element-wise combination of the arrays contributed by all
+   * members at the root, in place.
+   *
+   * @param root
+   *          the rank of the root
+   * @param values
+   *          the contribution of this place, replaced by the result at the
+   *          root
+   * @param op
+   *          the associative combiner
+   */
+  public void reduce(int root, long[] values, LongBinaryOperator op) {
+    copy(reduce(root, values, combiner(op)), values);
+  }
+
+  /**
+   * Computes the element-wise combination of the arrays contributed by all
+   * members at the root, in place.
+   *
+   * @param root
+   *          the rank of the root
+   * @param values
+   *          the contribution of this place, replaced by the result at the
+   *          root
+   * @param op
+   *          the associative combiner
+   */
+  public void reduce(int root, int[] values, IntBinaryOperator op) {
+    copy(reduce(root, values, combiner(op)), values);
+  }
+
+  /**
+   * Computes the element-wise combination of the arrays contributed by all
+   * members at every member, in place.
+   *
+   * @param values
+   *          the contribution of this place, replaced by the result
+   * @param op
+   *          the associative combiner
+   */
+  public void allreduce(double[] values, DoubleBinaryOperator op) {
+    copy(allreduce(values, combiner(op)), values);
+  }
+
+  /**
+   * Computes the element-wise combination of the arrays contributed by all
+   * members at every member, in place.
+   *
+   * @param values
+   *          the contribution of this place, replaced by the result
+   * @param op
+   *          the associative combiner
+   */
+  public void allreduce(long[] values, LongBinaryOperator op) {
+    copy(allreduce(values, combiner(op)), values);
+  }
+
+  /**
+   * Computes the element-wise combination of the arrays contributed by all
+   * members at every member, in place.
+   *
+   * @param values
+   *          the contribution of this place, replaced by the result
+   * @param op
+   *          the associative combiner
+   */
+  public void allreduce(int[] values, IntBinaryOperator op) {
+    copy(allreduce(values, combiner(op)), values);
+  }
+
+  /**
+   * Combines the values contributed by all members at every member.
+   *
+   * @param value
+   *          the contribution of this place
+   * @param op
+   *          the associative combiner
+   * @return the combined value
+   */
+  public double allreduce(double value, DoubleBinaryOperator op) {
+    return allreduce(new double[] { value }, combiner(op))[0];
+  }
+
+  /**
+   * Combines the values contributed by all members at every member.
+   *
+   * @param value
+   *          the contribution of this place
+   * @param op
+   *          the associative combiner
+   * @return the combined value
+   */
+  public long allreduce(long value, LongBinaryOperator op) {
+    return allreduce(new long[] { value }, combiner(op))[0];
+  }
+
+  /**
+   * Combines the values contributed by all members at every member.
+   *
+   * @param value
+   *          the contribution of this place
+   * @param op
+   *          the associative combiner
+   * @return the combined value
+   */
+  public int allreduce(int value, IntBinaryOperator op) {
+    return allreduce(new int[] { value }, combiner(op))[0];
+  }
+
+  /**
+   * Combines the values of all members along a binomial tree rooted at rank 0.
+   *
+   * @param <T>
+   *          the type of the values
+   * @param tag
+   *          the tag of the operation
+   * @param value
+   *          the contribution of this place
+   * @param op
+   *          the associative combiner
+   * @return the combined value at rank 0, null at other members
+   */
+  @SuppressWarnings("unchecked")
+  private <T extends Serializable> T combine(long tag, T value,
+      BinaryOperator<T> op) {
+    final int n = places.size();
+    T v = value;
+    for (int mask = 1; mask < n; mask <<= 1) {
+      if ((rank & mask) != 0) {
+        send(rank - mask, tag, step(mask), v);
+        return null;
+      }
+      if (rank + mask < n) {
+        v = op.apply(v, (T) receive(rank + mask, tag, step(mask)));
+      }
+    }
+    return v;
+  }
+
+  private static BinaryOperator<double[]> combiner(DoubleBinaryOperator op) {
+    return (a, b) -> {
+      check(a.length, b.length);
+      final double[] c = new double[a.length];
+      for (int i = 0; i < c.length; i++) {
+        c[i] = op.applyAsDouble(a[i], b[i]);
+      }
+      return c;
+    };
+  }
+
+  private static BinaryOperator<long[]> combiner(LongBinaryOperator op) {
+    return (a, b) -> {
+      check(a.length, b.length);
+      final long[] c = new long[a.length];
+      for (int i = 0; i < c.length; i++) {
+        c[i] = op.applyAsLong(a[i], b[i]);
+      }
+      return c;
+    };
+  }
+
+  private static BinaryOperator<int[]> combiner(IntBinaryOperator op) {
+    return (a, b) -> {
+      check(a.length, b.length);
+      final int[] c = new int[a.length];
+      for (int i = 0; i < c.length; i++) {
+        c[i] = op.applyAsInt(a[i], b[i]);
+      }
+      return c;
+    };
+  }
+
+  private static void check(int a, int b) {
+    if (a != b) {
+      throw new IllegalArgumentException(
+          "arrays of different lengths: " + a + ", " + b);
+    }
+  }
+
+  private static void copy(Object result, Object values) {
+    if (result != null && result != values) {
+      System.arraycopy(result, 0, values, 0, Array.getLength(values));
+    }
+  }
+
+  private static int step(int mask) {
+    return Integer.numberOfTrailingZeros(mask);
+  }
+
+  /**
+   * Returns the tag of a new collective operation.
+   *
+   * @return the tag
+   */
+  private long next() {
+    return sequence++ << STEP_BITS;
+  }
+
+  /**
+   * Sends a message to a member of this team.
+   *
+   * @param dst
+   *          the rank of the destination
+   * @param tag
+   *          the tag of the operation
+   * @param step
+   *          the step of the operation
+   * @param value
+   *          the message
+   */
+  private void send(int dst, long tag, int step, Object value) {
+    final long key = tag | step;
+    GlobalRuntimeImpl.getRuntime().immediateAsyncAt(places.get(dst),
+        () -> deliver(key, value));
+  }
+
+  /**
+   * Stores a message for a later or pending call to
+   * {@link #receive(int, long, int)}.
+   *
+   * @param key
+   *          the key of the message
+   * @param value
+   *          the message
+   */
+  private synchronized void deliver(long key, Object value) {
+    mailbox.put(key, value);
+    notifyAll();
+  }
+
+  /**
+   * Waits for a message from a member of this team.
+   *
+   * @param src
+   *          the rank of the source
+   * @param tag
+   *          the tag of the operation
+   * @param step
+   *          the step of the operation
+   * @return the message
+   * @throws DeadPlaceException
+   *           if the source died
+   */
+  private Object receive(int src, long tag, int step) {
+    final Long key = tag | step;
+    final Place place = places.get(src);
+    try {
+      ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+        @Override
+        public boolean isReleasable() {
+          synchronized (Team.this) {
+            return mailbox.containsKey(key);
+          }
+        }
+
+        @Override
+        public boolean block() throws InterruptedException {
+          synchronized (Team.this) {
+            while (!mailbox.containsKey(key)) {
+              if (!GlobalRuntimeImpl.getRuntime().places().contains(place)) {
+                throw new DeadPlaceException(place);
+              }
+              Team.this.wait(TIMEOUT);
+            }
+          }
+          return true;
+        }
+      });
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    }
+    synchronized (this) {
+      return mailbox.remove(key);
+    }
+  }
+
+  /**
+   * Constructs a {@link Team} instance.
+   *
+   * @param places
+   *          the members of the team, with no repetition
+   * @return the team
+   */
+  public static Team make(List<? extends Place> places) {
+    final ArrayList<Place> list = new ArrayList<>(places);
+    return PlaceLocalObject.make(list, () -> new Team(list));
+  }
+}
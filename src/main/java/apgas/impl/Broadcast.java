@@ -0,0 +1,104 @@
+/*
+ *  This file is part of the X10 project (http://x10-lang.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  (C) Copyright IBM Corporation 2006-2016.
+ */
+
+package apgas.impl;
+
+import java.util.Arrays;
+
+import apgas.DeadPlaceException;
+import apgas.Place;
+import apgas.SerializableJob;
+
+/**
+ * The {@link Broadcast} class implements the tree-based fan-out of a job to a
+ * set of places.
+ * <p>
+ * The job is serialized once by the initiating place. Each {@link Broadcast}
+ * instance carries these bytes together with the subtree of places it is
+ * responsible for: the first place of the subtree runs the job and forwards
+ * the bytes to the remaining places using a k-ary tree. Since every hop is an
+ * ordinary task, the whole broadcast is governed by the finish of the
+ * initiating task.
+ */
+final class Broadcast implements SerializableJob {
+	private static final long serialVersionUID = -2213858232391007946L;
+
+	/**
+	 * The serialized job.
+	 */
+	private final byte[] job;
+
+	/**
+	 * The place IDs of this subtree, starting with the place of this instance.
+	 */
+	private final int[] places;
+
+	/**
+	 * Constructs a new {@link Broadcast}.
+	 *
+	 * @param job    the serialized job
+	 * @param places the place IDs of the subtree
+	 */
+	private Broadcast(byte[] job, int[] places) {
+		this.job = job;
+		this.places = places;
+	}
+
+	/**
+	 * Forwards the job to the children of this place then runs it.
+	 */
+	@Override
+	public void run() throws Exception {
+		fanOut(job, places, 1, places.length);
+		((SerializableJob) Serialization.read(job)).run();
+	}
+
+	/**
+	 * Spawns the subtrees covering places {@code from} (inclusive) to {@code to}
+	 * (exclusive) of the given array.
+	 *
+	 * @param job    the serialized job
+	 * @param places the place IDs
+	 * @param from   the first index to cover
+	 * @param to     the end index
+	 */
+	static void fanOut(byte[] job, int[] places, int from, int to) {
+		final int arity = GlobalRuntimeImpl.getRuntime().broadcastArity;
+		final int chunk = (to - from + arity - 1) / arity;
+		for (int lo = from; lo < to; lo += chunk) {
+			spawn(job, places, lo, Math.min(lo + chunk, to));
+		}
+	}
+
+	/**
+	 * Spawns a subtree rooted at the first live place of the given range.
+	 * <p>
+	 * Dead places are reported to the current finish and skipped.
+	 *
+	 * @param job    the serialized job
+	 * @param places the place IDs
+	 * @param lo     the first index of the subtree
+	 * @param hi     the end index of the subtree
+	 */
+	private static void spawn(byte[] job, int[] places, int lo, int hi) {
+		final GlobalRuntimeImpl runtime = GlobalRuntimeImpl.getRuntime();
+		for (; lo < hi; lo++) {
+			try {
+				runtime.asyncAt(new Place(places[lo]), new Broadcast(job, Arrays.copyOfRange(places, lo, hi)));
+				return;
+			} catch (final DeadPlaceException e) {
+				runtime.async(() -> {
+					throw e;
+				});
+			}
+		}
+	}
+}
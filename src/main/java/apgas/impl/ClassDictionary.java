@@ -0,0 +1,320 @@
+/*
+ *  This file is part of the X10 project (http://x10-lang.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  (C) Copyright IBM Corporation 2006-2016.
+ */
+
+package apgas.impl;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.Registration;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.util.DefaultClassResolver;
+
+import apgas.DeadPlaceException;
+import apgas.Place;
+
+/**
+ * The {@link ClassDictionary} class maintains a cluster-wide mapping from the
+ * names of unregistered classes to compact integer IDs.
+ * <p>
+ * Place 0 is the authority: it assigns IDs in the order classes are first
+ * reported by any place. Other places request an ID the first time they
+ * serialize a class and cache the assignments they receive. Registration order
+ * across JVMs therefore does not matter.
+ * <p>
+ * When a class with an ID is first written to a given destination place, the
+ * ID is sent along with the class name. Subsequent messages to this place only
+ * carry the ID. A place receiving an ID it does not know, for instance because
+ * messages were decoded out of order, fetches the name from place 0.
+ * <p>
+ * The dictionary is only used for task frames, which are decoded by worker
+ * threads. Messages decoded by transport threads keep using class names.
+ */
+final class ClassDictionary {
+	/**
+	 * The first class ID used for dictionary entries. Classes registered with
+	 * Kryo must have lower IDs, which {@link Resolver#check()} verifies.
+	 */
+	static final int OFFSET = 256;
+
+	/**
+	 * The class ID announcing a dictionary entry with its name.
+	 */
+	private static final int ANNOUNCE = OFFSET;
+
+	/**
+	 * The class ID of the first dictionary entry.
+	 */
+	private static final int FIRST = OFFSET + 1;
+
+	/**
+	 * The dictionary of this place.
+	 */
+	private static final ClassDictionary dictionary = new ClassDictionary();
+
+	/**
+	 * Known IDs indexed by class name.
+	 */
+	private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+
+	/**
+	 * Known class names indexed by ID.
+	 */
+	private final Map<Integer, String> names = new ConcurrentHashMap<>();
+
+	/**
+	 * Resolved classes indexed by ID.
+	 */
+	private final Map<Integer, Class<?>> classes = new ConcurrentHashMap<>();
+
+	/**
+	 * Class names for which an ID has been requested.
+	 */
+	private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Destination and ID pairs for which the class name has been sent.
+	 */
+	private final Set<Long> announced = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * The next ID to assign (place 0 only).
+	 */
+	private int next;
+
+	/**
+	 * Returns the ID of the given class if known. Otherwise, requests an ID from
+	 * place 0 and returns null.
+	 *
+	 * @param name the class name
+	 * @return the ID or null
+	 */
+	private Integer id(String name) {
+		final Integer id = ids.get(name);
+		if (id != null || !pending.add(name)) {
+			return id;
+		}
+		final GlobalRuntimeImpl runtime = GlobalRuntimeImpl.getRuntime();
+		final int here = runtime.here;
+		if (here == 0) {
+			return assign(name);
+		}
+		try {
+			runtime.immediateAsyncAt(new Place(0), () -> {
+				final int assigned = dictionary.assign(name);
+				GlobalRuntimeImpl.getRuntime().immediateAsyncAt(new Place(here),
+						() -> dictionary.install(assigned, name));
+			});
+		} catch (final DeadPlaceException e) {
+			// keep using the class name
+		}
+		return null;
+	}
+
+	/**
+	 * Assigns an ID to the given class name if not done already (place 0 only).
+	 *
+	 * @param name the class name
+	 * @return the ID
+	 */
+	private synchronized int assign(String name) {
+		final Integer id = ids.get(name);
+		if (id != null) {
+			return id;
+		}
+		install(next, name);
+		return next++;
+	}
+
+	/**
+	 * Records an ID assignment.
+	 *
+	 * @param id   the ID
+	 * @param name the class name
+	 */
+	private synchronized void install(int id, String name) {
+		names.put(id, name);
+		ids.put(name, id);
+		pending.remove(name);
+		notifyAll();
+	}
+
+	/**
+	 * Forgets the requests and announcements involving a dead place.
+	 * <p>
+	 * Requests for IDs are cleared so that they may be issued again. Threads
+	 * waiting for a class name from place 0 give up if place 0 died.
+	 *
+	 * @param p the ID of the dead place
+	 */
+	static void purge(int p) {
+		dictionary.pending.clear();
+		dictionary.announced.removeIf(key -> (int) (key >>> 32) == p);
+		synchronized (dictionary) {
+			dictionary.notifyAll();
+		}
+	}
+
+	/**
+	 * Returns the class with the given name if this place has resolved it using
+	 * its dictionary ID.
+	 *
+	 * @param name the class name
+	 * @return the class or null
+	 */
+	static Class<?> lookup(String name) {
+		final Integer id = dictionary.ids.get(name);
+		return id == null ? null : dictionary.classes.get(id);
+	}
+
+	/**
+	 * Returns the class with the given ID, fetching its name from place 0 if
+	 * unknown.
+	 *
+	 * @param id     the ID
+	 * @param loader the class loader to use
+	 * @return the class
+	 */
+	private Class<?> resolve(int id, ClassLoader loader) {
+		Class<?> type = classes.get(id);
+		if (type != null) {
+			return type;
+		}
+		String name = names.get(id);
+		if (name == null) {
+			name = fetch(id);
+		}
+		try {
+			type = Class.forName(name, false, loader);
+		} catch (final ClassNotFoundException e) {
+			throw new KryoException("Unable to find class: " + name, e);
+		}
+		classes.put(id, type);
+		return type;
+	}
+
+	/**
+	 * Fetches the class name with the given ID from place 0 and waits for it.
+	 *
+	 * @param id the ID
+	 * @return the class name
+	 */
+	private String fetch(int id) {
+		final GlobalRuntimeImpl runtime = GlobalRuntimeImpl.getRuntime();
+		final int here = runtime.here;
+		runtime.immediateAsyncAt(new Place(0), () -> {
+			final String name = dictionary.names.get(id);
+			GlobalRuntimeImpl.getRuntime().immediateAsyncAt(new Place(here), () -> dictionary.install(id, name));
+		});
+		try {
+			ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+				@Override
+				public boolean isReleasable() {
+					return names.containsKey(id);
+				}
+
+				@Override
+				public boolean block() throws InterruptedException {
+					synchronized (ClassDictionary.this) {
+						while (!names.containsKey(id)) {
+							if (!runtime.places().contains(new Place(0))) {
+								throw new DeadPlaceException(new Place(0));
+							}
+							ClassDictionary.this.wait();
+						}
+					}
+					return true;
+				}
+			});
+		} catch (final InterruptedException e) {
+			throw new KryoException("Interrupted while resolving class ID: " + id);
+		}
+		return names.get(id);
+	}
+
+	/**
+	 * A Kryo class resolver writing dictionary IDs instead of class names.
+	 * <p>
+	 * Each resolver belongs to a single Kryo instance, hence a single thread.
+	 */
+	static final class Resolver extends DefaultClassResolver {
+		/**
+		 * The place the object being written is sent to, or -1 if unknown.
+		 */
+		int destination = -1;
+
+		/**
+		 * Checks that the classes registered with Kryo do not use the IDs reserved
+		 * for the dictionary. Must be invoked after all the registrations.
+		 *
+		 * @throws IllegalStateException if a registered class uses a reserved ID
+		 */
+		void check() {
+			if (kryo.getNextRegistrationId() > OFFSET) {
+				throw new IllegalStateException("Too many classes registered with Kryo for the class dictionary: "
+						+ kryo.getNextRegistrationId() + " > " + OFFSET);
+			}
+		}
+
+		@SuppressWarnings("rawtypes")
+		@Override
+		public Registration writeClass(Output output, Class type) {
+			if (type == null || destination < 0) {
+				return super.writeClass(output, type);
+			}
+			final Registration registration = kryo.getRegistration(type);
+			if (registration.getId() != NAME) {
+				return super.writeClass(output, type);
+			}
+			final String name = type.getName();
+			final Integer id = dictionary.id(name);
+			if (id == null) {
+				return super.writeClass(output, type);
+			}
+			if (dictionary.announced.add(((long) destination << 32) + id)) {
+				output.writeVarInt(ANNOUNCE + 2, true);
+				output.writeVarInt(id, true);
+				output.writeString(name);
+			} else {
+				output.writeVarInt(FIRST + id + 2, true);
+			}
+			return registration;
+		}
+
+		@Override
+		public Registration readClass(Input input) {
+			final int classID = input.readVarInt(true);
+			if (classID == com.esotericsoftware.kryo.Kryo.NULL) {
+				return null;
+			}
+			if (classID == NAME + 2) {
+				return readName(input);
+			}
+			if (classID == ANNOUNCE + 2) {
+				final int id = input.readVarInt(true);
+				dictionary.install(id, input.readString());
+				return kryo.getRegistration(dictionary.resolve(id, kryo.getClassLoader()));
+			}
+			if (classID >= FIRST + 2) {
+				return kryo.getRegistration(dictionary.resolve(classID - FIRST - 2, kryo.getClassLoader()));
+			}
+			final Registration registration = getRegistration(classID - 2);
+			if (registration == null) {
+				throw new KryoException("Encountered unregistered class ID: " + (classID - 2));
+			}
+			return registration;
+		}
+	}
+}
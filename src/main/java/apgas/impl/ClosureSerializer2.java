@@ -1,5 +1,17 @@
 package apgas.impl;
 
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandleInfo;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.SerializedLambda;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.ConcurrentHashMap;
+
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.KryoException;
 import com.esotericsoftware.kryo.io.Input;
@@ -11,37 +23,103 @@ import com.esotericsoftware.kryo.serializers.ClosureSerializer;
  * ClosureSerializer uses RuntimeException, this makes the exception chain
  * longer. This class repacks exceptions to KryoException (as in R5.0.0) to
  * shorten the exception chain.
+ * <p>
+ * In addition, this class caches the reflective lookups of the
+ * ClosureSerializer. The {@code writeReplace} method of each lambda class is
+ * looked up once. On the read side, the first instance of each lambda is
+ * resolved through {@code $deserializeLambda$} as usual. A factory for the
+ * lambda is then obtained from the {@link LambdaMetafactory} and cached per
+ * place, keyed by the capturing class, implementation method and signatures.
+ * Subsequent instances are created by the cached factory directly.
  */
 public class ClosureSerializer2 extends ClosureSerializer {
+	/**
+	 * The {@code writeReplace} methods of lambda classes.
+	 */
+	private static final ClassValue<Method> writeReplace = new ClassValue<Method>() {
+		@Override
+		protected Method computeValue(Class<?> type) {
+			try {
+				final Method method = type.getDeclaredMethod("writeReplace");
+				method.setAccessible(true);
+				return method;
+			} catch (final NoSuchMethodException e) {
+				return null;
+			}
+		}
+	};
+
+	/**
+	 * The {@code readResolve} method of {@link SerializedLambda}.
+	 */
+	private static final Method readResolve;
+
+	static {
+		try {
+			readResolve = SerializedLambda.class.getDeclaredMethod("readResolve");
+			readResolve.setAccessible(true);
+		} catch (final NoSuchMethodException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	/**
+	 * Marks lambdas that cannot be created by a cached factory.
+	 */
+	private static final MethodHandle UNCACHEABLE = MethodHandles.constant(Object.class, null);
+
+	/**
+	 * The cached factories taking an array of captured arguments.
+	 */
+	private static final ConcurrentHashMap<Key, MethodHandle> factories = new ConcurrentHashMap<>();
+
 	public ClosureSerializer2() {
 		super();
 	}
 
 	public void write(Kryo kryo, Output output, Object object) {
+		final Method method = writeReplace.get(object.getClass());
+		if (method == null)
+			throw new KryoException("Could not serialize lambda");
+		final Object replacement;
 		try {
-			super.write(kryo, output, object);
-		} catch (RuntimeException e) {
-			if (e.getCause() == null)
-				throw new KryoException("Could not serialize lambda");
-			if (e.getCause() instanceof KryoException)
-				throw (KryoException) e.getCause();
-			else
-				throw new KryoException("Could not serialize lambda", e.getCause());
+			replacement = method.invoke(object);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			throw new KryoException("Could not serialize lambda", e);
 		}
+		if (!(replacement instanceof SerializedLambda))
+			throw new KryoException("Could not serialize lambda");
+		kryo.writeObject(output, replacement);
 	}
 
 	@SuppressWarnings("rawtypes")
 	public Object read(Kryo kryo, Input input, Class type) {
+		final SerializedLambda lambda = kryo.readObject(input, SerializedLambda.class);
+		final Key key = new Key(lambda);
+		final MethodHandle factory = factories.get(key);
+		if (factory != null && factory != UNCACHEABLE) {
+			final Object[] args = new Object[lambda.getCapturedArgCount()];
+			for (int i = 0; i < args.length; i++) {
+				args[i] = lambda.getCapturedArg(i);
+			}
+			try {
+				return (Object) factory.invokeExact(args);
+			} catch (final Throwable e) {
+				throw new KryoException("Could not deserialize lambda", e);
+			}
+		}
+		final Object object;
 		try {
-			return super.read(kryo, input, type);
-		} catch (RuntimeException e) {
-			if (e.getCause() == null)
-				throw new KryoException("Could not deserialize lambda");
+			object = readResolve.invoke(lambda);
+		} catch (final ReflectiveOperationException e) {
 			if (e.getCause() instanceof KryoException)
 				throw (KryoException) e.getCause();
-			else
-				throw new KryoException("Could not deserialize lambda", e.getCause());
+			throw new KryoException("Could not deserialize lambda", e.getCause() == null ? e : e.getCause());
+		}
+		if (factory == null) {
+			factories.putIfAbsent(key, factory(kryo.getClassLoader(), lambda, object));
 		}
+		return object;
 	}
 
 	public Object copy(Kryo kryo, Object original) {
@@ -56,4 +134,142 @@ public class ClosureSerializer2 extends ClosureSerializer {
 				throw new KryoException("Could not serialize lambda (resolve)", e.getCause());
 		}
 	}
+
+	/**
+	 * Builds a factory for the given lambda.
+	 * <p>
+	 * The factory is only used if the lambda it creates has the same class shape
+	 * as the one produced by {@code $deserializeLambda$}, i.e., no marker
+	 * interfaces or bridge methods are lost.
+	 *
+	 * @param loader   the class loader to use
+	 * @param lambda   the serialized lambda
+	 * @param resolved the lambda obtained from {@code $deserializeLambda$}
+	 * @return the factory or {@link #UNCACHEABLE}
+	 */
+	private static MethodHandle factory(ClassLoader loader, SerializedLambda lambda, Object resolved) {
+		try {
+			final Class<?> capturingClass = Class.forName(lambda.getCapturingClass().replace('/', '.'), false,
+					loader);
+			final Class<?> implClass = Class.forName(lambda.getImplClass().replace('/', '.'), false, loader);
+			final Class<?> interfaceClass = Class.forName(lambda.getFunctionalInterfaceClass().replace('/', '.'),
+					false, loader);
+			final MethodHandles.Lookup lookup = privateLookup(capturingClass);
+			final MethodType implType = MethodType.fromMethodDescriptorString(lambda.getImplMethodSignature(), loader);
+			final MethodHandle impl;
+			switch (lambda.getImplMethodKind()) {
+			case MethodHandleInfo.REF_invokeStatic:
+				impl = lookup.findStatic(implClass, lambda.getImplMethodName(), implType);
+				break;
+			case MethodHandleInfo.REF_invokeVirtual:
+			case MethodHandleInfo.REF_invokeInterface:
+				impl = lookup.findVirtual(implClass, lambda.getImplMethodName(), implType);
+				break;
+			case MethodHandleInfo.REF_invokeSpecial:
+				impl = lookup.findSpecial(implClass, lambda.getImplMethodName(), implType, capturingClass);
+				break;
+			case MethodHandleInfo.REF_newInvokeSpecial:
+				impl = lookup.findConstructor(implClass, implType);
+				break;
+			default:
+				return UNCACHEABLE;
+			}
+			final int count = lambda.getCapturedArgCount();
+			final MethodType factoryType = MethodType.methodType(interfaceClass,
+					impl.type().parameterList().subList(0, count));
+			final MethodHandle factory = LambdaMetafactory.altMetafactory(lookup,
+					lambda.getFunctionalInterfaceMethodName(), factoryType,
+					MethodType.fromMethodDescriptorString(lambda.getFunctionalInterfaceMethodSignature(), loader), impl,
+					MethodType.fromMethodDescriptorString(lambda.getInstantiatedMethodType(), loader),
+					LambdaMetafactory.FLAG_SERIALIZABLE).getTarget();
+			final MethodHandle spreader = factory.asSpreader(Object[].class, count)
+					.asType(MethodType.methodType(Object.class, Object[].class));
+			final Object[] args = new Object[count];
+			for (int i = 0; i < count; i++) {
+				args[i] = lambda.getCapturedArg(i);
+			}
+			final Class<?> created = ((Object) spreader.invokeExact(args)).getClass();
+			final Class<?> expected = resolved.getClass();
+			if (!new HashSet<>(Arrays.asList(created.getInterfaces()))
+					.equals(new HashSet<>(Arrays.asList(expected.getInterfaces())))
+					|| created.getDeclaredMethods().length != expected.getDeclaredMethods().length) {
+				return UNCACHEABLE;
+			}
+			return spreader;
+		} catch (final Throwable e) {
+			return UNCACHEABLE;
+		}
+	}
+
+	/**
+	 * Returns a lookup object with private access to the given class.
+	 *
+	 * @param type the class to look into
+	 * @return the lookup object
+	 * @throws ReflectiveOperationException if private access cannot be obtained
+	 */
+	private static MethodHandles.Lookup privateLookup(Class<?> type) throws ReflectiveOperationException {
+		try {
+			// Java 9+
+			final Method privateLookupIn = MethodHandles.class.getMethod("privateLookupIn", Class.class,
+					MethodHandles.Lookup.class);
+			return (MethodHandles.Lookup) privateLookupIn.invoke(null, type, MethodHandles.lookup());
+		} catch (final NoSuchMethodException e) {
+			// Java 8
+			final Constructor<MethodHandles.Lookup> constructor = MethodHandles.Lookup.class
+					.getDeclaredConstructor(Class.class, int.class);
+			constructor.setAccessible(true);
+			return constructor.newInstance(type, MethodHandles.Lookup.PUBLIC | MethodHandles.Lookup.PRIVATE
+					| MethodHandles.Lookup.PROTECTED | MethodHandles.Lookup.PACKAGE);
+		}
+	}
+
+	/**
+	 * The key identifying a lambda in the factory cache.
+	 */
+	private static final class Key {
+		private final String capturingClass;
+		private final String implClass;
+		private final String implMethodName;
+		private final String implMethodSignature;
+		private final String instantiatedMethodType;
+		private final String functionalInterfaceClass;
+		private final int implMethodKind;
+		private final int hash;
+
+		Key(SerializedLambda lambda) {
+			capturingClass = lambda.getCapturingClass();
+			implClass = lambda.getImplClass();
+			implMethodName = lambda.getImplMethodName();
+			implMethodSignature = lambda.getImplMethodSignature();
+			instantiatedMethodType = lambda.getInstantiatedMethodType();
+			functionalInterfaceClass = lambda.getFunctionalInterfaceClass();
+			implMethodKind = lambda.getImplMethodKind();
+			int h = capturingClass.hashCode();
+			h = 31 * h + implClass.hashCode();
+			h = 31 * h + implMethodName.hashCode();
+			h = 31 * h + implMethodSignature.hashCode();
+			h = 31 * h + instantiatedMethodType.hashCode();
+			h = 31 * h + functionalInterfaceClass.hashCode();
+			hash = 31 * h + implMethodKind;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			final Key k = (Key) o;
+			return hash == k.hash && implMethodKind == k.implMethodKind && capturingClass.equals(k.capturingClass)
+					&& implClass.equals(k.implClass) && implMethodName.equals(k.implMethodName)
+					&& implMethodSignature.equals(k.implMethodSignature)
+					&& instantiatedMethodType.equals(k.instantiatedMethodType)
+					&& functionalInterfaceClass.equals(k.functionalInterfaceClass);
+		}
+	}
 }
@@ -49,6 +49,80 @@ public final class Config {
 	 */
 	public static final String APGAS_MAX_THREADS = "apgas.max.threads";
 
+	/**
+	 * Number of completed local tasks each worker thread keeps for reuse by
+	 * subsequent local {@code async} calls (Integer property).
+	 * <p>
+	 * Defaults to 0, which disables task pooling.
+	 */
+	public static final String APGAS_TASK_POOL = "apgas.task.pool";
+
+	/**
+	 * Whether local {@code async} calls notify their finish with a single
+	 * {@code spawnAndSubmit} call and may reuse pooled tasks (Boolean property).
+	 * <p>
+	 * Defaults to true. Setting it to false selects the separate spawn and submit
+	 * notifications and a new task per call, e.g., for benchmarking.
+	 */
+	public static final String APGAS_ASYNC_FUSED = "apgas.async.fused";
+
+	/**
+	 * Number of children of each place in the trees used to broadcast tasks with
+	 * {@code asyncAtAll} (Integer property).
+	 * <p>
+	 * Defaults to 4.
+	 */
+	public static final String APGAS_BROADCAST_ARITY = "apgas.broadcast.arity";
+
+	/**
+	 * Number of dedicated threads running immediate tasks at each place (Integer
+	 * property).
+	 * <p>
+	 * Defaults to 2. If set to 0, immediate tasks run on the transport thread that
+	 * receives them.
+	 */
+	public static final String APGAS_IMMEDIATE_THREADS = "apgas.immediate.threads";
+
+	/**
+	 * Run-time budget of an immediate task in microseconds (Long property).
+	 * <p>
+	 * Immediate tasks exceeding this budget are counted and reported. Defaults to
+	 * 1000.
+	 */
+	public static final String APGAS_IMMEDIATE_BUDGET = "apgas.immediate.budget";
+
+	/**
+	 * Enables the adaptive control of the parallelism of each place (Boolean
+	 * property).
+	 * <p>
+	 * If set, the runtime periodically grows or shrinks the number of active
+	 * workers based on the number of queued tasks and running workers.
+	 */
+	public static final String APGAS_ADAPTIVE = "apgas.adaptive";
+
+	/**
+	 * Lower bound on the parallelism chosen by the adaptive controller (Integer
+	 * property).
+	 * <p>
+	 * Defaults to 1.
+	 */
+	public static final String APGAS_ADAPTIVE_MIN = "apgas.adaptive.min";
+
+	/**
+	 * Upper bound on the parallelism chosen by the adaptive controller (Integer
+	 * property).
+	 * <p>
+	 * Defaults to {@code Runtime.getRuntime().availableProcessors()}.
+	 */
+	public static final String APGAS_ADAPTIVE_MAX = "apgas.adaptive.max";
+
+	/**
+	 * Sampling period of the adaptive controller in milliseconds (Long property).
+	 * <p>
+	 * Defaults to 100.
+	 */
+	public static final String APGAS_ADAPTIVE_PERIOD = "apgas.adaptive.period";
+
 	/**
 	 * Setting used to specify which interface should be used to setup the
 	 * inter-process network communication. Specifying this setting will bypass the
@@ -71,6 +145,33 @@ public final class Config {
 	 */
 	public static final String APGAS_SERIALIZATION = "apgas.serialization";
 
+	/**
+	 * Enables the cluster-wide class dictionary for task frames (Boolean
+	 * property).
+	 * <p>
+	 * Unregistered classes are then identified by compact IDs assigned by place 0
+	 * instead of their names. Defaults to true if Kryo serialization is used and
+	 * the runtime is not resilient.
+	 */
+	public static final String APGAS_CLASS_DICTIONARY = "apgas.class.dictionary";
+
+	/**
+	 * Enables the Kryo serialization profiler (Integer property).
+	 * <p>
+	 * One in this many messages is profiled. Defaults to 0, which disables
+	 * profiling.
+	 */
+	public static final String APGAS_SERIALIZATION_PROFILE = "apgas.serialization.profile";
+
+	/**
+	 * Maximal number of distinct uncaught exceptions retained by a finish
+	 * (Integer property).
+	 * <p>
+	 * Exceptions with the same type, message, and stack trace are retained once
+	 * with an occurrence count. Defaults to 1000.
+	 */
+	public static final String APGAS_EXCEPTIONS_MAX = "apgas.exceptions.max";
+
 	/**
 	 * Specifies the java command to run for spawning places (String property).
 	 * <p>
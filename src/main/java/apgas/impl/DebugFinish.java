@@ -300,6 +300,17 @@ public final class DebugFinish implements Serializable, Finish {
 		}
 	}
 
+	@Override
+	public synchronized void spawnAndSubmit(int p) {
+		if (counts == null && id == null) {
+			// local finish: a single task count covers both steps
+			count++;
+			return;
+		}
+		spawn(p);
+		submit(p);
+	}
+
 	@Override
 	public synchronized void submit(int p) {
 		final int here = GlobalRuntimeImpl.getRuntime().here;
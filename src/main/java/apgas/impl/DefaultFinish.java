@@ -13,7 +13,6 @@ package apgas.impl;
 
 import java.io.Serializable;
 import java.lang.reflect.Field;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -121,7 +120,13 @@ final class DefaultFinish implements Serializable, Finish {
 	/**
 	 * Uncaught exceptions collected by this finish construct.
 	 */
-	private transient List<Throwable> exceptions;
+	private transient ExceptionSummary exceptions;
+
+	/**
+	 * Uncaught exceptions collected by a remote finish and not yet reported to the
+	 * root finish.
+	 */
+	private transient ExceptionSummary pending;
 
 	/**
 	 * The {@link GlobalID} instance for this finish construct.
@@ -144,25 +149,33 @@ final class DefaultFinish implements Serializable, Finish {
 		if (id == null || id.home.id == here) {
 			// root finish
 			if (exceptions == null) {
-				exceptions = new ArrayList<>();
+				exceptions = new ExceptionSummary(GlobalRuntimeImpl.getRuntime().maxExceptions);
 			}
 
 			// FIXME dirty hack to stop issues with serialization of Throwable's
 			// static member used by remote exceptions with no suppressed exceptions
 			// fixSuppressedExceptions(exception);
 
-			exceptions.add(exception);
+			exceptions.add(exception, 1);
 		} else {
+			// remote finish: aggregate exceptions until the local tasks complete
+			if (pending == null) {
+				pending = new ExceptionSummary(GlobalRuntimeImpl.getRuntime().maxExceptions);
+			}
+			pending.add(exception, 1);
+		}
+	}
 
-			// remote finish: spawn remote task to transfer exception to root finish
-			final SerializableThrowable t = new SerializableThrowable(exception);
-			final DefaultFinish that = this;
-			spawn(id.home.id);
-			new Task(this, (SerializableJob) () -> {
-				that.addSuppressed(t.t);
-				fixSuppressedExceptions(t.t);
-			}, here).asyncAt(id.home.id);
+	/**
+	 * Adds a batch of exceptions from a remote finish to the root finish.
+	 *
+	 * @param batch the exceptions
+	 */
+	synchronized void addSuppressed(ExceptionSummary.Batch batch) {
+		if (exceptions == null) {
+			exceptions = new ExceptionSummary(GlobalRuntimeImpl.getRuntime().maxExceptions);
 		}
+		exceptions.add(batch);
 	}
 
 	@Override
@@ -178,7 +191,7 @@ final class DefaultFinish implements Serializable, Finish {
 
 	@Override
 	public synchronized List<Throwable> exceptions() {
-		return exceptions;
+		return exceptions == null ? null : exceptions.result();
 	}
 
 	@Override
@@ -249,6 +262,17 @@ final class DefaultFinish implements Serializable, Finish {
 		}
 	}
 
+	@Override
+	public synchronized void spawnAndSubmit(int p) {
+		if (counts == null && id == null) {
+			// local finish: a single task count covers both steps
+			count++;
+			return;
+		}
+		spawn(p);
+		submit(p);
+	}
+
 	@Override
 	public synchronized void submit(int p) {
 		final int here = GlobalRuntimeImpl.getRuntime().here;
@@ -279,8 +303,20 @@ final class DefaultFinish implements Serializable, Finish {
 			// remote finish
 			--counts[here];
 			if (--count == 0) {
-				final int _counts[] = counts;
 				final DefaultFinish that = this;
+				if (pending != null) {
+					// spawn remote task to transfer exceptions to root finish
+					final ExceptionSummary.Batch batch = pending.batch();
+					pending = null;
+					spawn(id.home.id);
+					new Task(this, (SerializableJob) () -> {
+						for (final SerializableThrowable t : batch.exceptions) {
+							fixSuppressedExceptions(t.t);
+						}
+						that.addSuppressed(batch);
+					}, here).asyncAt(id.home.id);
+				}
+				final int _counts[] = counts;
 				GlobalRuntimeImpl.getRuntime().transport.send(id.home.id, () -> that.update(_counts));
 				Arrays.fill(counts, 0);
 			}
@@ -0,0 +1,217 @@
+/*
+ *  This file is part of the X10 project (http://x10-lang.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  (C) Copyright IBM Corporation 2006-2016.
+ */
+
+package apgas.impl;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The {@link ExceptionSummary} class collects uncaught exceptions with
+ * deduplication.
+ * <p>
+ * Exceptions with the same type, message, and stack trace are collapsed into
+ * the first occurrence with an occurrence count. At most
+ * {@link Config#APGAS_EXCEPTIONS_MAX} distinct exceptions are retained. Further
+ * distinct exceptions are only counted.
+ * <p>
+ * Remote finish objects aggregate exceptions locally and ship them to the root
+ * finish in a single {@link Batch}.
+ */
+final class ExceptionSummary {
+	/**
+	 * The identity of an exception for deduplication purposes.
+	 */
+	private static final class Key {
+		private final Class<?> type;
+		private final String message;
+		private final StackTraceElement[] stackTrace;
+		private final int hash;
+
+		Key(Throwable t) {
+			type = t.getClass();
+			message = t.getMessage();
+			stackTrace = t.getStackTrace();
+			hash = (type.hashCode() * 31 + Objects.hashCode(message)) * 31 + Arrays.hashCode(stackTrace);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			final Key k = (Key) o;
+			return hash == k.hash && type == k.type && Objects.equals(message, k.message)
+					&& Arrays.equals(stackTrace, k.stackTrace);
+		}
+	}
+
+	/**
+	 * A batch of deduplicated exceptions shipped from a remote finish to the root
+	 * finish.
+	 */
+	static final class Batch implements Serializable {
+		private static final long serialVersionUID = -4551372760286713902L;
+
+		/**
+		 * The distinct exceptions.
+		 */
+		final SerializableThrowable[] exceptions;
+
+		/**
+		 * The occurrence counts of the distinct exceptions.
+		 */
+		final int[] counts;
+
+		/**
+		 * The number of exceptions omitted from the batch.
+		 */
+		final long omitted;
+
+		private Batch(SerializableThrowable[] exceptions, int[] counts, long omitted) {
+			this.exceptions = exceptions;
+			this.counts = counts;
+			this.omitted = omitted;
+		}
+	}
+
+	/**
+	 * The list of distinct exceptions returned upon completion of a finish.
+	 */
+	static final class Result extends ArrayList<Throwable> {
+		private static final long serialVersionUID = 2371580357062616233L;
+
+		/**
+		 * The occurrence counts of the exceptions thrown more than once.
+		 */
+		final Map<Throwable, Integer> occurrences = new HashMap<>();
+
+		/**
+		 * The number of exceptions omitted from the list.
+		 */
+		long omitted;
+
+		private Result(int size) {
+			super(size);
+		}
+	}
+
+	/**
+	 * A distinct exception and its occurrence count.
+	 */
+	private static final class Entry {
+		final Throwable exception;
+		int count;
+
+		Entry(Throwable exception) {
+			this.exception = exception;
+		}
+	}
+
+	/**
+	 * The maximal number of distinct exceptions.
+	 */
+	private final int max;
+
+	/**
+	 * The distinct exceptions in order of first occurrence.
+	 */
+	private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>();
+
+	/**
+	 * The number of omitted exceptions.
+	 */
+	private long omitted;
+
+	/**
+	 * Constructs a new {@link ExceptionSummary}.
+	 *
+	 * @param max the maximal number of distinct exceptions
+	 */
+	ExceptionSummary(int max) {
+		this.max = max;
+	}
+
+	/**
+	 * Adds occurrences of an exception.
+	 *
+	 * @param t     the exception
+	 * @param count the occurrence count
+	 */
+	void add(Throwable t, int count) {
+		final Key key = new Key(t);
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			if (entries.size() >= max) {
+				omitted += count;
+				return;
+			}
+			entry = new Entry(t);
+			entries.put(key, entry);
+		}
+		entry.count += count;
+	}
+
+	/**
+	 * Adds the exceptions of a batch.
+	 *
+	 * @param batch the batch
+	 */
+	void add(Batch batch) {
+		for (int i = 0; i < batch.exceptions.length; i++) {
+			add(batch.exceptions[i].t, batch.counts[i]);
+		}
+		omitted += batch.omitted;
+	}
+
+	/**
+	 * Returns the content of this summary as a batch.
+	 *
+	 * @return the batch
+	 */
+	Batch batch() {
+		final SerializableThrowable[] exceptions = new SerializableThrowable[entries.size()];
+		final int[] counts = new int[exceptions.length];
+		int i = 0;
+		for (final Entry entry : entries.values()) {
+			exceptions[i] = new SerializableThrowable(entry.exception);
+			counts[i++] = entry.count;
+		}
+		return new Batch(exceptions, counts, omitted);
+	}
+
+	/**
+	 * Returns the content of this summary as a list of distinct exceptions.
+	 *
+	 * @return the list
+	 */
+	Result result() {
+		final Result result = new Result(entries.size());
+		for (final Entry entry : entries.values()) {
+			result.add(entry.exception);
+			if (entry.count > 1) {
+				result.occurrences.put(entry.exception, entry.count);
+			}
+		}
+		result.omitted = omitted;
+		return result;
+	}
+}
@@ -37,6 +37,19 @@ public interface Finish extends ForkJoinPool.ManagedBlocker {
 	 */
 	void spawn(int p);
 
+	/**
+	 * Must be called before a task is spawned and enqueued for execution at the
+	 * current place p. Equivalent to {@link #spawn(int)} followed by
+	 * {@link #submit(int)} but lets implementations update their counters in a
+	 * single step.
+	 *
+	 * @param p the current place
+	 */
+	default void spawnAndSubmit(int p) {
+		spawn(p);
+		submit(p);
+	}
+
 	/**
 	 * Must be called to undo the call to {@link #spawn(int)} if the attempt to
 	 * spawn the task at place p was unsuccessful.
@@ -14,7 +14,6 @@ package apgas.impl;
 import java.io.IOException;
 import java.io.Serializable;
 import java.lang.management.ManagementFactory;
-import java.lang.reflect.Field;
 import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.net.NetworkInterface;
@@ -23,12 +22,14 @@ import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ForkJoinTask;
@@ -47,6 +48,7 @@ import apgas.Place;
 import apgas.SerializableCallable;
 import apgas.SerializableJob;
 import apgas.util.GlobalID;
+import apgas.util.RuntimeHooks;
 
 /**
  * The {@link GlobalRuntimeImpl} class implements the
@@ -64,6 +66,31 @@ public final class GlobalRuntimeImpl extends GlobalRuntime {
 	 */
 	final boolean resilient;
 
+	/**
+	 * True if Kryo serialization is used.
+	 */
+	final boolean kryo;
+
+	/**
+	 * The maximal number of distinct uncaught exceptions retained by a finish.
+	 */
+	final int maxExceptions;
+
+	/**
+	 * True if local asyncs use the fused spawn and submit notification.
+	 */
+	final boolean fusedAsync;
+
+	/**
+	 * True if task frames use the {@link ClassDictionary}.
+	 */
+	final boolean classDictionary;
+
+	/**
+	 * The arity of the trees used by {@link #asyncAtAll(Collection, SerializableJob)}.
+	 */
+	final int broadcastArity;
+
 	/**
 	 * The finish factory.
 	 */
@@ -89,6 +116,16 @@ public final class GlobalRuntimeImpl extends GlobalRuntime {
 	 */
 	final ForkJoinPool pool;
 
+	/**
+	 * The controller of the target parallelism of {@link #pool}.
+	 */
+	final Parallelism parallelism;
+
+	/**
+	 * The handler threads for immediate tasks.
+	 */
+	final ImmediateExecutor immediateExecutor;
+
 	/**
 	 * The mutable set of places in this global runtime instance.
 	 */
@@ -104,6 +141,22 @@ public final class GlobalRuntimeImpl extends GlobalRuntime {
 	 */
 	final Launcher launcher;
 
+	/**
+	 * The command line used to launch additional places, or null if this place
+	 * does not launch places.
+	 */
+	private List<String> launchCommand;
+
+	/**
+	 * The host list used to launch additional places.
+	 */
+	private List<String> launchHosts;
+
+	/**
+	 * The value of the APGAS_VERBOSE_LAUNCHER system property.
+	 */
+	private boolean verboseLauncher;
+
 	/**
 	 * The registered place failure handler.
 	 */
@@ -149,11 +202,16 @@ public final class GlobalRuntimeImpl extends GlobalRuntime {
 			final String master = System.getProperty(Configuration.APGAS_MASTER);
 			final String hostfile = System.getProperty(Configuration.APGAS_HOSTFILE);
 			verboseSerialization = Boolean.getBoolean(Configuration.APGAS_VERBOSE_SERIALIZATION);
-			final boolean verboseLauncher = Boolean.getBoolean(Configuration.APGAS_VERBOSE_LAUNCHER);
+			verboseLauncher = Boolean.getBoolean(Configuration.APGAS_VERBOSE_LAUNCHER);
 			resilient = Boolean.getBoolean(Configuration.APGAS_RESILIENT);
 
 			final boolean compact = Boolean.getBoolean(Config.APGAS_COMPACT);
 			final int maxThreads = Integer.getInteger(Config.APGAS_MAX_THREADS, 256);
+			final int taskPool = Integer.getInteger(Config.APGAS_TASK_POOL, 0);
+			final int immediateThreads = Integer.getInteger(Config.APGAS_IMMEDIATE_THREADS, 2);
+			final long immediateBudget = Long.getLong(Config.APGAS_IMMEDIATE_BUDGET, 1000);
+			final boolean adaptive = Boolean.getBoolean(Config.APGAS_ADAPTIVE);
+			broadcastArity = Math.max(1, Integer.getInteger(Config.APGAS_BROADCAST_ARITY, 4));
 			final String serialization = System.getProperty(Config.APGAS_SERIALIZATION, "kryo");
 			final String finishName = System.getProperty(Config.APGAS_FINISH);
 			final String java = System.getProperty(Config.APGAS_JAVA, "java");
@@ -236,17 +294,25 @@ public final class GlobalRuntimeImpl extends GlobalRuntime {
 			}
 
 			// initialize scheduler
-			pool = new ForkJoinPool(maxThreads, new WorkerFactory(), null, false);
-			final Field ctl = ForkJoinPool.class.getDeclaredField("ctl");
-			ctl.setAccessible(true);
-			ctl.setLong(pool, ctl.getLong(pool) + (((long) maxThreads - threads) << 48));
+			pool = new ForkJoinPool(maxThreads, new WorkerFactory(taskPool), null, false);
+			parallelism = new Parallelism(pool, maxThreads, threads);
+			if (adaptive) {
+				parallelism.adapt(Integer.getInteger(Config.APGAS_ADAPTIVE_MIN, 1),
+						Integer.getInteger(Config.APGAS_ADAPTIVE_MAX, Runtime.getRuntime().availableProcessors()),
+						Long.getLong(Config.APGAS_ADAPTIVE_PERIOD, 100));
+			}
+			immediateExecutor = new ImmediateExecutor(immediateThreads, immediateBudget);
 
 			// serialization
-			final Boolean kryo = !"java".equals(serialization);
+			kryo = !"java".equals(serialization);
 			if (kryo && !"kryo".equals(serialization)) {
 				System.err.println("[APGAS] Unable to instantiate serialization framework: " + serialization
 						+ ". Using default serialization.");
 			}
+			maxExceptions = Math.max(1, Integer.getInteger(Config.APGAS_EXCEPTIONS_MAX, 1000));
+			fusedAsync = Boolean.parseBoolean(System.getProperty(Config.APGAS_ASYNC_FUSED, "true"));
+			final String dictionary = System.getProperty(Config.APGAS_CLASS_DICTIONARY);
+			classDictionary = kryo && (dictionary == null ? !resilient : Boolean.parseBoolean(dictionary));
 
 			// attempt to select a good ip for this host
 			String ip = null;
@@ -360,6 +426,11 @@ public final class GlobalRuntimeImpl extends GlobalRuntime {
 			here = transport.here();
 			home = new Place(here);
 
+			final int profile = Integer.getInteger(Config.APGAS_SERIALIZATION_PROFILE, 0);
+			if (kryo && profile > 0) {
+				SerializationProfiler.start(profile, here);
+			}
+
 			resilientFinishMap = resilient ? transport.<GlobalID, ResilientFinishState>getResilientFinishMap() : null;
 
 			// install hook on thread 1
@@ -404,6 +475,8 @@ public final class GlobalRuntimeImpl extends GlobalRuntime {
 					command.add("-D" + Configuration.APGAS_MASTER + "=" + transport.getAddress());
 					command.add(getClass().getSuperclass().getCanonicalName());
 
+					launchCommand = command;
+					launchHosts = hosts;
 					launcher.launch(p - 1, command, hosts, verboseLauncher);
 				} catch (final Exception t) {
 					// initiate shutdown
@@ -462,6 +535,9 @@ public final class GlobalRuntimeImpl extends GlobalRuntime {
 				worker.task = null; // a handler is not a task (yet)
 				for (final int id : removed) {
 					ResilientFinishState.purge(id);
+					RemoteFuture.purge(id);
+					ClassDictionary.purge(id);
+					RuntimeHooks.purge(id);
 				}
 				if (handler != null) {
 					for (final int id : removed) {
@@ -472,6 +548,36 @@ public final class GlobalRuntimeImpl extends GlobalRuntime {
 		});
 	}
 
+	/**
+	 * Launches additional places and returns immediately.
+	 * <p>
+	 * The new places use the command line of the places launched at startup.
+	 * They join the global runtime asynchronously and are reported to
+	 * {@link #places()} once connected.
+	 *
+	 * @param n the number of places to launch
+	 * @throws IllegalStateException if this place did not launch the initial
+	 *                               places
+	 * @throws Exception             if launching fails
+	 */
+	public void launchPlaces(int n) throws Exception {
+		if (launchCommand == null) {
+			throw new IllegalStateException("place " + here + " cannot launch places");
+		}
+		if (n > 0) {
+			launcher.launch(n, launchCommand, launchHosts, verboseLauncher);
+		}
+	}
+
+	/**
+	 * Returns true if {@link #launchPlaces(int)} is supported by this place.
+	 *
+	 * @return true if this place can launch places
+	 */
+	public boolean canLaunchPlaces() {
+		return launchCommand != null;
+	}
+
 	@Override
 	public void setPlaceFailureHandler(Consumer<Place> handler) {
 		this.handler = handler;
@@ -489,6 +595,7 @@ public final class GlobalRuntimeImpl extends GlobalRuntime {
 			launcher.shutdown();
 		}
 		pool.shutdown();
+		immediateExecutor.shutdown();
 		transport.shutdown();
 	}
 
@@ -509,6 +616,10 @@ public final class GlobalRuntimeImpl extends GlobalRuntime {
 				.make(worker == null || worker.task == null ? NullFinish.SINGLETON : worker.task.finish);
 		new Task(finish, f, here).finish(worker);
 		final List<Throwable> exceptions = finish.exceptions();
+		if (exceptions instanceof ExceptionSummary.Result) {
+			final ExceptionSummary.Result result = (ExceptionSummary.Result) exceptions;
+			throw MultipleException.make(result, result.occurrences, result.omitted);
+		}
 		if (exceptions != null) {
 			throw MultipleException.make(exceptions);
 		}
@@ -541,8 +652,13 @@ public final class GlobalRuntimeImpl extends GlobalRuntime {
 	public void async(Job f) {
 		final Worker worker = currentWorker();
 		final Finish finish = worker == null || worker.task == null ? NullFinish.SINGLETON : worker.task.finish;
-		finish.spawn(here);
-		new Task(finish, f, here).async(worker);
+		if (fusedAsync) {
+			finish.spawnAndSubmit(here);
+			Task.make(worker, finish, f, here).enqueue(worker);
+		} else {
+			finish.spawn(here);
+			new Task(finish, f, here).async(worker);
+		}
 	}
 
 	/**
@@ -559,6 +675,29 @@ public final class GlobalRuntimeImpl extends GlobalRuntime {
 		new Task(finish, f, here).asyncAt(p.id);
 	}
 
+	/**
+	 * Submits a task with body {@code f} to each place of the given collection
+	 * and returns immediately.
+	 * <p>
+	 * {@code f} is serialized once and the resulting bytes are forwarded along a
+	 * tree spanning the places. All the tasks are governed by the enclosing finish.
+	 * Dead places are reported to the enclosing finish as
+	 * {@link apgas.DeadPlaceException} instances.
+	 *
+	 * @param places the places of execution, with no repetition
+	 * @param f      the function to run
+	 */
+	public void asyncAtAll(Collection<? extends Place> places, SerializableJob f) {
+		final int[] ids = new int[places.size()];
+		int i = 0;
+		for (final Place p : places) {
+			ids[i++] = p.id;
+		}
+		if (i > 0) {
+			Broadcast.fanOut(Serialization.write(f, -1, i), ids, 0, i);
+		}
+	}
+
 	/**
 	 * Submits an uncounted task to the global runtime to be run at {@link Place}
 	 * {@code p} with body {@code f} and returns immediately. The termination of
@@ -573,14 +712,27 @@ public final class GlobalRuntimeImpl extends GlobalRuntime {
 	}
 
 	/**
-	 * /** Submits an immediate task to the global runtime to be run at
-	 * {@link Place} {@code p} with body {@code f}.
+	 * Submits an immediate task to the global runtime to be run at {@link Place}
+	 * {@code p} with body {@code f}.
+	 * <p>
+	 * The task runs on one of the dedicated handler threads of place {@code p}
+	 * rather than on a worker thread, see {@link Config#APGAS_IMMEDIATE_THREADS}.
 	 *
 	 * @param p the place of execution
 	 * @param f the function to run
 	 */
 	public void immediateAsyncAt(Place p, SerializableRunnable f) {
-		transport.send(p.id, f);
+		transport.send(p.id, new ImmediateTask(f));
+	}
+
+	/**
+	 * Returns the executor running the immediate tasks of this place, which
+	 * exposes their metrics.
+	 *
+	 * @return the immediate executor
+	 */
+	public ImmediateExecutor immediateExecutor() {
+		return immediateExecutor;
 	}
 
 	/**
@@ -616,6 +768,27 @@ public final class GlobalRuntimeImpl extends GlobalRuntime {
 		return (T) id.removeHere();
 	}
 
+	/**
+	 * Evaluates {@code f} at {@link Place} {@code p} and returns immediately a
+	 * future of the result.
+	 * <p>
+	 * The evaluation is not tracked by the enclosing finish and the tasks spawned
+	 * by {@code f} are not awaited. The future is completed by a single reply
+	 * message, exceptionally if {@code f} throws an exception, if the result
+	 * cannot be serialized, or if place {@code p} dies. Dependent actions that
+	 * are not asynchronous run on the handler thread receiving the reply and must
+	 * not block.
+	 *
+	 * @param <T> the type of the result (must implement java.io.Serializable)
+	 * @param p   the place of execution
+	 * @param f   the function to run
+	 * @return the future of the result
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends Serializable> CompletableFuture<T> asyncAtFuture(Place p, SerializableCallable<T> f) {
+		return (CompletableFuture<T>) (CompletableFuture<?>) RemoteFuture.asyncAt(p.id, f);
+	}
+
 	/**
 	 * Returns the current {@link Place}.
 	 *
@@ -658,6 +831,16 @@ public final class GlobalRuntimeImpl extends GlobalRuntime {
 		return pool;
 	}
 
+	@Override
+	public int setParallelism(int parallelism) {
+		return this.parallelism.set(parallelism);
+	}
+
+	@Override
+	public int getParallelism() {
+		return parallelism.get();
+	}
+
 	/**
 	 * Submits a task to the pool making sure that a thread will be available to run
 	 * it. run.
@@ -0,0 +1,195 @@
+/*
+ *  This file is part of the X10 project (http://x10-lang.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  (C) Copyright IBM Corporation 2006-2016.
+ */
+
+package apgas.impl;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@link ImmediateExecutor} class runs immediate tasks on a small pool of
+ * dedicated handler threads.
+ * <p>
+ * Immediate tasks are handed off by the transport threads that receive them
+ * without blocking, so that a slow handler cannot stall the network. The
+ * handler threads are not part of the worker pool, hence immediate tasks keep
+ * a predictable latency even if all workers are busy.
+ * <p>
+ * Each handler is timed. Handlers running longer than the configured budget
+ * are counted and reported on System.err, at most once every
+ * {@link #REPORT_INTERVAL} nanoseconds.
+ */
+public final class ImmediateExecutor {
+	/**
+	 * The minimal interval between two reports of over-budget handlers in
+	 * nanoseconds.
+	 */
+	static final long REPORT_INTERVAL = TimeUnit.SECONDS.toNanos(10);
+
+	/**
+	 * The handler threads or null if immediate tasks run on the receiving thread.
+	 */
+	private final ThreadPoolExecutor executor;
+
+	/**
+	 * The run-time budget of a handler in nanoseconds.
+	 */
+	private final long budget;
+
+	private final LongAdder completed = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private final LongAdder overBudget = new LongAdder();
+	private final LongAdder totalTime = new LongAdder();
+	private final AtomicLong maxTime = new AtomicLong();
+
+	/**
+	 * The time of the last report of an over-budget handler.
+	 */
+	private final AtomicLong lastReport = new AtomicLong(System.nanoTime() - REPORT_INTERVAL);
+
+	/**
+	 * Constructs a new {@link ImmediateExecutor}.
+	 *
+	 * @param threads the number of handler threads, 0 to run immediate tasks on
+	 *                the receiving thread
+	 * @param budget  the run-time budget of a handler in microseconds
+	 */
+	ImmediateExecutor(int threads, long budget) {
+		this.budget = TimeUnit.MICROSECONDS.toNanos(budget);
+		if (threads <= 0) {
+			executor = null;
+			return;
+		}
+		final AtomicInteger count = new AtomicInteger();
+		executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+				r -> {
+					final Thread t = new Thread(r, "apgas-immediate-" + count.getAndIncrement());
+					t.setDaemon(true);
+					t.setPriority(Thread.MAX_PRIORITY);
+					return t;
+				});
+		executor.prestartAllCoreThreads();
+	}
+
+	/**
+	 * Schedules an immediate task. Never blocks.
+	 *
+	 * @param f the task to run
+	 */
+	void execute(Runnable f) {
+		if (executor == null) {
+			run(f);
+		} else {
+			executor.execute(() -> run(f));
+		}
+	}
+
+	/**
+	 * Runs and times an immediate task.
+	 *
+	 * @param f the task to run
+	 */
+	private void run(Runnable f) {
+		final long start = System.nanoTime();
+		try {
+			f.run();
+		} catch (final Throwable t) {
+			failed.increment();
+			System.err.println("[APGAS] Uncaught exception in immediate task");
+			System.err.println("[APGAS] Caused by: " + t);
+			System.err.println("[APGAS] Ignoring...");
+		}
+		final long time = System.nanoTime() - start;
+		completed.increment();
+		totalTime.add(time);
+		long max;
+		while (time > (max = maxTime.get()) && !maxTime.compareAndSet(max, time)) {
+		}
+		if (time > budget) {
+			overBudget.increment();
+			final long now = System.nanoTime();
+			final long last = lastReport.get();
+			if (now - last >= REPORT_INTERVAL && lastReport.compareAndSet(last, now)) {
+				System.err.println("[APGAS] Immediate task " + f.getClass().getName() + " ran for "
+						+ TimeUnit.NANOSECONDS.toMicros(time) + "us, exceeding its budget of "
+						+ TimeUnit.NANOSECONDS.toMicros(budget) + "us (" + overBudget.sum()
+						+ " immediate tasks over budget so far)");
+			}
+		}
+	}
+
+	/**
+	 * Stops the handler threads.
+	 */
+	void shutdown() {
+		if (executor != null) {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Returns the number of immediate tasks completed at this place.
+	 *
+	 * @return the completed task count
+	 */
+	public long completed() {
+		return completed.sum();
+	}
+
+	/**
+	 * Returns the number of immediate tasks that threw an exception.
+	 *
+	 * @return the failed task count
+	 */
+	public long failed() {
+		return failed.sum();
+	}
+
+	/**
+	 * Returns the number of immediate tasks that exceeded their run-time budget.
+	 *
+	 * @return the over-budget task count
+	 */
+	public long overBudget() {
+		return overBudget.sum();
+	}
+
+	/**
+	 * Returns the number of immediate tasks waiting for a handler thread.
+	 *
+	 * @return the queue length
+	 */
+	public int queued() {
+		return executor == null ? 0 : executor.getQueue().size();
+	}
+
+	/**
+	 * Returns the cumulated run time of the immediate tasks in nanoseconds.
+	 *
+	 * @return the total run time
+	 */
+	public long totalTime() {
+		return totalTime.sum();
+	}
+
+	/**
+	 * Returns the longest run time of an immediate task in nanoseconds.
+	 *
+	 * @return the maximal run time
+	 */
+	public long maxTime() {
+		return maxTime.get();
+	}
+}
@@ -0,0 +1,43 @@
+/*
+ *  This file is part of the X10 project (http://x10-lang.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  (C) Copyright IBM Corporation 2006-2016.
+ */
+
+package apgas.impl;
+
+/**
+ * The {@link ImmediateTask} class wraps the body of an immediate task so that
+ * the receiving transport thread hands it off to the {@link ImmediateExecutor}
+ * of the destination place.
+ */
+final class ImmediateTask implements SerializableRunnable {
+	private static final long serialVersionUID = 3178521446720127462L;
+
+	/**
+	 * The function to run.
+	 */
+	private final SerializableRunnable f;
+
+	/**
+	 * Constructs a new {@link ImmediateTask}.
+	 *
+	 * @param f the function to run
+	 */
+	ImmediateTask(SerializableRunnable f) {
+		this.f = f;
+	}
+
+	/**
+	 * Submits the task to the immediate executor.
+	 */
+	@Override
+	public void run() {
+		GlobalRuntimeImpl.getRuntime().immediateExecutor.execute(f);
+	}
+}
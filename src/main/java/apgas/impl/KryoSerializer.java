@@ -4,12 +4,17 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.reflect.Method;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.objenesis.instantiator.ObjectInstantiator;
 import org.objenesis.strategy.InstantiatorStrategy;
 import org.objenesis.strategy.SerializingInstantiatorStrategy;
 
+import com.esotericsoftware.kryo.ClassResolver;
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.Serializer;
 import com.esotericsoftware.kryo.io.Input;
@@ -17,13 +22,18 @@ import com.esotericsoftware.kryo.io.Output;
 import com.esotericsoftware.kryo.io.UnsafeInput;
 import com.esotericsoftware.kryo.io.UnsafeOutput;
 import com.esotericsoftware.kryo.serializers.ClosureSerializer;
+import com.esotericsoftware.kryo.serializers.FieldSerializer;
+import com.esotericsoftware.kryo.util.DefaultClassResolver;
+import com.esotericsoftware.kryo.util.MapReferenceResolver;
 import com.hazelcast.nio.ObjectDataInput;
 import com.hazelcast.nio.ObjectDataOutput;
 import com.hazelcast.nio.serialization.StreamSerializer;
 
 import apgas.Place;
 import apgas.util.GlobalID;
+import apgas.util.PlaceLocal;
 import apgas.util.PlaceLocalObject;
+import apgas.util.RuntimeHooks;
 import apgas.util.SerializableWithReplace;
 
 /**
@@ -32,12 +42,70 @@ import apgas.util.SerializableWithReplace;
  */
 public class KryoSerializer implements StreamSerializer<Object> {
 
+	/**
+	 * The user registrations in registration order. The map is replaced on each
+	 * registration so that Kryo instances may be created concurrently.
+	 */
 	@SuppressWarnings("rawtypes")
-	private static HashMap<Class, Serializer> additionalRegistrations = new HashMap<>();
+	private static volatile Map<Class, Serializer> additionalRegistrations = Collections.emptyMap();
+
+	@SuppressWarnings("rawtypes")
+	private static Set<Class> acyclicClasses = ConcurrentHashMap.newKeySet();
+
+	static {
+		acyclicClasses.add(PlaceLocal.class);
+	}
+
+	@SuppressWarnings("rawtypes")
+	private static Set<Class> immutableClasses = ConcurrentHashMap.newKeySet();
 
 	@SuppressWarnings("rawtypes")
 	public static void registerClass(Class clazz, Serializer serializer) {
-		additionalRegistrations.put(clazz, serializer);
+		addRegistration(clazz, serializer, true);
+	}
+
+	@SuppressWarnings("rawtypes")
+	private static synchronized void addRegistration(Class clazz, Serializer serializer, boolean replace) {
+		final Map<Class, Serializer> registrations = new LinkedHashMap<>(additionalRegistrations);
+		if (replace || !registrations.containsKey(clazz)) {
+			registrations.put(clazz, serializer);
+		}
+		additionalRegistrations = registrations;
+	}
+
+	/**
+	 * Registers a class whose instances are never part of a cycle or shared
+	 * within a message.
+	 * <p>
+	 * Kryo does not track references to instances of this class, saving an
+	 * identity map lookup per instance. An instance reachable twice from a
+	 * message is deserialized as two copies. Unless a serializer is registered
+	 * for the class using {@link #registerClass(Class, Serializer)}, instances are
+	 * serialized with a field serializer using generated field accessors.
+	 * <p>
+	 * Like {@link #registerClass(Class, Serializer)}, this method must be invoked
+	 * in every place before the global runtime is initialized.
+	 *
+	 * @param clazz the class to register
+	 */
+	@SuppressWarnings("rawtypes")
+	public static void registerAcyclicClass(Class clazz) {
+		acyclicClasses.add(clazz);
+		addRegistration(clazz, null, false);
+	}
+
+	/**
+	 * Registers an acyclic class whose instances are immutable.
+	 * <p>
+	 * In addition to the effects of {@link #registerAcyclicClass(Class)}, Kryo
+	 * copies of instances of this class return the instances themselves.
+	 *
+	 * @param clazz the class to register
+	 */
+	@SuppressWarnings("rawtypes")
+	public static void registerImmutableClass(Class clazz) {
+		immutableClasses.add(clazz);
+		registerAcyclicClass(clazz);
 	}
 
 	private static InstantiatorStrategy instantiatorStrategy = new DefaultForColInstantiatorStrategy();
@@ -54,7 +122,22 @@ public class KryoSerializer implements StreamSerializer<Object> {
 	};
 
 	public static final Kryo getKryoInstance() {
-		final Kryo kryo = new Kryo() {
+		return getKryoInstance(new DefaultClassResolver());
+	}
+
+	/**
+	 * Returns a new Kryo instance using the given class resolver.
+	 *
+	 * @param resolver the class resolver
+	 * @return the Kryo instance
+	 */
+	public static final Kryo getKryoInstance(ClassResolver resolver) {
+		final Kryo kryo = new Kryo(resolver, new SelectiveReferenceResolver()) {
+			/**
+			 * The profiling state of this instance.
+			 */
+			private final SerializationProfiler.State profile = new SerializationProfiler.State();
+
 			@Override
 			@SuppressWarnings({ "rawtypes", "unchecked" })
 			protected Serializer newDefaultSerializer(Class type) {
@@ -65,6 +148,39 @@ public class KryoSerializer implements StreamSerializer<Object> {
 				}
 				return super.newDefaultSerializer(type);
 			}
+
+			@Override
+			public void writeClassAndObject(Output output, Object object) {
+				final SerializationProfiler.State s = SerializationProfiler.enter(profile, getDepth());
+				if (s == null) {
+					super.writeClassAndObject(output, object);
+					return;
+				}
+				final long bytes = output.total();
+				final long time = System.nanoTime();
+				try {
+					super.writeClassAndObject(output, object);
+				} finally {
+					SerializationProfiler.wrote(s, object, output.total() - bytes, System.nanoTime() - time);
+				}
+			}
+
+			@Override
+			public Object readClassAndObject(Input input) {
+				final SerializationProfiler.State s = SerializationProfiler.enter(profile, getDepth());
+				if (s == null) {
+					return super.readClassAndObject(input);
+				}
+				final long bytes = input.total();
+				final long time = System.nanoTime();
+				Object object = null;
+				try {
+					object = super.readClassAndObject(input);
+					return object;
+				} finally {
+					SerializationProfiler.read(s, object, input.total() - bytes, System.nanoTime() - time);
+				}
+			}
 		};
 		kryo.addDefaultSerializer(DefaultFinish.class, new DefaultFinishSerializer());
 		kryo.addDefaultSerializer(DebugFinish.class, new DebugFinishSerializer());
@@ -72,19 +188,33 @@ public class KryoSerializer implements StreamSerializer<Object> {
 		kryo.setInstantiatorStrategy(instantiatorStrategy);
 		kryo.register(Task.class);
 		kryo.register(UncountedTask.class);
+		kryo.register(Broadcast.class);
+		kryo.register(ImmediateTask.class);
+		kryo.register(RemoteFuture.Reply.class);
+		kryo.register(TaskFrame.class);
 		kryo.register(Place.class);
 		kryo.register(GlobalID.class);
+		kryo.register(PlaceLocal.class);
 		kryo.register(java.lang.invoke.SerializedLambda.class);
 		kryo.register(ClosureSerializer.Closure.class, new ClosureSerializer2());
 		try {
 			kryo.register(Class.forName(PlaceLocalObject.class.getName() + "$ObjectReference"));
 		} catch (final ClassNotFoundException e) {
 		}
+		RuntimeHooks.register(kryo);
 		additionalRegistrations.forEach(
 				(@SuppressWarnings("rawtypes") Class clazz, @SuppressWarnings("rawtypes") Serializer serializer) -> {
-					if (serializer == null) {
+					if (serializer == null && acyclicClasses.contains(clazz)) {
+						final FieldSerializer<?> fields = new FieldSerializer<>(kryo, clazz);
+						fields.setUseAsm(true);
+						fields.setImmutable(immutableClasses.contains(clazz));
+						kryo.register(clazz, fields);
+					} else if (serializer == null) {
 						kryo.register(clazz);
 					} else {
+						if (immutableClasses.contains(clazz)) {
+							serializer.setImmutable(true);
+						}
 						kryo.register(clazz, serializer);
 					}
 				});
@@ -115,6 +245,17 @@ public class KryoSerializer implements StreamSerializer<Object> {
 	public void destroy() {
 	}
 
+	/**
+	 * A reference resolver skipping classes registered as acyclic.
+	 */
+	private static class SelectiveReferenceResolver extends MapReferenceResolver {
+		@Override
+		@SuppressWarnings("rawtypes")
+		public boolean useReferences(Class type) {
+			return !acyclicClasses.contains(type) && super.useReferences(type);
+		}
+	}
+
 	private static class CustomSerializer extends Serializer<Object> {
 		@Override
 		public void write(Kryo kryo, Output output, Object object) {
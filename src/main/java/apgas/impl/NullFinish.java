@@ -36,6 +36,10 @@ final class NullFinish implements Serializable, Finish {
   public void spawn(int p) {
   }
 
+  @Override
+  public void spawnAndSubmit(int p) {
+  }
+
   @Override
   public void unspawn(int p) {
   }
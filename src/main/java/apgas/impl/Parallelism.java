@@ -0,0 +1,163 @@
+/*
+ *  This file is part of the X10 project (http://x10-lang.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  (C) Copyright IBM Corporation 2006-2016.
+ */
+
+package apgas.impl;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The {@link Parallelism} class controls the target parallelism of the worker
+ * pool of a place.
+ * <p>
+ * The pool is created with {@link Config#APGAS_MAX_THREADS} as parallelism so
+ * that it may create up to that many workers. The target parallelism is then
+ * lowered by offsetting the active count stored in the control word of the
+ * pool. Changing this offset at run time adjusts the number of workers the pool
+ * keeps active, while workers blocked in {@link ForkJoinPool#managedBlock} are
+ * still compensated by the pool itself.
+ * <p>
+ * If {@link Config#APGAS_ADAPTIVE} is set, a daemon thread periodically samples
+ * the pool and grows the target parallelism when tasks are queued and all
+ * target workers are running, or shrinks it when the queues are empty and most
+ * workers are idle. Blocked workers do not count as running, so the controller
+ * does not compete with compensation threads.
+ */
+final class Parallelism {
+	/**
+	 * The atomic methods of {@code sun.misc.Unsafe}, bound to the instance and
+	 * accessed via method handles as the pool's control word must be updated
+	 * atomically and the class is not part of the Java 8 API.
+	 */
+	private static final MethodHandle getLongVolatile;
+	private static final MethodHandle compareAndSwapLong;
+	private static final long CTL;
+
+	static {
+		try {
+			final Class<?> unsafe = Class.forName("sun.misc.Unsafe");
+			final Field theUnsafe = unsafe.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			final Object u = theUnsafe.get(null);
+			final MethodHandles.Lookup lookup = MethodHandles.lookup();
+			getLongVolatile = lookup.unreflect(unsafe.getMethod("getLongVolatile", Object.class, long.class))
+					.bindTo(u);
+			compareAndSwapLong = lookup.unreflect(
+					unsafe.getMethod("compareAndSwapLong", Object.class, long.class, long.class, long.class))
+					.bindTo(u);
+			CTL = (Long) unsafe.getMethod("objectFieldOffset", Field.class).invoke(u,
+					ForkJoinPool.class.getDeclaredField("ctl"));
+		} catch (final ReflectiveOperationException e) {
+			throw new Error(e);
+		}
+	}
+
+	/**
+	 * The controlled pool.
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * The parallelism the pool was created with.
+	 */
+	private final int maxThreads;
+
+	/**
+	 * The current target parallelism.
+	 */
+	private int parallelism;
+
+	/**
+	 * Constructs a new {@link Parallelism} instance and sets the initial target
+	 * parallelism of the pool.
+	 *
+	 * @param pool        the pool to control
+	 * @param maxThreads  the parallelism the pool was created with
+	 * @param parallelism the initial target parallelism
+	 */
+	Parallelism(ForkJoinPool pool, int maxThreads, int parallelism) {
+		this.pool = pool;
+		this.maxThreads = maxThreads;
+		this.parallelism = maxThreads;
+		set(parallelism);
+	}
+
+	/**
+	 * Returns the current target parallelism.
+	 *
+	 * @return the target parallelism
+	 */
+	synchronized int get() {
+		return parallelism;
+	}
+
+	/**
+	 * Sets the target parallelism, bounded by 1 and the parallelism the pool was
+	 * created with.
+	 *
+	 * @param n the desired parallelism
+	 * @return the new target parallelism
+	 */
+	synchronized int set(int n) {
+		n = Math.max(1, Math.min(n, maxThreads));
+		final long delta = ((long) parallelism - n) << 48;
+		final Object pool = this.pool;
+		try {
+			long c;
+			do {
+				c = (long) getLongVolatile.invokeExact(pool, CTL);
+			} while (!(boolean) compareAndSwapLong.invokeExact(pool, CTL, c, c + delta));
+		} catch (final Throwable e) {
+			throw new Error(e);
+		}
+		parallelism = n;
+		return n;
+	}
+
+	/**
+	 * Starts the adaptive controller.
+	 *
+	 * @param min    the lower bound on the target parallelism
+	 * @param max    the upper bound on the target parallelism
+	 * @param period the sampling period in milliseconds
+	 */
+	void adapt(int min, int max, long period) {
+		final Thread controller = new Thread(() -> {
+			while (!pool.isShutdown()) {
+				try {
+					Thread.sleep(period);
+				} catch (final InterruptedException e) {
+				}
+				step(min, max);
+			}
+		}, "apgas-parallelism");
+		controller.setDaemon(true);
+		controller.start();
+	}
+
+	/**
+	 * Samples the pool and adjusts the target parallelism by at most one.
+	 *
+	 * @param min the lower bound on the target parallelism
+	 * @param max the upper bound on the target parallelism
+	 */
+	synchronized void step(int min, int max) {
+		final long queued = pool.getQueuedTaskCount() + pool.getQueuedSubmissionCount();
+		final int running = pool.getRunningThreadCount();
+		if (queued > parallelism && running >= parallelism && parallelism < max) {
+			set(parallelism + 1);
+		} else if (queued == 0 && running < parallelism / 2 && parallelism > min) {
+			set(parallelism - 1);
+		}
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ *  This file is part of the X10 project (http://x10-lang.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  (C) Copyright IBM Corporation 2006-2016.
+ */
+
+package apgas.impl;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import apgas.DeadPlaceException;
+import apgas.Place;
+import apgas.SerializableCallable;
+
+/**
+ * The {@link RemoteFuture} class implements
+ * {@link GlobalRuntimeImpl#asyncAtFuture(Place, SerializableCallable)}.
+ * <p>
+ * The function is evaluated by an uncounted task at the destination place. The
+ * result or exception is sent back as an immediate task, which completes the
+ * future registered under the number of the request.
+ */
+final class RemoteFuture extends CompletableFuture<Object> {
+	/**
+	 * The request counter of this place.
+	 */
+	private static final AtomicLong counter = new AtomicLong();
+
+	/**
+	 * The futures awaiting a reply, by request number.
+	 */
+	private static final Map<Long, RemoteFuture> pending = new ConcurrentHashMap<>();
+
+	/**
+	 * The place evaluating the function.
+	 */
+	private final int place;
+
+	private RemoteFuture(int place) {
+		this.place = place;
+	}
+
+	/**
+	 * Evaluates {@code f} at place {@code p}.
+	 *
+	 * @param p the place of execution
+	 * @param f the function to evaluate
+	 * @return the future of the result
+	 */
+	static CompletableFuture<Object> asyncAt(int p, SerializableCallable<?> f) {
+		final GlobalRuntimeImpl runtime = GlobalRuntimeImpl.getRuntime();
+		final int home = runtime.here;
+		final long request = counter.incrementAndGet();
+		final RemoteFuture future = new RemoteFuture(p);
+		pending.put(request, future);
+		try {
+			new UncountedTask(() -> evaluate(home, request, f)).uncountedAsyncAt(p);
+		} catch (final Throwable t) {
+			pending.remove(request);
+			future.completeExceptionally(t);
+		}
+		return future;
+	}
+
+	/**
+	 * Completes with a {@link DeadPlaceException} the futures awaiting a reply
+	 * from the given place.
+	 *
+	 * @param p the ID of the dead place
+	 */
+	static void purge(int p) {
+		final Iterator<RemoteFuture> it = pending.values().iterator();
+		while (it.hasNext()) {
+			final RemoteFuture future = it.next();
+			if (future.place == p) {
+				it.remove();
+				future.completeExceptionally(new DeadPlaceException(new Place(p)));
+			}
+		}
+	}
+
+	private static void evaluate(int home, long request, SerializableCallable<?> f) {
+		final GlobalRuntimeImpl runtime = GlobalRuntimeImpl.getRuntime();
+		Reply reply;
+		try {
+			reply = new Reply(request, f.call(), null);
+		} catch (final Throwable t) {
+			reply = new Reply(request, null, new SerializableThrowable(t));
+		}
+		try {
+			runtime.transport.send(home, new ImmediateTask(reply));
+		} catch (final DeadPlaceException e) {
+			// nobody is waiting for the result
+		} catch (final Throwable t) {
+			// the result could not be serialized
+			runtime.transport.send(home, new ImmediateTask(new Reply(request, null, new SerializableThrowable(t))));
+		}
+	}
+
+	/**
+	 * The reply to a request.
+	 */
+	static final class Reply implements SerializableRunnable {
+		private static final long serialVersionUID = 6934458437612803541L;
+
+		/**
+		 * The number of the request.
+		 */
+		private final long request;
+
+		/**
+		 * The result of the evaluation.
+		 */
+		private final Object result;
+
+		/**
+		 * The exception thrown by the evaluation or null.
+		 */
+		private final SerializableThrowable error;
+
+		private Reply(long request, Object result, SerializableThrowable error) {
+			this.request = request;
+			this.result = result;
+			this.error = error;
+		}
+
+		@Override
+		public void run() {
+			final RemoteFuture future = pending.remove(request);
+			if (future == null) {
+				return;
+			}
+			if (error == null) {
+				future.complete(result);
+			} else {
+				future.completeExceptionally(error.t);
+			}
+		}
+	}
+}
@@ -0,0 +1,165 @@
+/*
+ *  This file is part of the X10 project (http://x10-lang.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  (C) Copyright IBM Corporation 2006-2016.
+ */
+
+package apgas.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+
+import com.esotericsoftware.kryo.ClassResolver;
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.UnsafeInput;
+import com.esotericsoftware.kryo.io.UnsafeOutput;
+
+/**
+ * The {@link Serialization} class converts objects to and from byte arrays
+ * using the serialization framework selected for the global runtime.
+ * <p>
+ * It is used to serialize a payload once and ship the resulting bytes many
+ * times, and to encode task frames. If enabled, the Kryo instances used for
+ * frames resolve unregistered classes using the {@link ClassDictionary}.
+ * <p>
+ * Kryo streams use native byte order so that primitive arrays are copied as raw
+ * memory regions. All places are assumed to share the same architecture.
+ */
+public final class Serialization {
+	/**
+	 * The number of places the object being serialized by the current thread will
+	 * be deserialized at.
+	 */
+	private static final ThreadLocal<int[]> copies = new ThreadLocal<int[]>() {
+		@Override
+		protected int[] initialValue() {
+			return new int[] { 1 };
+		}
+	};
+
+	/**
+	 * The Kryo instances used for frames.
+	 */
+	private static final ThreadLocal<Kryo> kryoThreadLocal = new ThreadLocal<Kryo>() {
+		@Override
+		protected Kryo initialValue() {
+			if (!GlobalRuntimeImpl.getRuntime().classDictionary) {
+				return KryoSerializer.getKryoInstance();
+			}
+			final ClassDictionary.Resolver resolver = new ClassDictionary.Resolver();
+			final Kryo kryo = KryoSerializer.getKryoInstance(resolver);
+			resolver.check();
+			return kryo;
+		}
+	};
+
+	/**
+	 * Prevents instantiation.
+	 */
+	private Serialization() {
+	}
+
+	/**
+	 * Returns the number of places the object being serialized by the current
+	 * thread will be deserialized at.
+	 * <p>
+	 * Objects splitting a resource among their serialized copies, such as
+	 * {@link apgas.util.CountedGlobalRef} instances, use this number to give a
+	 * share to each copy. Returns 1 outside of a serialization.
+	 *
+	 * @return the number of copies
+	 */
+	public static int copies() {
+		return copies.get()[0];
+	}
+
+	/**
+	 * Serializes the given object for the given destination place.
+	 *
+	 * @param object      the object to serialize
+	 * @param destination the destination place ID or -1 if unknown
+	 * @return the serialized bytes
+	 * @throws UncheckedIOException if Java serialization fails
+	 */
+	static byte[] write(Object object, int destination) {
+		return write(object, destination, 1);
+	}
+
+	/**
+	 * Serializes the given object once for the given number of places.
+	 *
+	 * @param object      the object to serialize
+	 * @param destination the destination place ID or -1 if unknown or many
+	 * @param count       the number of places the bytes will be deserialized at
+	 * @return the serialized bytes
+	 * @throws UncheckedIOException if Java serialization fails
+	 */
+	static byte[] write(Object object, int destination, int count) {
+		final int[] c = copies.get();
+		final int previous = c[0];
+		c[0] = count;
+		try {
+			return encode(object, destination);
+		} finally {
+			c[0] = previous;
+		}
+	}
+
+	private static byte[] encode(Object object, int destination) {
+		if (GlobalRuntimeImpl.getRuntime().kryo) {
+			final Kryo kryo = kryoThreadLocal.get();
+			final ClassResolver resolver = kryo.getClassResolver();
+			if (resolver instanceof ClassDictionary.Resolver) {
+				((ClassDictionary.Resolver) resolver).destination = destination;
+			}
+			try {
+				final UnsafeOutput output = new UnsafeOutput(256, -1);
+				output.supportVarInts(true);
+				kryo.writeClassAndObject(output, object);
+				return output.toBytes();
+			} finally {
+				if (resolver instanceof ClassDictionary.Resolver) {
+					((ClassDictionary.Resolver) resolver).destination = -1;
+				}
+			}
+		}
+		try {
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			final ObjectOutputStream out = new ObjectOutputStream(bytes);
+			out.writeObject(object);
+			out.close();
+			return bytes.toByteArray();
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Deserializes an object.
+	 *
+	 * @param bytes the serialized bytes
+	 * @return the deserialized object
+	 * @throws IOException            if Java deserialization fails
+	 * @throws ClassNotFoundException if the class of the serialized object cannot
+	 *                                be found
+	 */
+	static Object read(byte[] bytes) throws IOException, ClassNotFoundException {
+		if (GlobalRuntimeImpl.getRuntime().kryo) {
+			final UnsafeInput input = new UnsafeInput(bytes);
+			input.setVarIntsEnabled(true);
+			return kryoThreadLocal.get().readClassAndObject(input);
+		}
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+			return in.readObject();
+		}
+	}
+}
@@ -0,0 +1,386 @@
+/*
+ *  This file is part of the X10 project (http://x10-lang.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  (C) Copyright IBM Corporation 2006-2016.
+ */
+
+package apgas.impl;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import javax.management.ObjectName;
+
+/**
+ * The {@link SerializationProfiler} class records the cost of Kryo
+ * serialization per closure.
+ * <p>
+ * One in {@link Config#APGAS_SERIALIZATION_PROFILE} messages is profiled. For a
+ * profiled message, the profiler records the bytes and time spent serializing
+ * and deserializing the message and every nested object written with its
+ * class, e.g., the job of a task, the elements of object arrays, and captured
+ * lambda arguments. Figures are inclusive of nested objects.
+ * <p>
+ * Messages are attributed to their closure: the job of a task, i.e., the first
+ * object other than a finish directly nested in a {@link Task},
+ * {@link UncountedTask}, or {@link ImmediateTask}, or the message itself
+ * otherwise. Nested objects are attributed to the closure of their message and
+ * their class.
+ * <p>
+ * The statistics are exported through an MBean named
+ * {@code apgas:type=SerializationProfiler,place=<id>} and printed to System.err
+ * on exit.
+ */
+public final class SerializationProfiler implements SerializationProfilerMBean {
+	/**
+	 * The profiler of this place or null if profiling is disabled.
+	 */
+	private static volatile SerializationProfiler profiler;
+
+	/**
+	 * The statistics of a class.
+	 */
+	private static final class Stats {
+		final LongAdder writes = new LongAdder();
+		final LongAdder bytesWritten = new LongAdder();
+		final LongAdder writeTime = new LongAdder();
+		final LongAdder reads = new LongAdder();
+		final LongAdder bytesRead = new LongAdder();
+		final LongAdder readTime = new LongAdder();
+	}
+
+	/**
+	 * The key of the statistics of a nested object.
+	 */
+	private static final class Key {
+		final Class<?> closure;
+		final Class<?> type;
+
+		Key(Class<?> closure, Class<?> type) {
+			this.closure = closure;
+			this.type = type;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Key && ((Key) o).closure == closure && ((Key) o).type == type;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(closure, type);
+		}
+
+		@Override
+		public String toString() {
+			return closure.getName() + " / " + type.getName();
+		}
+	}
+
+	/**
+	 * A nested object of the message being profiled.
+	 */
+	private static final class Record {
+		final Class<?> type;
+		final long bytes;
+		final long time;
+
+		Record(Class<?> type, long bytes, long time) {
+			this.type = type;
+			this.bytes = bytes;
+			this.time = time;
+		}
+	}
+
+	/**
+	 * The profiling state of a Kryo instance.
+	 * <p>
+	 * Since Kryo instances are confined to a thread, so is the state.
+	 */
+	static final class State {
+		/**
+		 * True if the current message is sampled.
+		 */
+		boolean sampled;
+
+		/**
+		 * The number of messages processed by this instance.
+		 */
+		int count;
+
+		/**
+		 * The nesting depth of the object being processed.
+		 */
+		int depth;
+
+		/**
+		 * The class of the first object other than a finish directly nested in
+		 * the current message, or null.
+		 */
+		Class<?> closure;
+
+		/**
+		 * The nested objects of the current message, recorded once the closure of
+		 * the message is known.
+		 */
+		final List<Record> nested = new ArrayList<>();
+	}
+
+	/**
+	 * The sampling period.
+	 */
+	private final int period;
+
+	/**
+	 * The statistics of messages per closure.
+	 */
+	private final Map<Class<?>, Stats> top = new ConcurrentHashMap<>();
+
+	/**
+	 * The statistics of nested objects per closure and class.
+	 */
+	private final Map<Key, Stats> nested = new ConcurrentHashMap<>();
+
+	private final LongAdder sampledWrites = new LongAdder();
+	private final LongAdder sampledReads = new LongAdder();
+
+	/**
+	 * Constructs a new {@link SerializationProfiler}.
+	 *
+	 * @param period the sampling period
+	 */
+	private SerializationProfiler(int period) {
+		this.period = period;
+	}
+
+	/**
+	 * Enables profiling at this place.
+	 *
+	 * @param period the sampling period
+	 * @param here   the ID of this place
+	 */
+	static void start(int period, int here) {
+		final SerializationProfiler p = new SerializationProfiler(period);
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(p,
+					new ObjectName("apgas:type=SerializationProfiler,place=" + here));
+		} catch (final Exception e) {
+			System.err.println("[APGAS] Unable to register serialization profiler MBean: " + e);
+		}
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			System.err.println("[APGAS] Serialization profile of place " + here);
+			System.err.print(p.getReport());
+		}));
+		profiler = p;
+	}
+
+	/**
+	 * Returns the profiler of this place.
+	 *
+	 * @return the profiler or null if profiling is disabled
+	 */
+	public static SerializationProfiler get() {
+		return profiler;
+	}
+
+	/**
+	 * Enters the serialization or deserialization of an object.
+	 * <p>
+	 * Whether a message is sampled is decided when entering its top-level
+	 * object. Objects of unsampled messages are not measured.
+	 *
+	 * @param s     the profiling state of the Kryo instance
+	 * @param depth the depth of the Kryo instance
+	 * @return the state if the object must be profiled, null otherwise
+	 */
+	static State enter(State s, int depth) {
+		final SerializationProfiler p = profiler;
+		if (p == null) {
+			return null;
+		}
+		if (depth == 0) {
+			s.sampled = ++s.count % p.period == 0;
+		}
+		if (!s.sampled) {
+			return null;
+		}
+		s.depth++;
+		return s;
+	}
+
+	/**
+	 * Exits the serialization of an object.
+	 *
+	 * @param s      the state returned by {@link #enter(State, int)}
+	 * @param object the object or null
+	 * @param bytes  the bytes written
+	 * @param time   the time spent in nanoseconds
+	 */
+	static void wrote(State s, Object object, long bytes, long time) {
+		final Stats stats = profiler.exit(s, object, bytes, time, true);
+		if (stats != null) {
+			stats.writes.increment();
+			stats.bytesWritten.add(bytes);
+			stats.writeTime.add(time);
+			profiler.sampledWrites.increment();
+		}
+	}
+
+	/**
+	 * Exits the deserialization of an object.
+	 *
+	 * @param s      the state returned by {@link #enter(State, int)}
+	 * @param object the object or null if deserialization failed
+	 * @param bytes  the bytes read
+	 * @param time   the time spent in nanoseconds
+	 */
+	static void read(State s, Object object, long bytes, long time) {
+		final Stats stats = profiler.exit(s, object, bytes, time, false);
+		if (stats != null) {
+			stats.reads.increment();
+			stats.bytesRead.add(bytes);
+			stats.readTime.add(time);
+			profiler.sampledReads.increment();
+		}
+	}
+
+	/**
+	 * Exits an object.
+	 * <p>
+	 * Nested objects are buffered in the state. Upon exiting the top-level
+	 * object, the buffered objects are recorded under the closure of the
+	 * message.
+	 *
+	 * @param s      the state returned by {@link #enter(State, int)}
+	 * @param object the object or null
+	 * @param bytes  the bytes written or read
+	 * @param time   the time spent in nanoseconds
+	 * @param write  true if the object was serialized
+	 * @return the statistics of the closure of the message if the object is a
+	 *         top-level object, null otherwise
+	 */
+	private Stats exit(State s, Object object, long bytes, long time, boolean write) {
+		final Class<?> type = object == null ? Void.class : object.getClass();
+		if (--s.depth > 0) {
+			if (s.depth == 1 && s.closure == null && object != null && !(object instanceof Finish)) {
+				s.closure = type;
+			}
+			s.nested.add(new Record(type, bytes, time));
+			return null;
+		}
+		final boolean task = object instanceof Task || object instanceof UncountedTask
+				|| object instanceof ImmediateTask;
+		final Class<?> closure = task && s.closure != null ? s.closure : type;
+		for (final Record r : s.nested) {
+			final Stats stats = nested.computeIfAbsent(new Key(closure, r.type), k -> new Stats());
+			if (write) {
+				stats.writes.increment();
+				stats.bytesWritten.add(r.bytes);
+				stats.writeTime.add(r.time);
+			} else {
+				stats.reads.increment();
+				stats.bytesRead.add(r.bytes);
+				stats.readTime.add(r.time);
+			}
+		}
+		s.nested.clear();
+		s.closure = null;
+		return top.computeIfAbsent(closure, k -> new Stats());
+	}
+
+	/**
+	 * Returns the bytes written for messages of a closure.
+	 *
+	 * @param closure the class of the closure
+	 * @return the bytes written
+	 */
+	long bytesWritten(Class<?> closure) {
+		final Stats stats = top.get(closure);
+		return stats == null ? 0 : stats.bytesWritten.sum();
+	}
+
+	/**
+	 * Returns the bytes written for nested objects of a class in messages of a
+	 * closure.
+	 *
+	 * @param closure the class of the closure
+	 * @param type    the class of the nested objects
+	 * @return the bytes written
+	 */
+	long bytesWritten(Class<?> closure, Class<?> type) {
+		final Stats stats = nested.get(new Key(closure, type));
+		return stats == null ? 0 : stats.bytesWritten.sum();
+	}
+
+	/**
+	 * Returns the bytes read for messages of a closure.
+	 *
+	 * @param closure the class of the closure
+	 * @return the bytes read
+	 */
+	long bytesRead(Class<?> closure) {
+		final Stats stats = top.get(closure);
+		return stats == null ? 0 : stats.bytesRead.sum();
+	}
+
+	@Override
+	public int getSamplingPeriod() {
+		return period;
+	}
+
+	@Override
+	public long getSampledWrites() {
+		return sampledWrites.sum();
+	}
+
+	@Override
+	public long getSampledReads() {
+		return sampledReads.sum();
+	}
+
+	@Override
+	public String getReport() {
+		final StringBuilder sb = new StringBuilder();
+		report(sb, "closure", top, Class::getName);
+		report(sb, "closure / nested class", nested, Key::toString);
+		return sb.toString();
+	}
+
+	private static <K> void report(StringBuilder sb, String title, Map<K, Stats> map, Function<K, String> name) {
+		final List<Map.Entry<K, Stats>> entries = new ArrayList<>(map.entrySet());
+		entries.sort((a, b) -> Long.compare(b.getValue().bytesWritten.sum() + b.getValue().bytesRead.sum(),
+				a.getValue().bytesWritten.sum() + a.getValue().bytesRead.sum()));
+		sb.append(String.format("%-60s %10s %12s %10s %10s %12s %10s%n", title, "writes", "bytes/write",
+				"us/write", "reads", "bytes/read", "us/read"));
+		for (final Map.Entry<K, Stats> e : entries) {
+			final Stats s = e.getValue();
+			final long writes = s.writes.sum();
+			final long reads = s.reads.sum();
+			sb.append(String.format("%-60s %10d %12d %10d %10d %12d %10d%n", name.apply(e.getKey()), writes,
+					writes == 0 ? 0 : s.bytesWritten.sum() / writes,
+					writes == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(s.writeTime.sum() / writes), reads,
+					reads == 0 ? 0 : s.bytesRead.sum() / reads,
+					reads == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(s.readTime.sum() / reads)));
+		}
+	}
+
+	@Override
+	public void reset() {
+		top.clear();
+		nested.clear();
+		sampledWrites.reset();
+		sampledReads.reset();
+	}
+}
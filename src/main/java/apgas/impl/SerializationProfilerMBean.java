@@ -0,0 +1,50 @@
+/*
+ *  This file is part of the X10 project (http://x10-lang.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  (C) Copyright IBM Corporation 2006-2016.
+ */
+
+package apgas.impl;
+
+/**
+ * The management interface of the {@link SerializationProfiler}.
+ */
+public interface SerializationProfilerMBean {
+	/**
+	 * Returns the sampling period.
+	 *
+	 * @return one in how many messages is profiled
+	 */
+	int getSamplingPeriod();
+
+	/**
+	 * Returns the number of messages profiled when serializing.
+	 *
+	 * @return the sampled write count
+	 */
+	long getSampledWrites();
+
+	/**
+	 * Returns the number of messages profiled when deserializing.
+	 *
+	 * @return the sampled read count
+	 */
+	long getSampledReads();
+
+	/**
+	 * Returns the per-class statistics as a human-readable table.
+	 *
+	 * @return the report
+	 */
+	String getReport();
+
+	/**
+	 * Clears the statistics.
+	 */
+	void reset();
+}
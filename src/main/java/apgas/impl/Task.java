@@ -37,6 +37,11 @@ import apgas.SerializableJob;
 final class Task extends RecursiveAction implements SerializableRunnable, KryoSerializable {
 	private static final long serialVersionUID = 5288338719050788305L;
 
+	/**
+	 * Shared empty array used by tasks with no extra finish.
+	 */
+	static final Finish[] NO_FINISH = new Finish[0];
+
 	/**
 	 * The finish object for this {@link Task} instance.
 	 */
@@ -62,20 +67,70 @@ final class Task extends RecursiveAction implements SerializableRunnable, KryoSe
 	 */
 	int parent;
 
+	/**
+	 * True if this task may be recycled by the worker that ran it.
+	 */
+	private transient boolean pooled;
+
 	/**
 	 * Constructs a new {@link Task}.
 	 *
-	 * @param f      the function to run
 	 * @param finish the finish object for this task
+	 * @param f      the function to run
 	 * @param parent the place of the parent task
 	 */
-	Task(Finish finish, Job f, int parent, Finish... extraFinishes) {
+	Task(Finish finish, Job f, int parent) {
+		this(finish, f, parent, NO_FINISH);
+	}
+
+	/**
+	 * Constructs a new {@link Task} registered with extra finish objects.
+	 *
+	 * @param finish        the finish object for this task
+	 * @param f             the function to run
+	 * @param parent        the place of the parent task
+	 * @param extraFinishes the extra finish objects for this task
+	 */
+	Task(Finish finish, Job f, int parent, Finish[] extraFinishes) {
 		this.finish = finish;
 		this.f = f;
 		this.parent = parent;
 		coFinish = extraFinishes;
 	}
 
+	/**
+	 * Makes a local task, reusing a completed task of the given worker if task
+	 * pooling is enabled.
+	 * <p>
+	 * The returned task must not leave the current place.
+	 *
+	 * @param worker the current worker or null if not a worker thread
+	 * @param finish the finish object for this task
+	 * @param f      the function to run
+	 * @param parent the place of the parent task
+	 * @return the task
+	 */
+	static Task make(Worker worker, Finish finish, Job f, int parent) {
+		if (worker == null || worker.spares == null) {
+			return new Task(finish, f, parent);
+		}
+		while (worker.spareCount > 0) {
+			final Task t = worker.spares[--worker.spareCount];
+			worker.spares[worker.spareCount] = null;
+			if (t.isDone()) {
+				// skip tasks that were computed without going through the pool
+				t.reinitialize();
+				t.finish = finish;
+				t.f = f;
+				t.parent = parent;
+				return t;
+			}
+		}
+		final Task t = new Task(finish, f, parent);
+		t.pooled = true;
+		return t;
+	}
+
 	/**
 	 * Submits the task for asynchronous execution.
 	 */
@@ -88,6 +143,24 @@ final class Task extends RecursiveAction implements SerializableRunnable, KryoSe
 		}
 	}
 
+	/**
+	 * Runs a task received from a remote place on the current worker thread.
+	 * <p>
+	 * Notifies the task's finish objects of the incoming task first.
+	 */
+	void receive() {
+		try {
+			finish.submit(parent);
+			for (Finish f : coFinish) {
+				f.submit(parent);
+			}
+		} catch (final DeadPlaceException e) {
+			// source place has died while task was in transit, discard
+			return;
+		}
+		compute();
+	}
+
 	/**
 	 * Runs the task and notify the task's finish upon termination.
 	 */
@@ -104,6 +177,13 @@ final class Task extends RecursiveAction implements SerializableRunnable, KryoSe
 		for (Finish f : coFinish) {
 			f.tell();
 		}
+		if (pooled) {
+			// release references and hand the task back to the current worker
+			finish = null;
+			f = null;
+			worker.task = null;
+			worker.recycle(this);
+		}
 	}
 
 	/**
@@ -123,10 +203,10 @@ final class Task extends RecursiveAction implements SerializableRunnable, KryoSe
 		} else {
 			final Task savedTask = worker.task;
 			compute();
-			Task t;
-			while (!finish.isReleasable() && (t = (Task) ForkJoinTask.peekNextLocalTask()) != null && finish == t.finish
-					&& t.tryUnfork()) {
-				t.compute();
+			ForkJoinTask<?> t;
+			while (!finish.isReleasable() && (t = ForkJoinTask.peekNextLocalTask()) instanceof Task
+					&& finish == ((Task) t).finish && t.tryUnfork()) {
+				t.quietlyInvoke();
 			}
 			try {
 				ForkJoinPool.managedBlock(finish);
@@ -146,6 +226,16 @@ final class Task extends RecursiveAction implements SerializableRunnable, KryoSe
 		for (Finish f : coFinish) {
 			f.submit(parent);
 		}
+		enqueue(worker);
+	}
+
+	/**
+	 * Enqueues the task for local execution. The task's finish objects must have
+	 * been notified already.
+	 *
+	 * @param worker the worker doing the submission or null if not a worker thread
+	 */
+	void enqueue(Worker worker) {
 		if (worker == null) {
 			GlobalRuntimeImpl.getRuntime().execute(this);
 		} else {
@@ -164,7 +254,7 @@ final class Task extends RecursiveAction implements SerializableRunnable, KryoSe
 	 */
 	void asyncAt(int p) {
 		try {
-			GlobalRuntimeImpl.getRuntime().transport.send(p, this);
+			GlobalRuntimeImpl.getRuntime().transport.sendFrame(p, this);
 		} catch (final Throwable e) {
 			finish.unspawn(p);
 			if (GlobalRuntimeImpl.getRuntime().verboseSerialization && !(e instanceof DeadPlaceException)) {
@@ -223,7 +313,7 @@ final class Task extends RecursiveAction implements SerializableRunnable, KryoSe
 		}
 
 		int coFinishCount = in.readInt();
-		coFinish = new Finish[coFinishCount];
+		coFinish = coFinishCount == 0 ? NO_FINISH : new Finish[coFinishCount];
 		for (int i = 0; i < coFinishCount; i++) {
 			coFinish[i] = (Finish) in.readObject();
 		}
@@ -258,7 +348,7 @@ final class Task extends RecursiveAction implements SerializableRunnable, KryoSe
 		}
 
 		int coFinishCount = input.read();
-		coFinish = new Finish[coFinishCount];
+		coFinish = coFinishCount == 0 ? NO_FINISH : new Finish[coFinishCount];
 		for (int i = 0; i < coFinishCount; i++) {
 			coFinish[i] = (Finish) kryo.readClassAndObject(input);
 		}
@@ -0,0 +1,99 @@
+/*
+ *  This file is part of the X10 project (http://x10-lang.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  (C) Copyright IBM Corporation 2006-2016.
+ */
+
+package apgas.impl;
+
+import java.util.concurrent.RecursiveAction;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoSerializable;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * The {@link TaskFrame} class carries a serialized task between places.
+ * <p>
+ * The transport only copies the raw bytes of the frame. Upon receipt the frame
+ * is enqueued as is, and the task is decoded by the worker thread that runs
+ * it. Decoding costs are thus spread across all workers instead of the few
+ * transport threads, and queued tasks remain compact until they run.
+ */
+final class TaskFrame extends RecursiveAction implements SerializableRunnable, KryoSerializable {
+	private static final long serialVersionUID = -7402745526932146251L;
+
+	/**
+	 * The serialized task.
+	 */
+	private byte[] bytes;
+
+	/**
+	 * Constructs a new {@link TaskFrame}.
+	 *
+	 * @param bytes the serialized task
+	 */
+	TaskFrame(byte[] bytes) {
+		this.bytes = bytes;
+	}
+
+	/**
+	 * Submits the frame for decoding and execution by a worker.
+	 */
+	@Override
+	public void run() {
+		GlobalRuntimeImpl.getRuntime().execute(this);
+	}
+
+	/**
+	 * Decodes and runs the task.
+	 * <p>
+	 * A task whose function fails to decode still completes: {@link Task}
+	 * attaches the exception to its finish and runs an empty function instead.
+	 * If the frame itself fails to decode, e.g., if the finish of the task
+	 * cannot be decoded, the task is dropped and the exception is logged to
+	 * System.err. The finish of the sender is then never notified of the
+	 * termination of the task and waits forever.
+	 */
+	@Override
+	protected void compute() {
+		final Worker worker = (Worker) Thread.currentThread();
+		worker.task = null;
+		final Object f;
+		try {
+			f = Serialization.read(bytes);
+		} catch (final Throwable e) {
+			System.err.println("[APGAS] Dropping a task that failed to decode at place "
+					+ GlobalRuntimeImpl.getRuntime().here + " due to: " + e);
+			if (GlobalRuntimeImpl.getRuntime().verboseSerialization) {
+				e.printStackTrace();
+			}
+			return;
+		}
+		bytes = null;
+		if (f instanceof Task) {
+			((Task) f).receive();
+		} else if (f instanceof UncountedTask) {
+			((UncountedTask) f).compute();
+		} else {
+			((Runnable) f).run();
+		}
+	}
+
+	@Override
+	public void write(Kryo kryo, Output output) {
+		output.writeInt(bytes.length);
+		output.writeBytes(bytes);
+	}
+
+	@Override
+	public void read(Kryo kryo, Input input) {
+		bytes = input.readBytes(input.readInt());
+	}
+}
@@ -275,6 +275,32 @@ public class Transport implements com.hazelcast.core.ItemListener<Member>,
     }
   }
 
+  /**
+   * Executes a task at the given place, deferring its deserialization to the
+   * worker thread that runs it.
+   * <p>
+   * The task is serialized eagerly so that serialization errors are reported
+   * to the caller. Local tasks are not serialized.
+   *
+   * @param place
+   *          the requested place of execution
+   * @param f
+   *          the task to execute
+   * @throws DeadPlaceException
+   *           if the cluster does not contain this place
+   */
+  protected void sendFrame(int place, SerializableRunnable f) {
+    if (place == here) {
+      f.run();
+    } else {
+      final Member member = map.get(place);
+      if (member == null) {
+        throw new DeadPlaceException(new Place(place));
+      }
+      executor.executeOnMember(new TaskFrame(Serialization.write(f, place)), member);
+    }
+  }
+
   private boolean live(String uuid) {
     for (final Member member : currentMembers) {
       if (uuid.equals(member.getUuid())) {
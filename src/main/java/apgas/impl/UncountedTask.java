@@ -82,7 +82,7 @@ final class UncountedTask extends RecursiveAction
    */
   void uncountedAsyncAt(int p) {
     try {
-      GlobalRuntimeImpl.getRuntime().transport.send(p, this);
+      GlobalRuntimeImpl.getRuntime().transport.sendFrame(p, this);
     } catch (final Throwable e) {
       if (GlobalRuntimeImpl.getRuntime().verboseSerialization
           && !(e instanceof DeadPlaceException)) {
@@ -25,11 +25,48 @@ final class Worker extends ForkJoinWorkerThread {
    *          the pool this worker works in
    */
   protected Worker(ForkJoinPool pool) {
+    this(pool, 0);
+  }
+
+  /**
+   * Instantiates a Worker operating in the given pool and keeping up to
+   * {@code spares} completed local tasks for reuse.
+   *
+   * @param pool
+   *          the pool this worker works in
+   * @param spares
+   *          the capacity of the spare task stack, 0 to disable task pooling
+   */
+  Worker(ForkJoinPool pool, int spares) {
     super(pool);
+    this.spares = spares > 0 ? new Task[spares] : null;
   }
 
   /**
    * The current task.
    */
   Task task;
+
+  /**
+   * Completed local tasks available for reuse or null if task pooling is
+   * disabled.
+   */
+  final Task[] spares;
+
+  /**
+   * The number of tasks in {@link #spares}.
+   */
+  int spareCount;
+
+  /**
+   * Returns a completed task to the spare stack of this worker if not full.
+   *
+   * @param t
+   *          the task to recycle
+   */
+  void recycle(Task t) {
+    if (spareCount < spares.length) {
+      spares[spareCount++] = t;
+    }
+  }
 }
@@ -19,9 +19,31 @@ import java.util.concurrent.ForkJoinWorkerThread;
  * pool.
  */
 final class WorkerFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+  /**
+   * The capacity of the spare task stack of each worker.
+   */
+  private final int spares;
+
+  /**
+   * Constructs a factory for workers without task pooling.
+   */
+  WorkerFactory() {
+    this(0);
+  }
+
+  /**
+   * Constructs a factory for workers keeping up to {@code spares} completed
+   * local tasks for reuse.
+   *
+   * @param spares
+   *          the capacity of the spare task stack, 0 to disable task pooling
+   */
+  WorkerFactory(int spares) {
+    this.spares = spares;
+  }
 
   @Override
   public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
-    return new Worker(pool);
+    return new Worker(pool, spares);
   }
 }
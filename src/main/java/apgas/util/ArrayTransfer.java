@@ -0,0 +1,261 @@
+/*
+ *  This file is part of the X10 project (http://x10-lang.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  (C) Copyright IBM Corporation 2006-2016.
+ */
+
+package apgas.util;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Array;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoSerializable;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.io.UnsafeInput;
+import com.esotericsoftware.kryo.io.UnsafeOutput;
+import com.esotericsoftware.kryo.util.UnsafeUtil;
+
+import apgas.SerializableJob;
+
+/**
+ * The {@link ArrayTransfer} class copies a range of a primitive array into the
+ * chunk of a place local array at a remote place.
+ * <p>
+ * Only the range is serialized. With Kryo, the range is copied as a raw memory
+ * region straight from the source array into the message buffer, and from the
+ * message buffer into an array of the same length upon receipt, without boxing
+ * or per-element encoding. The destination chunk is only updated when the task
+ * runs, so that a task discarded upon receipt, e.g., because its finish is
+ * dead, does not modify the chunk.
+ * <p>
+ * The supported destinations are {@link PlaceLocalIntArray},
+ * {@link PlaceLocalLongArray}, {@link PlaceLocalFloatArray}, and
+ * {@link PlaceLocalDoubleArray} instances.
+ */
+final class ArrayTransfer implements SerializableJob, KryoSerializable {
+  private static final long serialVersionUID = 6137880468223071826L;
+
+  /**
+   * The destination place local array.
+   */
+  private PlaceLocalObject target;
+
+  /**
+   * The source array, or the received range.
+   */
+  private transient Object src;
+
+  /**
+   * The offset of the range in the source array, 0 once received.
+   */
+  private transient int srcOffset;
+
+  /**
+   * The offset of the range in the destination chunk.
+   */
+  private int dstOffset;
+
+  /**
+   * The length of the range.
+   */
+  private int length;
+
+  /**
+   * Constructs a new {@link ArrayTransfer}.
+   *
+   * @param src
+   *          the source array
+   * @param srcOffset
+   *          the offset of the range in the source array
+   * @param target
+   *          the destination place local array
+   * @param dstOffset
+   *          the offset of the range in the destination chunk
+   * @param length
+   *          the length of the range
+   */
+  ArrayTransfer(Object src, int srcOffset, PlaceLocalObject target,
+      int dstOffset, int length) {
+    final int srcLength = Array.getLength(src);
+    if (srcOffset < 0 || length < 0 || srcOffset + length > srcLength) {
+      throw new ArrayIndexOutOfBoundsException(
+          "source range [" + srcOffset + ", " + (srcOffset + length)
+              + ") out of bounds for length " + srcLength);
+    }
+    this.src = src;
+    this.srcOffset = srcOffset;
+    this.target = target;
+    this.dstOffset = dstOffset;
+    this.length = length;
+  }
+
+  /**
+   * Returns the local chunk of the given place local array.
+   *
+   * @param target
+   *          the place local array
+   * @return the local chunk
+   */
+  private static Object chunk(PlaceLocalObject target) {
+    if (target instanceof PlaceLocalIntArray) {
+      return ((PlaceLocalIntArray) target).array;
+    } else if (target instanceof PlaceLocalLongArray) {
+      return ((PlaceLocalLongArray) target).array;
+    } else if (target instanceof PlaceLocalFloatArray) {
+      return ((PlaceLocalFloatArray) target).array;
+    } else {
+      return ((PlaceLocalDoubleArray) target).array;
+    }
+  }
+
+  /**
+   * Returns the memory offset of the first element of a primitive array.
+   *
+   * @param array
+   *          the array
+   * @return the offset
+   */
+  private static long base(Object array) {
+    if (array instanceof int[]) {
+      return UnsafeUtil.intArrayBaseOffset;
+    } else if (array instanceof long[]) {
+      return UnsafeUtil.longArrayBaseOffset;
+    } else if (array instanceof float[]) {
+      return UnsafeUtil.floatArrayBaseOffset;
+    } else {
+      return UnsafeUtil.doubleArrayBaseOffset;
+    }
+  }
+
+  /**
+   * Returns the size of the elements of a primitive array.
+   *
+   * @param array
+   *          the array
+   * @return the element size in bytes
+   */
+  private static int scale(Object array) {
+    return array instanceof int[] || array instanceof float[] ? 4 : 8;
+  }
+
+  /**
+   * Returns a new array for the received range.
+   *
+   * @param target
+   *          the destination place local array
+   * @param length
+   *          the length of the range
+   * @return an array of the element type of the local chunk
+   */
+  private static Object range(PlaceLocalObject target, int length) {
+    return Array.newInstance(chunk(target).getClass().getComponentType(),
+        length);
+  }
+
+  /**
+   * Copies the range into the destination chunk.
+   *
+   * @throws ArrayIndexOutOfBoundsException
+   *           if the range does not fit the destination chunk
+   */
+  @Override
+  public void run() {
+    final Object dst = chunk(target);
+    final int dstLength = Array.getLength(dst);
+    if (dstOffset < 0 || dstOffset + length > dstLength) {
+      throw new ArrayIndexOutOfBoundsException(
+          "destination range [" + dstOffset + ", " + (dstOffset + length)
+              + ") out of bounds for length " + dstLength);
+    }
+    System.arraycopy(src, srcOffset, dst, dstOffset, length);
+  }
+
+  @Override
+  public void write(Kryo kryo, Output output) {
+    kryo.writeClassAndObject(output, target);
+    output.writeInt(dstOffset);
+    output.writeInt(length);
+    final int scale = scale(src);
+    if (output instanceof UnsafeOutput) {
+      ((UnsafeOutput) output).writeBytes(src,
+          base(src) + (long) scale * srcOffset, (long) scale * length);
+    } else {
+      for (int i = srcOffset; i < srcOffset + length; i++) {
+        if (src instanceof int[]) {
+          output.writeInt(((int[]) src)[i]);
+        } else if (src instanceof long[]) {
+          output.writeLong(((long[]) src)[i]);
+        } else if (src instanceof float[]) {
+          output.writeFloat(((float[]) src)[i]);
+        } else {
+          output.writeDouble(((double[]) src)[i]);
+        }
+      }
+    }
+  }
+
+  @Override
+  public void read(Kryo kryo, Input input) {
+    target = (PlaceLocalObject) kryo.readClassAndObject(input);
+    dstOffset = input.readInt();
+    length = input.readInt();
+    src = range(target, length);
+    if (input instanceof UnsafeInput) {
+      ((UnsafeInput) input).readBytes(src, base(src),
+          (long) scale(src) * length);
+    } else {
+      for (int i = 0; i < length; i++) {
+        if (src instanceof int[]) {
+          ((int[]) src)[i] = input.readInt();
+        } else if (src instanceof long[]) {
+          ((long[]) src)[i] = input.readLong();
+        } else if (src instanceof float[]) {
+          ((float[]) src)[i] = input.readFloat();
+        } else {
+          ((double[]) src)[i] = input.readDouble();
+        }
+      }
+    }
+  }
+
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    out.defaultWriteObject();
+    for (int i = srcOffset; i < srcOffset + length; i++) {
+      if (src instanceof int[]) {
+        out.writeInt(((int[]) src)[i]);
+      } else if (src instanceof long[]) {
+        out.writeLong(((long[]) src)[i]);
+      } else if (src instanceof float[]) {
+        out.writeFloat(((float[]) src)[i]);
+      } else {
+        out.writeDouble(((double[]) src)[i]);
+      }
+    }
+  }
+
+  private void readObject(ObjectInputStream in)
+      throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    src = range(target, length);
+    for (int i = 0; i < length; i++) {
+      if (src instanceof int[]) {
+        ((int[]) src)[i] = in.readInt();
+      } else if (src instanceof long[]) {
+        ((long[]) src)[i] = in.readLong();
+      } else if (src instanceof float[]) {
+        ((float[]) src)[i] = in.readFloat();
+      } else {
+        ((double[]) src)[i] = in.readDouble();
+      }
+    }
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ *  This file is part of the X10 project (http://x10-lang.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  (C) Copyright IBM Corporation 2006-2016.
+ */
+
+package apgas.util;
+
+/**
+ * The {@link AtomicOp} enumeration lists the read-modify-write operations
+ * supported on the elements of {@link PlaceLocalIntArray} and
+ * {@link PlaceLocalLongArray} instances.
+ * <p>
+ * {@code int} elements are computed as {@code long} values and truncated.
+ */
+public enum AtomicOp {
+  /**
+   * Adds the operand.
+   */
+  ADD,
+
+  /**
+   * Computes the bitwise and with the operand.
+   */
+  AND,
+
+  /**
+   * Computes the bitwise or with the operand.
+   */
+  OR,
+
+  /**
+   * Computes the bitwise exclusive or with the operand.
+   */
+  XOR,
+
+  /**
+   * Computes the minimum of the element and the operand.
+   */
+  MIN,
+
+  /**
+   * Computes the maximum of the element and the operand.
+   */
+  MAX,
+
+  /**
+   * Replaces the element with the operand.
+   */
+  SET;
+
+  /**
+   * Computes the new value of an element.
+   *
+   * @param value
+   *          the current value of the element
+   * @param operand
+   *          the operand
+   * @return the new value
+   */
+  public long apply(long value, long operand) {
+    switch (this) {
+    case ADD:
+      return value + operand;
+    case AND:
+      return value & operand;
+    case OR:
+      return value | operand;
+    case XOR:
+      return value ^ operand;
+    case MIN:
+      return Math.min(value, operand);
+    case MAX:
+      return Math.max(value, operand);
+    default:
+      return operand;
+    }
+  }
+}
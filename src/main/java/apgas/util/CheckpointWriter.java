@@ -0,0 +1,1054 @@
+/*
+ *  This file is part of the X10 project (http://x10-lang.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  (C) Copyright IBM Corporation 2006-2016.
+ */
+
+package apgas.util;
+
+import static apgas.Constructs.async;
+import static apgas.Constructs.asyncAtAll;
+import static apgas.Constructs.at;
+import static apgas.Constructs.finish;
+import static apgas.Constructs.here;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import apgas.DeadPlacesException;
+import apgas.Place;
+
+/**
+ * The {@link CheckpointWriter} class implements asynchronous incremental
+ * checkpoints of {@link PlaceLocalObject} instances to local files.
+ * <p>
+ * Each place writes the states of its registered objects to its own directory
+ * {@code place-<index>} under the checkpoint directory, where {@code index} is
+ * the index of the place in the list of places of the writer. A checkpoint only
+ * copies the states in memory. A background thread per place then compresses
+ * the copies and appends them to a data file through a {@link FileChannel}, so
+ * the computation may resume while the checkpoint drains to disk.
+ * <p>
+ * Primitive array states are split into chunks of {@link #CHUNK} elements and
+ * only the chunks modified since the previous checkpoint are copied and
+ * written. A manifest lists the location of every chunk of a checkpoint. It is
+ * written to a temporary file and renamed once the data is on disk. The
+ * manifests of the last two checkpoints are kept. The data file is rewritten
+ * in full once less than half of it is in use.
+ * <p>
+ * {@link #restore()} reloads the last checkpoint written by all the places,
+ * for instance after restarting the application with the same number of places
+ * and the same registrations. The places read their files in parallel.
+ * <p>
+ * A {@link CheckpointWriter} instance must be used from a single place.
+ */
+public class CheckpointWriter {
+  /**
+   * The number of elements per chunk of a primitive array state.
+   */
+  public static final int CHUNK = 1 << 14;
+
+  /**
+   * The first word of a manifest.
+   */
+  private static final int MAGIC = 0x41434b50;
+
+  private static final byte OBJECT = 0;
+  private static final byte INT = 1;
+  private static final byte LONG = 2;
+  private static final byte FLOAT = 3;
+  private static final byte DOUBLE = 4;
+
+  /**
+   * The writers of this place, by checkpoint writer.
+   */
+  private static final Map<GlobalID, Writer> writers = new ConcurrentHashMap<>();
+
+  /**
+   * The ID of this checkpoint writer.
+   */
+  private final GlobalID id = new GlobalID();
+
+  /**
+   * The places to checkpoint.
+   */
+  private final ArrayList<Place> places;
+
+  /**
+   * The checkpoint directory.
+   */
+  private final String directory;
+
+  /**
+   * The names of the registered objects.
+   */
+  private final ArrayList<String> names = new ArrayList<>();
+
+  /**
+   * The IDs of the registered objects.
+   */
+  private final ArrayList<GlobalID> objects = new ArrayList<>();
+
+  /**
+   * The last checkpoint taken or restored.
+   */
+  private long epoch;
+
+  /**
+   * Constructs a checkpoint writer.
+   *
+   * @param places
+   *          the places to checkpoint with no repetition
+   * @param directory
+   *          the checkpoint directory, which must not be shared between places
+   *          running on the same host unless it is the same for all
+   */
+  public CheckpointWriter(List<? extends Place> places, String directory) {
+    this.places = new ArrayList<>(places);
+    this.directory = directory;
+  }
+
+  /**
+   * Registers an object to checkpoint.
+   * <p>
+   * The name identifies the state of the object in the files, hence must be
+   * the same when restoring.
+   *
+   * @param <T>
+   *          the type of the object
+   * @param name
+   *          the name of the object
+   * @param object
+   *          a place local object defined at every place of this writer
+   * @throws IllegalArgumentException
+   *           if the name is already in use
+   */
+  public <T extends PlaceLocalObject & Snapshottable> void register(String name,
+      T object) {
+    if (names.contains(name)) {
+      throw new IllegalArgumentException("duplicate name " + name);
+    }
+    names.add(name);
+    objects.add(PlaceLocalObject.getId(object));
+  }
+
+  /**
+   * Returns the last checkpoint taken or restored.
+   *
+   * @return the epoch of the checkpoint or zero if none
+   */
+  public long epoch() {
+    return epoch;
+  }
+
+  /**
+   * Checkpoints the registered objects at every place.
+   * <p>
+   * Returns once the states have been copied, before they have been written.
+   * The registered objects may be modified afterwards.
+   *
+   * @return the epoch of the new checkpoint
+   */
+  public long checkpoint() {
+    final long e = epoch + 1;
+    final GlobalID wid = id;
+    final String dir = directory;
+    final List<Place> list = places;
+    final String[] ns = names.toArray(new String[names.size()]);
+    final GlobalID[] ids = objects.toArray(new GlobalID[objects.size()]);
+    finish(() -> asyncAtAll(list,
+        () -> writer(wid, dir, list).capture(ns, ids, e)));
+    epoch = e;
+    return e;
+  }
+
+  /**
+   * Waits for the checkpoints taken so far to be written at every place.
+   */
+  public void await() {
+    final GlobalID wid = id;
+    final String dir = directory;
+    final List<Place> list = places;
+    finish(() -> asyncAtAll(list, () -> writer(wid, dir, list).await()));
+  }
+
+  /**
+   * Restores the registered objects at every place to the last checkpoint
+   * written by all the places.
+   * <p>
+   * Checkpoints more recent than the restored checkpoint are discarded.
+   *
+   * @return the epoch of the restored checkpoint or zero if none
+   */
+  public long restore() {
+    final GlobalID wid = id;
+    final String dir = directory;
+    final List<Place> list = places;
+    final String[] ns = names.toArray(new String[names.size()]);
+    final GlobalID[] ids = objects.toArray(new GlobalID[objects.size()]);
+    final long[][] found = new long[list.size()][];
+    finish(() -> {
+      for (int i = 0; i < found.length; i++) {
+        final int j = i;
+        async(() -> found[j] = at(list.get(j),
+            () -> writer(wid, dir, list).epochs()));
+      }
+    });
+    long e = 0;
+    for (final long candidate : found[0]) {
+      boolean common = true;
+      for (final long[] epochs : found) {
+        boolean present = false;
+        for (final long x : epochs) {
+          present |= x == candidate;
+        }
+        common &= present;
+      }
+      if (common) {
+        e = Math.max(e, candidate);
+      }
+    }
+    if (e == 0) {
+      return 0;
+    }
+    final long r = e;
+    finish(() -> asyncAtAll(list,
+        () -> writer(wid, dir, list).load(ns, ids, r)));
+    epoch = e;
+    return e;
+  }
+
+  /**
+   * Waits for the pending checkpoints and stops the background threads. The
+   * files are left on disk. Masks {@link DeadPlacesException} instances if
+   * any.
+   */
+  public void close() {
+    final GlobalID wid = id;
+    try {
+      finish(() -> asyncAtAll(places, () -> {
+        final Writer writer = writers.remove(wid);
+        if (writer != null) {
+          writer.close();
+        }
+      }));
+    } catch (final DeadPlacesException e) {
+    }
+  }
+
+  private static Writer writer(GlobalID wid, String dir, List<Place> list) {
+    return writers.computeIfAbsent(wid,
+        k -> new Writer(Paths.get(dir, "place-" + list.indexOf(here()))));
+  }
+
+  /**
+   * The files and background thread of a checkpoint writer at a place.
+   * <p>
+   * The capture side is guarded by this object. The write side is confined to
+   * the background thread, or to the restoring thread once the background
+   * thread is idle.
+   */
+  private static final class Writer {
+    /**
+     * The directory of this place.
+     */
+    private final Path path;
+
+    /**
+     * The background thread.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * The last captured primitive array states, by name.
+     */
+    private final Map<String, Object> shadows = new HashMap<>();
+
+    /**
+     * Whether the directory has been initialized or restored.
+     */
+    private boolean started;
+
+    /**
+     * Whether the next checkpoint must rewrite the data file.
+     */
+    private volatile boolean compact;
+
+    /**
+     * The number of checkpoints captured.
+     */
+    private long queued;
+
+    /**
+     * The number of checkpoints processed.
+     */
+    private long done;
+
+    /**
+     * The first write error if any.
+     */
+    private Throwable error;
+
+    /**
+     * The location of the chunks of the last written checkpoint, by name.
+     */
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    /**
+     * The current data file.
+     */
+    private FileChannel data;
+
+    /**
+     * The size of the current data file.
+     */
+    private long size;
+
+    /**
+     * The generation of the current data file.
+     */
+    private int generation;
+
+    /**
+     * The generation of the data file of the previous manifest.
+     */
+    private int kept;
+
+    /**
+     * The oldest generation possibly on disk.
+     */
+    private int oldest;
+
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+    private final byte[] buffer = new byte[1 << 16];
+
+    Writer(Path path) {
+      this.path = path;
+      try {
+        Files.createDirectories(path);
+      } catch (final IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      executor = Executors.newSingleThreadExecutor(r -> {
+        final Thread thread = new Thread(r,
+            "apgas-checkpoint-" + path.getFileName());
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+
+    /**
+     * Copies the states of the local objects and queues their writing.
+     *
+     * @param names
+     *          the names of the objects
+     * @param ids
+     *          the IDs of the objects
+     * @param e
+     *          the epoch of the checkpoint
+     * @throws IOException
+     *           if a previous checkpoint could not be written or if a state
+     *           cannot be serialized
+     */
+    synchronized void capture(String[] names, GlobalID[] ids, long e)
+        throws IOException {
+      check();
+      final boolean reset = !started;
+      final boolean rotate = reset || compact;
+      started = true;
+      compact = false;
+      final Part[] parts = new Part[ids.length];
+      for (int k = 0; k < ids.length; k++) {
+        final Serializable state = ((Snapshottable) ids[k].getHere())
+            .snapshot();
+        parts[k] = Part.of(names[k], state,
+            rotate ? null : shadows.get(names[k]));
+        if (parts[k].kind != OBJECT && parts[k].full) {
+          shadows.put(names[k], SnapshotService.Update.copy(state));
+        }
+      }
+      final Job job = new Job(e, reset, rotate, parts);
+      queued++;
+      executor.execute(() -> write(job));
+    }
+
+    /**
+     * Waits for the captured checkpoints to be written.
+     *
+     * @throws IOException
+     *           if a checkpoint could not be written
+     */
+    void await() throws IOException {
+      drain();
+      synchronized (this) {
+        check();
+      }
+    }
+
+    /**
+     * Returns the epochs of the valid manifests of this place.
+     *
+     * @return the epochs
+     */
+    long[] epochs() {
+      drain();
+      final ArrayList<Long> list = new ArrayList<>();
+      for (int parity = 0; parity < 2; parity++) {
+        final Manifest m = manifest(parity);
+        if (m != null) {
+          list.add(m.epoch);
+        }
+      }
+      final long[] result = new long[list.size()];
+      for (int i = 0; i < result.length; i++) {
+        result[i] = list.get(i);
+      }
+      return result;
+    }
+
+    /**
+     * Restores the local objects and resumes writing after the given
+     * checkpoint.
+     *
+     * @param names
+     *          the names of the objects
+     * @param ids
+     *          the IDs of the objects
+     * @param e
+     *          the epoch of the checkpoint
+     * @throws IOException
+     *           if the checkpoint cannot be read
+     */
+    void load(String[] names, GlobalID[] ids, long e) throws IOException {
+      drain();
+      synchronized (this) {
+        Manifest m = null;
+        Manifest other = null;
+        for (int parity = 0; parity < 2; parity++) {
+          final Manifest x = manifest(parity);
+          if (x != null && x.epoch == e) {
+            m = x;
+          } else {
+            other = x;
+          }
+        }
+        if (m == null) {
+          throw new IllegalStateException("no checkpoint for epoch " + e);
+        }
+        final Path file = path.resolve("data." + m.generation);
+        try (FileChannel channel = FileChannel.open(file,
+            StandardOpenOption.READ)) {
+          for (int k = 0; k < ids.length; k++) {
+            final Entry entry = m.entries.get(names[k]);
+            if (entry == null) {
+              throw new IllegalStateException("no checkpoint for " + names[k]);
+            }
+            final Serializable state = entry.load(channel);
+            ((Snapshottable) ids[k].getHere()).restore(state);
+            if (entry.kind != OBJECT) {
+              shadows.put(names[k], SnapshotService.Update.copy(state));
+            } else {
+              shadows.remove(names[k]);
+            }
+          }
+        }
+        if (other != null && other.epoch > e) {
+          // discard the newer checkpoint so that its epoch can be reused
+          Files.delete(path.resolve("manifest." + (other.epoch & 1)));
+          if (other.generation > m.generation) {
+            Files.deleteIfExists(path.resolve("data." + other.generation));
+          }
+          other = null;
+        }
+        if (data != null) {
+          data.close();
+        }
+        data = FileChannel.open(file, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        size = data.size();
+        entries.clear();
+        entries.putAll(m.entries);
+        generation = m.generation;
+        kept = m.generation;
+        oldest = other == null ? m.generation
+            : Math.min(m.generation, other.generation);
+        started = true;
+        compact = false;
+        error = null;
+      }
+    }
+
+    /**
+     * Waits for the pending checkpoints and stops the background thread.
+     *
+     * @throws IOException
+     *           if the data file cannot be closed
+     */
+    void close() throws IOException {
+      drain();
+      executor.shutdown();
+      deflater.end();
+      if (data != null) {
+        data.close();
+      }
+    }
+
+    private void check() throws IOException {
+      if (error != null) {
+        throw new IOException("checkpoint failed at " + here(), error);
+      }
+    }
+
+    private void drain() {
+      try {
+        ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+          @Override
+          public boolean isReleasable() {
+            synchronized (Writer.this) {
+              return done == queued;
+            }
+          }
+
+          @Override
+          public boolean block() throws InterruptedException {
+            synchronized (Writer.this) {
+              while (done != queued) {
+                Writer.this.wait();
+              }
+            }
+            return true;
+          }
+        });
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException(e);
+      }
+    }
+
+    /**
+     * Writes a captured checkpoint. Runs on the background thread.
+     *
+     * @param job
+     *          the checkpoint
+     */
+    private void write(Job job) {
+      synchronized (this) {
+        if (error != null) {
+          done++;
+          notifyAll();
+          return;
+        }
+      }
+      Throwable failure = null;
+      try {
+        if (job.reset) {
+          reset();
+        } else if (job.rotate) {
+          data.close();
+          open(generation + 1);
+        }
+        for (final Part part : job.parts) {
+          Entry entry = entries.get(part.name);
+          if (part.full || entry == null) {
+            entry = new Entry(part.kind, part.length, part.count);
+            entries.put(part.name, entry);
+          }
+          for (int i = 0; i < part.chunks.length; i++) {
+            final byte[] bytes = deflate(part.raw[i]);
+            final ByteBuffer b = ByteBuffer.wrap(bytes);
+            long position = size;
+            while (b.hasRemaining()) {
+              position += data.write(b, position);
+            }
+            final int c = part.chunks[i];
+            entry.offsets[c] = size;
+            entry.sizes[c] = bytes.length;
+            entry.raws[c] = part.raw[i].length;
+            part.raw[i] = null;
+            size = position;
+          }
+        }
+        data.force(false);
+        writeManifest(job.epoch);
+        final int keep = Math.min(generation, kept);
+        for (; oldest < keep; oldest++) {
+          Files.deleteIfExists(path.resolve("data." + oldest));
+        }
+        kept = generation;
+        long live = 0;
+        for (final Entry entry : entries.values()) {
+          for (final int s : entry.sizes) {
+            live += s;
+          }
+        }
+        compact = size > 2 * live;
+      } catch (final Throwable t) {
+        failure = t;
+      }
+      synchronized (this) {
+        if (failure != null) {
+          error = failure;
+        }
+        done++;
+        notifyAll();
+      }
+    }
+
+    /**
+     * Removes the files of previous runs and opens the first data file.
+     *
+     * @throws IOException
+     *           if a file cannot be removed or created
+     */
+    private void reset() throws IOException {
+      if (data != null) {
+        data.close();
+      }
+      try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+        for (final Path file : stream) {
+          Files.delete(file);
+        }
+      }
+      kept = 0;
+      oldest = 0;
+      open(0);
+    }
+
+    private void open(int g) throws IOException {
+      generation = g;
+      data = FileChannel.open(path.resolve("data." + g),
+          StandardOpenOption.CREATE, StandardOpenOption.READ,
+          StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+      size = 0;
+      entries.clear();
+    }
+
+    private byte[] deflate(byte[] raw) {
+      deflater.reset();
+      deflater.setInput(raw);
+      deflater.finish();
+      final ByteArrayOutputStream out = new ByteArrayOutputStream(
+          raw.length / 2 + 64);
+      while (!deflater.finished()) {
+        out.write(buffer, 0, deflater.deflate(buffer));
+      }
+      return out.toByteArray();
+    }
+
+    private void writeManifest(long e) throws IOException {
+      final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      final DataOutputStream out = new DataOutputStream(bytes);
+      out.writeInt(MAGIC);
+      out.writeLong(e);
+      out.writeInt(generation);
+      out.writeInt(entries.size());
+      for (final Map.Entry<String, Entry> entry : entries.entrySet()) {
+        out.writeUTF(entry.getKey());
+        entry.getValue().write(out);
+      }
+      final CRC32 crc = new CRC32();
+      crc.update(bytes.toByteArray());
+      out.writeLong(crc.getValue());
+      out.flush();
+      final Path tmp = path.resolve("manifest.tmp");
+      try (FileChannel channel = FileChannel.open(tmp,
+          StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+          StandardOpenOption.TRUNCATE_EXISTING)) {
+        final ByteBuffer b = ByteBuffer.wrap(bytes.toByteArray());
+        while (b.hasRemaining()) {
+          channel.write(b);
+        }
+        channel.force(true);
+      }
+      Files.move(tmp, path.resolve("manifest." + (e & 1)),
+          StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a manifest.
+     *
+     * @param parity
+     *          the parity of the epoch of the manifest
+     * @return the manifest or null if missing or corrupted
+     */
+    private Manifest manifest(int parity) {
+      final byte[] bytes;
+      try {
+        bytes = Files.readAllBytes(path.resolve("manifest." + parity));
+      } catch (final NoSuchFileException e) {
+        return null;
+      } catch (final IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      if (bytes.length < 24) {
+        return null;
+      }
+      final CRC32 crc = new CRC32();
+      crc.update(bytes, 0, bytes.length - 8);
+      try (DataInputStream in = new DataInputStream(
+          new ByteArrayInputStream(bytes))) {
+        if (in.readInt() != MAGIC || ByteBuffer.wrap(bytes)
+            .getLong(bytes.length - 8) != crc.getValue()) {
+          return null;
+        }
+        final Manifest m = new Manifest();
+        m.epoch = in.readLong();
+        m.generation = in.readInt();
+        final int n = in.readInt();
+        for (int i = 0; i < n; i++) {
+          final String name = in.readUTF();
+          m.entries.put(name, Entry.read(in));
+        }
+        return m;
+      } catch (final IOException e) {
+        return null;
+      }
+    }
+  }
+
+  /**
+   * The content of a manifest.
+   */
+  private static final class Manifest {
+    long epoch;
+
+    int generation;
+
+    final Map<String, Entry> entries = new LinkedHashMap<>();
+  }
+
+  /**
+   * The location of the chunks of a state in a data file.
+   */
+  private static final class Entry {
+    /**
+     * The kind of state.
+     */
+    final byte kind;
+
+    /**
+     * The length of a primitive array state.
+     */
+    final int length;
+
+    /**
+     * The offsets of the compressed chunks.
+     */
+    final long[] offsets;
+
+    /**
+     * The sizes of the compressed chunks.
+     */
+    final int[] sizes;
+
+    /**
+     * The sizes of the uncompressed chunks.
+     */
+    final int[] raws;
+
+    Entry(byte kind, int length, int count) {
+      this.kind = kind;
+      this.length = length;
+      offsets = new long[count];
+      sizes = new int[count];
+      raws = new int[count];
+    }
+
+    void write(DataOutputStream out) throws IOException {
+      out.writeByte(kind);
+      out.writeInt(length);
+      out.writeInt(offsets.length);
+      for (int c = 0; c < offsets.length; c++) {
+        out.writeLong(offsets[c]);
+        out.writeInt(sizes[c]);
+        out.writeInt(raws[c]);
+      }
+    }
+
+    static Entry read(DataInputStream in) throws IOException {
+      final Entry entry = new Entry(in.readByte(), in.readInt(), in.readInt());
+      for (int c = 0; c < entry.offsets.length; c++) {
+        entry.offsets[c] = in.readLong();
+        entry.sizes[c] = in.readInt();
+        entry.raws[c] = in.readInt();
+      }
+      return entry;
+    }
+
+    /**
+     * Reads and decompresses the chunks of the state in parallel.
+     *
+     * @param channel
+     *          the data file
+     * @return the state
+     * @throws IOException
+     *           if the state cannot be read
+     */
+    Serializable load(FileChannel channel) throws IOException {
+      if (kind == OBJECT) {
+        try (ObjectInputStream in = new ObjectInputStream(
+            new ByteArrayInputStream(chunk(channel, 0)))) {
+          return (Serializable) in.readObject();
+        } catch (final ClassNotFoundException e) {
+          throw new IOException(e);
+        }
+      }
+      final Object array = kind == INT ? new int[length]
+          : kind == LONG ? new long[length]
+              : kind == FLOAT ? new float[length] : new double[length];
+      final IOException[] failure = new IOException[1];
+      // one task per chunk
+      LocalParallel.forRange(0, offsets.length, 1, (from, to) -> {
+        for (int c = from; c < to; c++) {
+          try {
+            fill(array, c * CHUNK, chunk(channel, c));
+          } catch (final IOException e) {
+            failure[0] = e;
+          }
+        }
+      });
+      if (failure[0] != null) {
+        throw failure[0];
+      }
+      return (Serializable) array;
+    }
+
+    private byte[] chunk(FileChannel channel, int c) throws IOException {
+      final ByteBuffer b = ByteBuffer.allocate(sizes[c]);
+      long position = offsets[c];
+      while (b.hasRemaining()) {
+        final int n = channel.read(b, position);
+        if (n < 0) {
+          throw new EOFException();
+        }
+        position += n;
+      }
+      final byte[] raw = new byte[raws[c]];
+      final Inflater inflater = new Inflater();
+      try {
+        inflater.setInput(b.array());
+        int n = 0;
+        while (n < raw.length) {
+          final int k = inflater.inflate(raw, n, raw.length - n);
+          if (k == 0 && (inflater.finished() || inflater.needsInput())) {
+            throw new IOException("corrupted chunk");
+          }
+          n += k;
+        }
+      } catch (final DataFormatException e) {
+        throw new IOException(e);
+      } finally {
+        inflater.end();
+      }
+      return raw;
+    }
+  }
+
+  /**
+   * A captured checkpoint.
+   */
+  private static final class Job {
+    final long epoch;
+
+    /**
+     * Whether to remove the files of previous runs first.
+     */
+    final boolean reset;
+
+    /**
+     * Whether to start a new data file.
+     */
+    final boolean rotate;
+
+    final Part[] parts;
+
+    Job(long epoch, boolean reset, boolean rotate, Part[] parts) {
+      this.epoch = epoch;
+      this.reset = reset;
+      this.rotate = rotate;
+      this.parts = parts;
+    }
+  }
+
+  /**
+   * The modified chunks of a captured state.
+   */
+  private static final class Part {
+    final String name;
+
+    final byte kind;
+
+    final int length;
+
+    /**
+     * The number of chunks of the state.
+     */
+    final int count;
+
+    /**
+     * Whether all the chunks are included.
+     */
+    final boolean full;
+
+    /**
+     * The indices of the modified chunks.
+     */
+    final int[] chunks;
+
+    /**
+     * The uncompressed modified chunks.
+     */
+    final byte[][] raw;
+
+    Part(String name, byte kind, int length, int count, boolean full,
+        int[] chunks, byte[][] raw) {
+      this.name = name;
+      this.kind = kind;
+      this.length = length;
+      this.count = count;
+      this.full = full;
+      this.chunks = chunks;
+      this.raw = raw;
+    }
+
+    /**
+     * Captures the chunks of a state that differ from the previous state.
+     * Updates the previous state accordingly.
+     *
+     * @param name
+     *          the name of the object
+     * @param state
+     *          the new state
+     * @param shadow
+     *          the previous primitive array state or null
+     * @return the modified chunks
+     * @throws IOException
+     *           if the state cannot be serialized
+     */
+    static Part of(String name, Serializable state, Object shadow)
+        throws IOException {
+      final byte kind = kind(state);
+      if (kind == OBJECT) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+          out.writeObject(state);
+        }
+        return new Part(name, kind, 0, 1, true, new int[] { 0 },
+            new byte[][] { bytes.toByteArray() });
+      }
+      final int length = Array.getLength(state);
+      final int count = (length + CHUNK - 1) / CHUNK;
+      final boolean full = shadow == null
+          || shadow.getClass() != state.getClass()
+          || Array.getLength(shadow) != length;
+      final byte[][] raw = new byte[count][];
+      // one task per chunk
+      LocalParallel.forRange(0, count, 1, (from, to) -> {
+        for (int c = from; c < to; c++) {
+          final int lo = c * CHUNK;
+          final int hi = Math.min(length, lo + CHUNK);
+          if (full || !SnapshotService.Update.same(shadow, state, lo, hi)) {
+            raw[c] = bytes(state, lo, hi);
+            if (!full) {
+              System.arraycopy(state, lo, shadow, lo, hi - lo);
+            }
+          }
+        }
+      });
+      int n = 0;
+      for (final byte[] r : raw) {
+        if (r != null) {
+          n++;
+        }
+      }
+      final int[] chunks = new int[n];
+      final byte[][] data = new byte[n][];
+      n = 0;
+      for (int c = 0; c < count; c++) {
+        if (raw[c] != null) {
+          chunks[n] = c;
+          data[n++] = raw[c];
+        }
+      }
+      return new Part(name, kind, length, count, full, chunks, data);
+    }
+  }
+
+  private static byte kind(Object state) {
+    return state instanceof int[] ? INT
+        : state instanceof long[] ? LONG
+            : state instanceof float[] ? FLOAT
+                : state instanceof double[] ? DOUBLE : OBJECT;
+  }
+
+  private static byte[] bytes(Object array, int from, int to) {
+    final int n = to - from;
+    if (array instanceof int[]) {
+      final ByteBuffer b = ByteBuffer.allocate(4 * n);
+      b.asIntBuffer().put((int[]) array, from, n);
+      return b.array();
+    } else if (array instanceof long[]) {
+      final ByteBuffer b = ByteBuffer.allocate(8 * n);
+      b.asLongBuffer().put((long[]) array, from, n);
+      return b.array();
+    } else if (array instanceof float[]) {
+      final ByteBuffer b = ByteBuffer.allocate(4 * n);
+      b.asFloatBuffer().put((float[]) array, from, n);
+      return b.array();
+    } else {
+      final ByteBuffer b = ByteBuffer.allocate(8 * n);
+      b.asDoubleBuffer().put((double[]) array, from, n);
+      return b.array();
+    }
+  }
+
+  private static void fill(Object array, int from, byte[] raw) {
+    final ByteBuffer b = ByteBuffer.wrap(raw);
+    if (array instanceof int[]) {
+      b.asIntBuffer().get((int[]) array, from, raw.length / 4);
+    } else if (array instanceof long[]) {
+      b.asLongBuffer().get((long[]) array, from, raw.length / 8);
+    } else if (array instanceof float[]) {
+      b.asFloatBuffer().get((float[]) array, from, raw.length / 4);
+    } else {
+      b.asDoubleBuffer().get((double[]) array, from, raw.length / 8);
+    }
+  }
+}
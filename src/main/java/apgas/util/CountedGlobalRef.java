@@ -0,0 +1,379 @@
+/*
+ *  This file is part of the X10 project (http://x10-lang.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  (C) Copyright IBM Corporation 2006-2016.
+ */
+
+package apgas.util;
+
+import static apgas.Constructs.at;
+import static apgas.Constructs.here;
+import static apgas.Constructs.uncountedAsyncAt;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import apgas.DeadPlaceException;
+import apgas.Place;
+import apgas.impl.Serialization;
+
+/**
+ * The {@link CountedGlobalRef} class implements global references that free
+ * their target once no copy of the reference remains at any place.
+ * <p>
+ * The home place hands out a fixed total weight. The copies of a reference at
+ * a place share a local weight. Serializing a reference moves a share of the
+ * local weight to the serialized copy. Once all the copies at a place have
+ * been garbage collected, the local weight is returned to the home place.
+ * Returns are batched and sent lazily. The target is removed when the home
+ * place has recovered the total weight.
+ * <p>
+ * A place whose local weight cannot be split anymore gives a weight of zero to
+ * the serialized copies and retains its own weight forever. The target of the
+ * reference is then only removed by {@link #free()}. This requires about 60
+ * successive serializations without an intermediate return to the same place.
+ * <p>
+ * The share of a serialized copy is taken from the local weight when the copy
+ * is serialized. If the copy is never deserialized, for instance because the
+ * serialization of the enclosing message fails later on or the destination
+ * place dies, its share is lost. The target is then only removed by
+ * {@link #free()}.
+ *
+ * @param <T>
+ *          the type of the reference
+ */
+public class CountedGlobalRef<T> extends GlobalRef<T> {
+  private static final long serialVersionUID = -5817213526370926641L;
+
+  /**
+   * The total weight of a reference.
+   */
+  private static final long WEIGHT = 1L << 62;
+
+  /**
+   * The maximal number of pending returns before a batch is sent.
+   */
+  private static final int BATCH = 1024;
+
+  /**
+   * The maximal delay before pending returns are sent, in milliseconds.
+   */
+  private static final long DELAY = 100;
+
+  /**
+   * The weight not yet returned to the home place, for the references homed
+   * here.
+   */
+  private static final Map<GlobalID, AtomicLong> credits = new ConcurrentHashMap<>();
+
+  /**
+   * The local weight of the references present here.
+   */
+  private static final Map<GlobalID, Holder> holders = new ConcurrentHashMap<>();
+
+  /**
+   * The queue of the local weights whose references have been collected.
+   */
+  private static final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+
+  /**
+   * The weights pending return, by home place.
+   */
+  private static final Map<Place, Map<GlobalID, Long>> pending = new HashMap<>();
+
+  /**
+   * The number of weights pending return.
+   */
+  private static int count;
+
+  /**
+   * The thread returning the weights of collected references.
+   */
+  private static Thread cleaner;
+
+  /**
+   * The object keeping the local weight of this reference alive.
+   */
+  private final transient Object token;
+
+  /**
+   * The local weight of this reference.
+   */
+  private final transient Holder holder;
+
+  /**
+   * Constructs a {@link CountedGlobalRef} to the given object.
+   *
+   * @param t
+   *          the target of the global reference
+   * @throws IllegalArgumentException
+   *           if the target is a {@link PlaceLocalObject}
+   */
+  public CountedGlobalRef(T t) {
+    super(new GlobalID());
+    if (t instanceof PlaceLocalObject) {
+      throw new IllegalArgumentException(
+          "place local objects cannot be counted");
+    }
+    id.putHere(t);
+    credits.put(id, new AtomicLong(WEIGHT));
+    final Object[] tokens = new Object[1];
+    holder = attach(id, WEIGHT, tokens);
+    token = tokens[0];
+  }
+
+  private CountedGlobalRef(GlobalID id, long weight) {
+    super(id);
+    final Object[] tokens = new Object[1];
+    holder = attach(id, weight, tokens);
+    token = tokens[0];
+  }
+
+  /**
+   * Frees this {@link CountedGlobalRef} immediately.
+   * <p>
+   * May be invoked from any place. The target of the reference must not be
+   * accessed after this call.
+   */
+  @Override
+  public void free() {
+    final GlobalID id = this.id;
+    if (id.home.equals(here())) {
+      remove(id);
+    } else {
+      at(id.home, () -> remove(id));
+    }
+  }
+
+  /**
+   * Moves a share of the local weight to a serialized copy.
+   *
+   * @return the serialized copy
+   * @throws ObjectStreamException
+   *           N/A
+   */
+  public Object writeReplace() throws ObjectStreamException {
+    return new Transit(id, holder.split(Serialization.copies()));
+  }
+
+  /**
+   * Adds weight to the local weight of the given reference.
+   *
+   * @param id
+   *          the global ID of the reference
+   * @param weight
+   *          the weight to add
+   * @param tokens
+   *          an array to store the token keeping the local weight alive
+   * @return the local weight
+   */
+  private static Holder attach(GlobalID id, long weight, Object[] tokens) {
+    for (;;) {
+      final Holder holder = holders.get(id);
+      final Object token = holder == null ? null : holder.get();
+      if (token != null) {
+        holder.add(weight);
+        tokens[0] = token;
+        return holder;
+      }
+      final Object t = new Object();
+      final Holder h = new Holder(t, id, weight);
+      if (holder == null ? holders.putIfAbsent(id, h) == null
+          : holders.replace(id, holder, h)) {
+        start();
+        tokens[0] = t;
+        return h;
+      }
+    }
+  }
+
+  /**
+   * Subtracts returned weights at the home place.
+   *
+   * @param ids
+   *          the global IDs of the references
+   * @param weights
+   *          the returned weights
+   */
+  private static void release(GlobalID[] ids, long[] weights) {
+    for (int i = 0; i < ids.length; i++) {
+      final AtomicLong credit = credits.get(ids[i]);
+      if (credit != null && credit.addAndGet(-weights[i]) == 0) {
+        remove(ids[i]);
+      }
+    }
+  }
+
+  private static void remove(GlobalID id) {
+    credits.remove(id);
+    id.removeHere();
+  }
+
+  /**
+   * Starts the cleaner thread if not started yet.
+   */
+  private static synchronized void start() {
+    if (cleaner != null) {
+      return;
+    }
+    cleaner = new Thread(CountedGlobalRef::clean, "apgas-global-ref-cleaner");
+    cleaner.setDaemon(true);
+    cleaner.start();
+  }
+
+  /**
+   * Collects the local weights of the collected references and returns them to
+   * their home places.
+   */
+  private static void clean() {
+    for (;;) {
+      try {
+        Reference<?> ref = queue.remove(DELAY);
+        while (ref != null) {
+          final Holder holder = (Holder) ref;
+          holders.remove(holder.id, holder);
+          final long weight = holder.weight();
+          if (weight > 0 && enqueue(holder.id, weight) >= BATCH) {
+            flush();
+          }
+          ref = queue.poll();
+        }
+        flush();
+      } catch (final InterruptedException e) {
+        return;
+      } catch (final Throwable e) {
+        System.err.println("[APGAS] Failed to return global ref weights: " + e);
+      }
+    }
+  }
+
+  private static synchronized int enqueue(GlobalID id, long weight) {
+    pending.computeIfAbsent(id.home, p -> new HashMap<>()).merge(id, weight,
+        Long::sum);
+    return ++count;
+  }
+
+  /**
+   * Sends one message per home place with the pending returns.
+   */
+  private static void flush() {
+    final Map<Place, Map<GlobalID, Long>> batches;
+    synchronized (CountedGlobalRef.class) {
+      if (count == 0) {
+        return;
+      }
+      batches = new HashMap<>(pending);
+      pending.clear();
+      count = 0;
+    }
+    final Place here = here();
+    for (final Map.Entry<Place, Map<GlobalID, Long>> batch : batches
+        .entrySet()) {
+      final GlobalID[] ids = new GlobalID[batch.getValue().size()];
+      final long[] weights = new long[ids.length];
+      int i = 0;
+      for (final Map.Entry<GlobalID, Long> e : batch.getValue().entrySet()) {
+        ids[i] = e.getKey();
+        weights[i++] = e.getValue();
+      }
+      if (batch.getKey().equals(here)) {
+        release(ids, weights);
+        continue;
+      }
+      try {
+        uncountedAsyncAt(batch.getKey(), () -> release(ids, weights));
+      } catch (final DeadPlaceException e) {
+        // the home place is gone and so is the target
+      }
+    }
+  }
+
+  /**
+   * The local weight of a reference at a place, collected with the last local
+   * copy of the reference.
+   */
+  private static final class Holder extends WeakReference<Object> {
+    /**
+     * The global ID of the reference.
+     */
+    final GlobalID id;
+
+    /**
+     * The local weight.
+     */
+    private long weight;
+
+    /**
+     * Whether the local weight can no longer be returned.
+     */
+    private boolean pinned;
+
+    Holder(Object token, GlobalID id, long weight) {
+      super(token, queue);
+      this.id = id;
+      this.weight = weight;
+    }
+
+    synchronized void add(long w) {
+      weight += w;
+    }
+
+    /**
+     * Takes a share of the local weight for each copy.
+     *
+     * @param copies
+     *          the number of copies
+     * @return the share of each copy
+     */
+    synchronized long split(int copies) {
+      final long share = weight / (2L * copies);
+      if (share == 0) {
+        pinned = true;
+        return 0;
+      }
+      weight -= share * copies;
+      return share;
+    }
+
+    /**
+     * Returns the weight to return to the home place.
+     *
+     * @return the weight or zero if pinned
+     */
+    synchronized long weight() {
+      return pinned ? 0 : weight;
+    }
+  }
+
+  /**
+   * The serialized form of a {@link CountedGlobalRef}.
+   */
+  private static final class Transit implements Serializable {
+    private static final long serialVersionUID = 3201836937626587741L;
+
+    private final GlobalID id;
+
+    private final long weight;
+
+    private Transit(GlobalID id, long weight) {
+      this.id = id;
+      this.weight = weight;
+    }
+
+    private Object readResolve() throws ObjectStreamException {
+      return new CountedGlobalRef<>(id, weight);
+    }
+  }
+}
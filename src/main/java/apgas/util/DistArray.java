@@ -0,0 +1,432 @@
+/*
+ *  This file is part of the X10 project (http://x10-lang.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  (C) Copyright IBM Corporation 2006-2016.
+ */
+
+package apgas.util;
+
+import static apgas.Constructs.async;
+import static apgas.Constructs.asyncAt;
+import static apgas.Constructs.asyncAtAll;
+import static apgas.Constructs.at;
+import static apgas.Constructs.finish;
+import static apgas.Constructs.here;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import apgas.Place;
+
+/**
+ * The {@link DistArray} class implements an array with a global index space
+ * distributed over a list of places.
+ * <p>
+ * The {@link Distribution} maps each global index to a chunk number, i.e., an
+ * index into the list of places, and an offset in the chunk of this place.
+ * <p>
+ * Batched accesses group the requested indices per owner and issue a single
+ * remote task per owner.
+ *
+ * @param <T>
+ *          the type of the array elements
+ */
+public class DistArray<T> extends PlaceLocalObject {
+  /**
+   * A function of a global index and an element.
+   *
+   * @param <T>
+   *          the type of the array elements
+   */
+  @FunctionalInterface
+  public interface IndexedConsumer<T> extends Serializable {
+    /**
+     * Processes an element.
+     *
+     * @param index
+     *          the global index of the element
+     * @param t
+     *          the element
+     */
+    void accept(long index, T t);
+  }
+
+  /**
+   * A function computing a new element from a global index and an element.
+   *
+   * @param <T>
+   *          the type of the array elements
+   */
+  @FunctionalInterface
+  public interface IndexedFunction<T> extends Serializable {
+    /**
+     * Computes the new value of an element.
+     *
+     * @param index
+     *          the global index of the element
+     * @param t
+     *          the current element
+     * @return the new element
+     */
+    T apply(long index, T t);
+  }
+
+  /**
+   * The distribution of this array.
+   */
+  protected final Distribution distribution;
+
+  /**
+   * The places holding the chunks, indexed by chunk number.
+   */
+  protected final List<? extends Place> places;
+
+  /**
+   * The chunk number of this place.
+   */
+  protected final int chunk;
+
+  /**
+   * The local chunk.
+   */
+  protected final Object[] array;
+
+  /**
+   * Initializes the local chunk.
+   *
+   * @param distribution
+   *          the distribution of the array
+   * @param places
+   *          the places holding the chunks
+   */
+  protected DistArray(Distribution distribution, List<? extends Place> places) {
+    this.distribution = distribution;
+    this.places = places;
+    chunk = places.indexOf(here());
+    array = new Object[distribution.length(chunk)];
+  }
+
+  /**
+   * Returns the distribution of this array.
+   *
+   * @return the distribution
+   */
+  public Distribution distribution() {
+    return distribution;
+  }
+
+  /**
+   * Returns the place owning the specified index.
+   *
+   * @param index
+   *          a global index
+   * @return the owning place
+   */
+  public Place owner(long index) {
+    return places.get(distribution.owner(index));
+  }
+
+  /**
+   * Returns the length of the local chunk.
+   *
+   * @return the length of the local chunk
+   */
+  public int localLength() {
+    return array.length;
+  }
+
+  /**
+   * Returns the element at the specified offset in the local chunk.
+   *
+   * @param offset
+   *          an offset in the local chunk
+   * @return the element
+   */
+  @SuppressWarnings("unchecked")
+  public T getLocal(int offset) {
+    return (T) array[offset];
+  }
+
+  /**
+   * Sets the element at the specified offset in the local chunk.
+   *
+   * @param offset
+   *          an offset in the local chunk
+   * @param t
+   *          the desired value
+   */
+  public void setLocal(int offset, T t) {
+    array[offset] = t;
+  }
+
+  /**
+   * Returns the element at the specified global index, fetching it from its
+   * owner if remote.
+   *
+   * @param index
+   *          a global index
+   * @return the element
+   */
+  @SuppressWarnings("unchecked")
+  public T get(long index) {
+    final int owner = distribution.owner(index);
+    final int offset = distribution.offset(index);
+    if (owner == chunk) {
+      return (T) array[offset];
+    }
+    return (T) at(places.get(owner), () -> new Object[] { array[offset] })[0];
+  }
+
+  /**
+   * Sets the element at the specified global index, at its owner if remote.
+   *
+   * @param index
+   *          a global index
+   * @param t
+   *          the desired value
+   */
+  public void set(long index, T t) {
+    final int owner = distribution.owner(index);
+    final int offset = distribution.offset(index);
+    if (owner == chunk) {
+      array[offset] = t;
+    } else {
+      at(places.get(owner), () -> {
+        array[offset] = t;
+      });
+    }
+  }
+
+  /**
+   * Returns the elements at the specified global indices.
+   * <p>
+   * The indices are grouped per owner. Each owner is contacted once, and all
+   * owners are contacted in parallel.
+   *
+   * @param indices
+   *          global indices
+   * @return the elements in the order of {@code indices}
+   */
+  @SuppressWarnings("unchecked")
+  public List<T> get(long[] indices) {
+    final Groups groups = new Groups(indices);
+    final Object[] result = new Object[indices.length];
+    finish(() -> {
+      for (int o = 0; o < places.size(); o++) {
+        final int[] offsets = groups.offsets[o];
+        final int[] positions = groups.positions[o];
+        if (offsets.length == 0) {
+          continue;
+        }
+        if (o == chunk) {
+          for (int k = 0; k < offsets.length; k++) {
+            result[positions[k]] = array[offsets[k]];
+          }
+          continue;
+        }
+        final Place place = places.get(o);
+        async(() -> {
+          final Object[] values = at(place, () -> gather(offsets));
+          for (int k = 0; k < positions.length; k++) {
+            result[positions[k]] = values[k];
+          }
+        });
+      }
+    });
+    return (List<T>) Arrays.asList(result);
+  }
+
+  /**
+   * Returns the elements in the specified range of global indices.
+   *
+   * @param from
+   *          the first global index
+   * @param to
+   *          the global index after the last index
+   * @return the elements in index order
+   * @see #get(long[])
+   */
+  public List<T> get(long from, long to) {
+    return get(range(from, to));
+  }
+
+  /**
+   * Sets the elements at the specified global indices.
+   * <p>
+   * The indices are grouped per owner. A single task is spawned per remote
+   * owner. This method returns once all elements have been set.
+   *
+   * @param indices
+   *          global indices
+   * @param values
+   *          the desired values in the order of {@code indices}
+   */
+  public void put(long[] indices, List<? extends T> values) {
+    final Groups groups = new Groups(indices);
+    finish(() -> {
+      for (int o = 0; o < places.size(); o++) {
+        final int[] offsets = groups.offsets[o];
+        final int[] positions = groups.positions[o];
+        if (offsets.length == 0) {
+          continue;
+        }
+        final Object[] batch = new Object[offsets.length];
+        for (int k = 0; k < positions.length; k++) {
+          batch[k] = values.get(positions[k]);
+        }
+        if (o == chunk) {
+          scatter(offsets, batch);
+        } else {
+          asyncAt(places.get(o), () -> scatter(offsets, batch));
+        }
+      }
+    });
+  }
+
+  /**
+   * Sets the elements in the specified range of global indices.
+   *
+   * @param from
+   *          the first global index
+   * @param values
+   *          the desired values
+   * @see #put(long[], List)
+   */
+  public void put(long from, List<? extends T> values) {
+    put(range(from, from + values.size()), values);
+  }
+
+  /**
+   * Applies {@code f} to every element of the array at its owning place, in
+   * parallel, and waits for completion.
+   *
+   * @param f
+   *          the function to apply
+   */
+  @SuppressWarnings("unchecked")
+  public void forEach(IndexedConsumer<? super T> f) {
+    finish(() -> asyncAtAll(places,
+        () -> LocalParallel.forRange(0, array.length, (from, to) -> {
+          for (int i = from; i < to; i++) {
+            f.accept(distribution.index(chunk, i), (T) array[i]);
+          }
+        })));
+  }
+
+  /**
+   * Replaces every element of the array with the result of applying {@code f}
+   * at its owning place, in parallel, and waits for completion.
+   *
+   * @param f
+   *          the function to apply
+   */
+  @SuppressWarnings("unchecked")
+  public void update(IndexedFunction<T> f) {
+    finish(() -> asyncAtAll(places,
+        () -> LocalParallel.forRange(0, array.length, (from, to) -> {
+          for (int i = from; i < to; i++) {
+            array[i] = f.apply(distribution.index(chunk, i), (T) array[i]);
+          }
+        })));
+  }
+
+  /**
+   * Returns the local elements at the specified offsets.
+   *
+   * @param offsets
+   *          offsets in the local chunk
+   * @return the elements
+   */
+  private Object[] gather(int[] offsets) {
+    final Object[] values = new Object[offsets.length];
+    for (int k = 0; k < offsets.length; k++) {
+      values[k] = array[offsets[k]];
+    }
+    return values;
+  }
+
+  /**
+   * Sets the local elements at the specified offsets.
+   *
+   * @param offsets
+   *          offsets in the local chunk
+   * @param values
+   *          the desired values
+   */
+  private void scatter(int[] offsets, Object[] values) {
+    for (int k = 0; k < offsets.length; k++) {
+      array[offsets[k]] = values[k];
+    }
+  }
+
+  private static long[] range(long from, long to) {
+    final long[] indices = new long[(int) (to - from)];
+    for (int k = 0; k < indices.length; k++) {
+      indices[k] = from + k;
+    }
+    return indices;
+  }
+
+  /**
+   * Global indices grouped per owner.
+   */
+  private final class Groups {
+    /**
+     * The local offsets of the indices, per owner.
+     */
+    final int[][] offsets;
+
+    /**
+     * The positions of the indices in the batch, per owner.
+     */
+    final int[][] positions;
+
+    Groups(long[] indices) {
+      final int n = places.size();
+      final int[] counts = new int[n];
+      for (final long index : indices) {
+        counts[distribution.owner(index)]++;
+      }
+      offsets = new int[n][];
+      positions = new int[n][];
+      for (int o = 0; o < n; o++) {
+        offsets[o] = new int[counts[o]];
+        positions[o] = new int[counts[o]];
+      }
+      Arrays.fill(counts, 0);
+      for (int k = 0; k < indices.length; k++) {
+        final int o = distribution.owner(indices[k]);
+        offsets[o][counts[o]] = distribution.offset(indices[k]);
+        positions[o][counts[o]++] = k;
+      }
+    }
+  }
+
+  /**
+   * Constructs a {@link DistArray} instance.
+   *
+   * @param <T>
+   *          the type of the array elements
+   * @param places
+   *          a list of places with no repetition, indexed by chunk number
+   * @param distribution
+   *          a distribution with as many chunks as places
+   * @return the distributed array
+   */
+  public static <T> DistArray<T> make(List<? extends Place> places,
+      Distribution distribution) {
+    if (distribution.chunks() != places.size()) {
+      throw new IllegalArgumentException("distribution has "
+          + distribution.chunks() + " chunks for " + places.size() + " places");
+    }
+    final ArrayList<Place> list = new ArrayList<>(places);
+    return PlaceLocalObject.make(list, () -> new DistArray<>(distribution, list));
+  }
+}
@@ -0,0 +1,688 @@
+/*
+ *  This file is part of the X10 project (http://x10-lang.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  (C) Copyright IBM Corporation 2006-2016.
+ */
+
+package apgas.util;
+
+import static apgas.Constructs.async;
+import static apgas.Constructs.asyncAt;
+import static apgas.Constructs.asyncAtAll;
+import static apgas.Constructs.at;
+import static apgas.Constructs.finish;
+import static apgas.Constructs.here;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BinaryOperator;
+
+import apgas.Place;
+
+/**
+ * The {@link DistHashMap} class implements a hash map partitioned over a list
+ * of places.
+ * <p>
+ * Each key is owned by the place selected by its hash code. Each place stores
+ * the entries it owns in an open-addressing table. Null keys and null values
+ * are not permitted.
+ * <p>
+ * As every place computes the owner of a key independently, the hash code of
+ * a key must depend only on its value, so that equal keys have the same hash
+ * code in every JVM, as for strings, boxed primitives, and classes overriding
+ * {@link Object#hashCode()} accordingly. Keys relying on the identity hash code
+ * end up at unpredictable owners. Enum keys, whose hash code is the identity
+ * hash code, are rejected: use their names or ordinals instead.
+ * <p>
+ * Batched accesses group the keys per owner and issue a single remote task per
+ * owner. Iterations and aggregations run in parallel at the owners.
+ * {@link DistLongHashMap} specializes this class for {@code long} keys and
+ * values.
+ *
+ * @param <K>
+ *          the type of the keys
+ * @param <V>
+ *          the type of the values
+ */
+public class DistHashMap<K, V> extends PlaceLocalObject {
+  /**
+   * A function of a key and a value.
+   *
+   * @param <K>
+   *          the type of the keys
+   * @param <V>
+   *          the type of the values
+   */
+  @FunctionalInterface
+  public interface EntryConsumer<K, V> extends Serializable {
+    /**
+     * Processes an entry.
+     *
+     * @param key
+     *          the key
+     * @param value
+     *          the value
+     */
+    void accept(K key, V value);
+  }
+
+  /**
+   * A function computing a result from a key and a value.
+   *
+   * @param <K>
+   *          the type of the keys
+   * @param <V>
+   *          the type of the values
+   * @param <R>
+   *          the type of the result
+   */
+  @FunctionalInterface
+  public interface EntryFunction<K, V, R> extends Serializable {
+    /**
+     * Computes the result for an entry.
+     *
+     * @param key
+     *          the key
+     * @param value
+     *          the value
+     * @return the result
+     */
+    R apply(K key, V value);
+  }
+
+  /**
+   * An associative function combining two results.
+   *
+   * @param <R>
+   *          the type of the results
+   */
+  @FunctionalInterface
+  public interface Reducer<R> extends BinaryOperator<R>, Serializable {
+  }
+
+  /**
+   * The initial capacity of the local tables.
+   */
+  static final int INITIAL_CAPACITY = 16;
+
+  /**
+   * The places holding the partitions, indexed by partition number.
+   */
+  protected final List<? extends Place> places;
+
+  /**
+   * The partition number of this place.
+   */
+  protected final int partition;
+
+  /**
+   * The keys of the local table.
+   */
+  private Object[] keys = new Object[INITIAL_CAPACITY];
+
+  /**
+   * The values of the local table.
+   */
+  private Object[] values = new Object[INITIAL_CAPACITY];
+
+  /**
+   * The number of local entries.
+   */
+  private int size;
+
+  /**
+   * Initializes the local partition.
+   *
+   * @param places
+   *          the places holding the partitions
+   */
+  protected DistHashMap(List<? extends Place> places) {
+    this.places = places;
+    partition = places.indexOf(here());
+  }
+
+  /**
+   * Returns the place owning the specified key.
+   *
+   * @param key
+   *          a key
+   * @return the owning place
+   */
+  public Place owner(K key) {
+    return places.get(partition(key));
+  }
+
+  /**
+   * Returns the number of local entries.
+   *
+   * @return the number of entries owned by this place
+   */
+  public synchronized int localSize() {
+    return size;
+  }
+
+  /**
+   * Returns the value of a key owned by this place.
+   *
+   * @param key
+   *          a key owned by this place
+   * @return the value or null if absent
+   */
+  @SuppressWarnings("unchecked")
+  public synchronized V getLocal(K key) {
+    final int slot = find(key);
+    return slot < 0 ? null : (V) values[slot];
+  }
+
+  /**
+   * Associates a value with a key owned by this place.
+   *
+   * @param key
+   *          a key owned by this place
+   * @param value
+   *          the value
+   * @return the previous value or null if absent
+   */
+  public synchronized V putLocal(K key, V value) {
+    return insert(key, value);
+  }
+
+  /**
+   * Removes a key owned by this place.
+   *
+   * @param key
+   *          a key owned by this place
+   * @return the previous value or null if absent
+   */
+  public synchronized V removeLocal(K key) {
+    return delete(key);
+  }
+
+  /**
+   * Returns the value of a key, fetching it from its owner if remote.
+   *
+   * @param key
+   *          a key
+   * @return the value or null if absent
+   */
+  @SuppressWarnings("unchecked")
+  public V get(K key) {
+    final int owner = partition(key);
+    if (owner == partition) {
+      return getLocal(key);
+    }
+    return (V) at(places.get(owner), () -> new Object[] { getLocal(key) })[0];
+  }
+
+  /**
+   * Associates a value with a key, at its owner if remote.
+   *
+   * @param key
+   *          a key
+   * @param value
+   *          the value
+   * @return the previous value or null if absent
+   */
+  @SuppressWarnings("unchecked")
+  public V put(K key, V value) {
+    final int owner = partition(key);
+    if (owner == partition) {
+      return putLocal(key, value);
+    }
+    return (V) at(places.get(owner),
+        () -> new Object[] { putLocal(key, value) })[0];
+  }
+
+  /**
+   * Removes a key, at its owner if remote.
+   *
+   * @param key
+   *          a key
+   * @return the previous value or null if absent
+   */
+  @SuppressWarnings("unchecked")
+  public V remove(K key) {
+    final int owner = partition(key);
+    if (owner == partition) {
+      return removeLocal(key);
+    }
+    return (V) at(places.get(owner), () -> new Object[] { removeLocal(key) })[0];
+  }
+
+  /**
+   * Returns the values of the specified keys.
+   * <p>
+   * The keys are grouped per owner. Each owner is contacted once, and all
+   * owners are contacted in parallel.
+   *
+   * @param keys
+   *          keys
+   * @return the values in the order of {@code keys}, null if absent
+   */
+  @SuppressWarnings("unchecked")
+  public List<V> getAll(List<? extends K> keys) {
+    final int[][] groups = group(keys);
+    final Object[] result = new Object[keys.size()];
+    finish(() -> {
+      for (int o = 0; o < places.size(); o++) {
+        final int[] positions = groups[o];
+        if (positions.length == 0) {
+          continue;
+        }
+        final Object[] batch = select(keys, positions);
+        if (o == partition) {
+          scatter(result, positions, lookup(batch));
+          continue;
+        }
+        final Place place = places.get(o);
+        async(() -> scatter(result, positions, at(place, () -> lookup(batch))));
+      }
+    });
+    return (List<V>) Arrays.asList(result);
+  }
+
+  /**
+   * Copies all the entries of the specified map into this map.
+   * <p>
+   * The entries are grouped per owner. A single task is spawned per remote
+   * owner. This method returns once all entries have been stored.
+   *
+   * @param map
+   *          the entries to store
+   */
+  public void putAll(Map<? extends K, ? extends V> map) {
+    final List<K> keys = new ArrayList<>(map.size());
+    final List<V> vals = new ArrayList<>(map.size());
+    for (final Map.Entry<? extends K, ? extends V> e : map.entrySet()) {
+      keys.add(e.getKey());
+      vals.add(e.getValue());
+    }
+    final int[][] groups = group(keys);
+    finish(() -> {
+      for (int o = 0; o < places.size(); o++) {
+        final int[] positions = groups[o];
+        if (positions.length == 0) {
+          continue;
+        }
+        final Object[] k = select(keys, positions);
+        final Object[] v = select(vals, positions);
+        if (o == partition) {
+          store(k, v);
+        } else {
+          asyncAt(places.get(o), () -> store(k, v));
+        }
+      }
+    });
+  }
+
+  /**
+   * Removes all the specified keys from this map.
+   *
+   * @param keys
+   *          the keys to remove
+   * @see #putAll(Map)
+   */
+  public void removeAll(Collection<? extends K> keys) {
+    final List<K> list = new ArrayList<>(keys);
+    final int[][] groups = group(list);
+    finish(() -> {
+      for (int o = 0; o < places.size(); o++) {
+        final int[] positions = groups[o];
+        if (positions.length == 0) {
+          continue;
+        }
+        final Object[] k = select(list, positions);
+        if (o == partition) {
+          erase(k);
+        } else {
+          asyncAt(places.get(o), () -> erase(k));
+        }
+      }
+    });
+  }
+
+  /**
+   * Returns the number of entries in this map.
+   *
+   * @return the number of entries
+   */
+  public long size() {
+    return aggregate((k, v) -> 1L, 0L, Long::sum);
+  }
+
+  /**
+   * Applies {@code f} to every entry of the map at its owning place, in
+   * parallel, and waits for completion.
+   * <p>
+   * The map must not be updated concurrently.
+   *
+   * @param f
+   *          the function to apply
+   */
+  public void forEach(EntryConsumer<? super K, ? super V> f) {
+    finish(() -> asyncAtAll(places, () -> forEachLocal(f)));
+  }
+
+  /**
+   * Applies {@code f} to every local entry in parallel.
+   * <p>
+   * The map must not be updated concurrently.
+   *
+   * @param f
+   *          the function to apply
+   */
+  @SuppressWarnings("unchecked")
+  public void forEachLocal(EntryConsumer<? super K, ? super V> f) {
+    final Object[] k;
+    final Object[] v;
+    synchronized (this) {
+      k = keys;
+      v = values;
+    }
+    LocalParallel.forRange(0, k.length, (from, to) -> {
+      for (int i = from; i < to; i++) {
+        if (k[i] != null) {
+          f.accept((K) k[i], (V) v[i]);
+        }
+      }
+    });
+  }
+
+  /**
+   * Maps every entry of the map using {@code f} and combines the results using
+   * {@code op}.
+   * <p>
+   * Each owner combines its local results in parallel. The partial results of
+   * the owners are combined at the current place. The map must not be updated
+   * concurrently.
+   *
+   * @param <R>
+   *          the type of the result
+   * @param f
+   *          the function to apply to each entry
+   * @param identity
+   *          the identity of {@code op}
+   * @param op
+   *          the associative function combining two results
+   * @return the result of the aggregation
+   */
+  @SuppressWarnings("unchecked")
+  public <R> R aggregate(EntryFunction<? super K, ? super V, ? extends R> f,
+      R identity, Reducer<R> op) {
+    final Object[] partials = new Object[places.size()];
+    finish(() -> {
+      for (int o = 0; o < places.size(); o++) {
+        final int p = o;
+        if (o == partition) {
+          partials[p] = aggregateLocal(f, identity, op);
+          continue;
+        }
+        final Place place = places.get(o);
+        async(() -> partials[p] = at(place,
+            () -> new Object[] { aggregateLocal(f, identity, op) })[0]);
+      }
+    });
+    R result = identity;
+    for (final Object partial : partials) {
+      result = op.apply(result, (R) partial);
+    }
+    return result;
+  }
+
+  /**
+   * Maps every local entry using {@code f} and combines the results using
+   * {@code op}, in parallel.
+   *
+   * @param <R>
+   *          the type of the result
+   * @param f
+   *          the function to apply to each entry
+   * @param identity
+   *          the identity of {@code op}
+   * @param op
+   *          the associative function combining two results
+   * @return the result of the local aggregation
+   * @see #aggregate(EntryFunction, Object, Reducer)
+   */
+  @SuppressWarnings("unchecked")
+  public <R> R aggregateLocal(
+      EntryFunction<? super K, ? super V, ? extends R> f, R identity,
+      Reducer<R> op) {
+    final Object[] k;
+    final Object[] v;
+    synchronized (this) {
+      k = keys;
+      v = values;
+    }
+    return LocalParallel.reduce(0, k.length, (from, to) -> {
+      R r = identity;
+      for (int i = from; i < to; i++) {
+        if (k[i] != null) {
+          r = op.apply(r, f.apply((K) k[i], (V) v[i]));
+        }
+      }
+      return r;
+    }, op);
+  }
+
+  private int partition(Object key) {
+    if (key instanceof Enum) {
+      throw new IllegalArgumentException(
+          "enum keys have no stable hash code across places: " + key);
+    }
+    return partition(hash(key.hashCode()), places.size());
+  }
+
+  /**
+   * Groups the positions of the specified keys per owner.
+   *
+   * @param keys
+   *          the keys
+   * @return the positions of the keys, per owner
+   */
+  private int[][] group(List<?> keys) {
+    final int[] owners = new int[keys.size()];
+    for (int k = 0; k < owners.length; k++) {
+      owners[k] = partition(keys.get(k));
+    }
+    return group(owners, places.size());
+  }
+
+  private static Object[] select(List<?> list, int[] positions) {
+    final Object[] batch = new Object[positions.length];
+    for (int k = 0; k < positions.length; k++) {
+      batch[k] = list.get(positions[k]);
+    }
+    return batch;
+  }
+
+  private static void scatter(Object[] result, int[] positions,
+      Object[] values) {
+    for (int k = 0; k < positions.length; k++) {
+      result[positions[k]] = values[k];
+    }
+  }
+
+  private synchronized Object[] lookup(Object[] batch) {
+    final Object[] result = new Object[batch.length];
+    for (int k = 0; k < batch.length; k++) {
+      final int slot = find(batch[k]);
+      result[k] = slot < 0 ? null : values[slot];
+    }
+    return result;
+  }
+
+  private synchronized void store(Object[] k, Object[] v) {
+    for (int i = 0; i < k.length; i++) {
+      insert(k[i], v[i]);
+    }
+  }
+
+  private synchronized void erase(Object[] k) {
+    for (final Object key : k) {
+      delete(key);
+    }
+  }
+
+  /**
+   * Returns the slot of a key in the local table.
+   *
+   * @param key
+   *          the key
+   * @return the slot or -1 if absent
+   */
+  private int find(Object key) {
+    final int mask = keys.length - 1;
+    for (int i = (int) hash(key.hashCode()) & mask;; i = (i + 1) & mask) {
+      if (keys[i] == null) {
+        return -1;
+      }
+      if (keys[i].equals(key)) {
+        return i;
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private V insert(Object key, Object value) {
+    if (key == null || value == null) {
+      throw new NullPointerException();
+    }
+    final int mask = keys.length - 1;
+    int i = (int) hash(key.hashCode()) & mask;
+    for (; keys[i] != null; i = (i + 1) & mask) {
+      if (keys[i].equals(key)) {
+        final Object previous = values[i];
+        values[i] = value;
+        return (V) previous;
+      }
+    }
+    keys[i] = key;
+    values[i] = value;
+    if (++size > keys.length >> 1) {
+      resize();
+    }
+    return null;
+  }
+
+  @SuppressWarnings("unchecked")
+  private V delete(Object key) {
+    int i = find(key);
+    if (i < 0) {
+      return null;
+    }
+    final Object previous = values[i];
+    final int mask = keys.length - 1;
+    // shift back the following entries of the cluster
+    for (int j = (i + 1) & mask; keys[j] != null; j = (j + 1) & mask) {
+      final int h = (int) hash(keys[j].hashCode()) & mask;
+      if (((j - h) & mask) >= ((j - i) & mask)) {
+        keys[i] = keys[j];
+        values[i] = values[j];
+        i = j;
+      }
+    }
+    keys[i] = null;
+    values[i] = null;
+    size--;
+    return (V) previous;
+  }
+
+  private void resize() {
+    final Object[] k = keys;
+    final Object[] v = values;
+    keys = new Object[k.length << 1];
+    values = new Object[k.length << 1];
+    final int mask = keys.length - 1;
+    for (int j = 0; j < k.length; j++) {
+      if (k[j] != null) {
+        int i = (int) hash(k[j].hashCode()) & mask;
+        while (keys[i] != null) {
+          i = (i + 1) & mask;
+        }
+        keys[i] = k[j];
+        values[i] = v[j];
+      }
+    }
+  }
+
+  /**
+   * Scrambles the bits of a hash code.
+   * <p>
+   * The high bits of the result select the owner of a key, the low bits its
+   * slot in the local table.
+   *
+   * @param h
+   *          a hash code
+   * @return the scrambled hash
+   */
+  static long hash(long h) {
+    h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+    h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+    return h ^ (h >>> 33);
+  }
+
+  /**
+   * Returns the partition number of a scrambled hash.
+   *
+   * @param hash
+   *          the scrambled hash
+   * @param n
+   *          the number of partitions
+   * @return the partition number
+   */
+  static int partition(long hash, int n) {
+    return (int) (((hash >>> 32) * n) >>> 32);
+  }
+
+  /**
+   * Groups positions per partition.
+   *
+   * @param partitions
+   *          the partition number of each position
+   * @param n
+   *          the number of partitions
+   * @return the positions, per partition
+   */
+  static int[][] group(int[] partitions, int n) {
+    final int[] counts = new int[n];
+    for (final int p : partitions) {
+      counts[p]++;
+    }
+    final int[][] groups = new int[n][];
+    for (int p = 0; p < n; p++) {
+      groups[p] = new int[counts[p]];
+    }
+    Arrays.fill(counts, 0);
+    for (int k = 0; k < partitions.length; k++) {
+      final int p = partitions[k];
+      groups[p][counts[p]++] = k;
+    }
+    return groups;
+  }
+
+  /**
+   * Constructs a {@link DistHashMap} instance.
+   *
+   * @param <K>
+   *          the type of the keys
+   * @param <V>
+   *          the type of the values
+   * @param places
+   *          a list of places with no repetition, indexed by partition number
+   * @return the distributed hash map
+   */
+  public static <K, V> DistHashMap<K, V> make(List<? extends Place> places) {
+    final ArrayList<Place> list = new ArrayList<>(places);
+    return PlaceLocalObject.make(list, () -> new DistHashMap<>(list));
+  }
+}
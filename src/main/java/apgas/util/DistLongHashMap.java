@@ -0,0 +1,664 @@
+/*
+ *  This file is part of the X10 project (http://x10-lang.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  (C) Copyright IBM Corporation 2006-2016.
+ */
+
+package apgas.util;
+
+import static apgas.Constructs.async;
+import static apgas.Constructs.asyncAt;
+import static apgas.Constructs.asyncAtAll;
+import static apgas.Constructs.at;
+import static apgas.Constructs.finish;
+import static apgas.Constructs.here;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongBinaryOperator;
+
+import apgas.Place;
+
+/**
+ * The {@link DistLongHashMap} class implements a hash map from {@code long}
+ * keys to {@code long} values partitioned over a list of places.
+ * <p>
+ * The keys are partitioned as in {@link DistHashMap}. Each place stores the
+ * entries it owns in an open-addressing table of primitive arrays, so neither
+ * the local table nor the batches sent to the owners box keys or values.
+ *
+ * @see DistHashMap
+ */
+public class DistLongHashMap extends PlaceLocalObject {
+  /**
+   * A function of a key and a value.
+   */
+  @FunctionalInterface
+  public interface EntryConsumer extends Serializable {
+    /**
+     * Processes an entry.
+     *
+     * @param key
+     *          the key
+     * @param value
+     *          the value
+     */
+    void accept(long key, long value);
+  }
+
+  /**
+   * A function computing a result from a key and a value.
+   */
+  @FunctionalInterface
+  public interface EntryFunction extends Serializable {
+    /**
+     * Computes the result for an entry.
+     *
+     * @param key
+     *          the key
+     * @param value
+     *          the value
+     * @return the result
+     */
+    long apply(long key, long value);
+  }
+
+  /**
+   * An associative function combining two results.
+   */
+  @FunctionalInterface
+  public interface Reducer extends LongBinaryOperator, Serializable {
+  }
+
+  /**
+   * The places holding the partitions, indexed by partition number.
+   */
+  protected final List<? extends Place> places;
+
+  /**
+   * The partition number of this place.
+   */
+  protected final int partition;
+
+  /**
+   * The keys of the local table. Zero marks a free slot.
+   */
+  private long[] keys = new long[DistHashMap.INITIAL_CAPACITY];
+
+  /**
+   * The values of the local table.
+   */
+  private long[] values = new long[DistHashMap.INITIAL_CAPACITY];
+
+  /**
+   * The number of local entries in the table.
+   */
+  private int size;
+
+  /**
+   * Whether key zero is present, as it cannot be stored in the table.
+   */
+  private boolean zero;
+
+  /**
+   * The value of key zero.
+   */
+  private long zeroValue;
+
+  /**
+   * Initializes the local partition.
+   *
+   * @param places
+   *          the places holding the partitions
+   */
+  protected DistLongHashMap(List<? extends Place> places) {
+    this.places = places;
+    partition = places.indexOf(here());
+  }
+
+  /**
+   * Returns the place owning the specified key.
+   *
+   * @param key
+   *          a key
+   * @return the owning place
+   */
+  public Place owner(long key) {
+    return places.get(partition(key));
+  }
+
+  /**
+   * Returns the number of local entries.
+   *
+   * @return the number of entries owned by this place
+   */
+  public synchronized int localSize() {
+    return zero ? size + 1 : size;
+  }
+
+  /**
+   * Returns true if this place has an entry for the specified key.
+   *
+   * @param key
+   *          a key owned by this place
+   * @return true if present
+   */
+  public synchronized boolean containsLocal(long key) {
+    return key == 0 ? zero : find(key) >= 0;
+  }
+
+  /**
+   * Returns the value of a key owned by this place.
+   *
+   * @param key
+   *          a key owned by this place
+   * @param defaultValue
+   *          the value to return if the key is absent
+   * @return the value or {@code defaultValue} if absent
+   */
+  public synchronized long getLocal(long key, long defaultValue) {
+    if (key == 0) {
+      return zero ? zeroValue : defaultValue;
+    }
+    final int slot = find(key);
+    return slot < 0 ? defaultValue : values[slot];
+  }
+
+  /**
+   * Associates a value with a key owned by this place.
+   *
+   * @param key
+   *          a key owned by this place
+   * @param value
+   *          the value
+   */
+  public synchronized void putLocal(long key, long value) {
+    update(key, AtomicOp.SET, value);
+  }
+
+  /**
+   * Applies an operation to the value of a key owned by this place. If the key
+   * is absent, it is associated with the operand.
+   *
+   * @param key
+   *          a key owned by this place
+   * @param op
+   *          the operation
+   * @param operand
+   *          the operand
+   * @return the new value
+   */
+  public synchronized long applyLocal(long key, AtomicOp op, long operand) {
+    return update(key, op, operand);
+  }
+
+  /**
+   * Removes a key owned by this place.
+   *
+   * @param key
+   *          a key owned by this place
+   * @return true if the key was present
+   */
+  public synchronized boolean removeLocal(long key) {
+    return delete(key);
+  }
+
+  /**
+   * Returns the value of a key, fetching it from its owner if remote.
+   *
+   * @param key
+   *          a key
+   * @param defaultValue
+   *          the value to return if the key is absent
+   * @return the value or {@code defaultValue} if absent
+   */
+  public long get(long key, long defaultValue) {
+    final int owner = partition(key);
+    if (owner == partition) {
+      return getLocal(key, defaultValue);
+    }
+    return at(places.get(owner), () -> getLocal(key, defaultValue));
+  }
+
+  /**
+   * Associates a value with a key, at its owner if remote.
+   *
+   * @param key
+   *          a key
+   * @param value
+   *          the value
+   */
+  public void put(long key, long value) {
+    apply(key, AtomicOp.SET, value);
+  }
+
+  /**
+   * Applies an operation to the value of a key, at its owner if remote. If the
+   * key is absent, it is associated with the operand.
+   *
+   * @param key
+   *          a key
+   * @param op
+   *          the operation
+   * @param operand
+   *          the operand
+   * @return the new value
+   */
+  public long apply(long key, AtomicOp op, long operand) {
+    final int owner = partition(key);
+    if (owner == partition) {
+      return applyLocal(key, op, operand);
+    }
+    return at(places.get(owner), () -> applyLocal(key, op, operand));
+  }
+
+  /**
+   * Removes a key, at its owner if remote.
+   *
+   * @param key
+   *          a key
+   * @return true if the key was present
+   */
+  public boolean remove(long key) {
+    final int owner = partition(key);
+    if (owner == partition) {
+      return removeLocal(key);
+    }
+    return at(places.get(owner), () -> removeLocal(key));
+  }
+
+  /**
+   * Returns the values of the specified keys.
+   * <p>
+   * The keys are grouped per owner. Each owner is contacted once, and all
+   * owners are contacted in parallel.
+   *
+   * @param keys
+   *          keys
+   * @param defaultValue
+   *          the value to return for absent keys
+   * @return the values in the order of {@code keys}
+   */
+  public long[] getAll(long[] keys, long defaultValue) {
+    final int[][] groups = group(keys);
+    final long[] result = new long[keys.length];
+    finish(() -> {
+      for (int o = 0; o < places.size(); o++) {
+        final int[] positions = groups[o];
+        if (positions.length == 0) {
+          continue;
+        }
+        final long[] batch = select(keys, positions);
+        if (o == partition) {
+          scatter(result, positions, lookup(batch, defaultValue));
+          continue;
+        }
+        final Place place = places.get(o);
+        async(() -> scatter(result, positions,
+            at(place, () -> lookup(batch, defaultValue))));
+      }
+    });
+    return result;
+  }
+
+  /**
+   * Associates the specified values with the specified keys.
+   * <p>
+   * The keys are grouped per owner. A single task is spawned per remote owner.
+   * This method returns once all entries have been stored.
+   *
+   * @param keys
+   *          keys
+   * @param values
+   *          the values in the order of {@code keys}
+   */
+  public void putAll(long[] keys, long[] values) {
+    applyAll(keys, AtomicOp.SET, values);
+  }
+
+  /**
+   * Applies an operation to the values of the specified keys. Absent keys are
+   * associated with their operands.
+   * <p>
+   * For instance, {@code applyAll(keys, AtomicOp.ADD, counts)} accumulates
+   * counts per key.
+   *
+   * @param keys
+   *          keys
+   * @param op
+   *          the operation
+   * @param operands
+   *          the operands in the order of {@code keys}
+   * @see #putAll(long[], long[])
+   */
+  public void applyAll(long[] keys, AtomicOp op, long[] operands) {
+    if (keys.length != operands.length) {
+      throw new IllegalArgumentException(keys.length + " keys for "
+          + operands.length + " operands");
+    }
+    final int[][] groups = group(keys);
+    finish(() -> {
+      for (int o = 0; o < places.size(); o++) {
+        final int[] positions = groups[o];
+        if (positions.length == 0) {
+          continue;
+        }
+        final long[] k = select(keys, positions);
+        final long[] v = select(operands, positions);
+        if (o == partition) {
+          store(k, op, v);
+        } else {
+          asyncAt(places.get(o), () -> store(k, op, v));
+        }
+      }
+    });
+  }
+
+  /**
+   * Removes all the specified keys from this map.
+   *
+   * @param keys
+   *          the keys to remove
+   * @see #putAll(long[], long[])
+   */
+  public void removeAll(long[] keys) {
+    final int[][] groups = group(keys);
+    finish(() -> {
+      for (int o = 0; o < places.size(); o++) {
+        final int[] positions = groups[o];
+        if (positions.length == 0) {
+          continue;
+        }
+        final long[] k = select(keys, positions);
+        if (o == partition) {
+          erase(k);
+        } else {
+          asyncAt(places.get(o), () -> erase(k));
+        }
+      }
+    });
+  }
+
+  /**
+   * Returns the number of entries in this map.
+   *
+   * @return the number of entries
+   */
+  public long size() {
+    return aggregate((k, v) -> 1, 0, Long::sum);
+  }
+
+  /**
+   * Applies {@code f} to every entry of the map at its owning place, in
+   * parallel, and waits for completion.
+   * <p>
+   * The map must not be updated concurrently.
+   *
+   * @param f
+   *          the function to apply
+   */
+  public void forEach(EntryConsumer f) {
+    finish(() -> asyncAtAll(places, () -> forEachLocal(f)));
+  }
+
+  /**
+   * Applies {@code f} to every local entry in parallel.
+   * <p>
+   * The map must not be updated concurrently.
+   *
+   * @param f
+   *          the function to apply
+   */
+  public void forEachLocal(EntryConsumer f) {
+    final long[] k;
+    final long[] v;
+    final boolean z;
+    final long zv;
+    synchronized (this) {
+      k = keys;
+      v = values;
+      z = zero;
+      zv = zeroValue;
+    }
+    if (z) {
+      f.accept(0, zv);
+    }
+    LocalParallel.forRange(0, k.length, (from, to) -> {
+      for (int i = from; i < to; i++) {
+        if (k[i] != 0) {
+          f.accept(k[i], v[i]);
+        }
+      }
+    });
+  }
+
+  /**
+   * Maps every entry of the map using {@code f} and combines the results using
+   * {@code op}.
+   * <p>
+   * Each owner combines its local results in parallel. The partial results of
+   * the owners are combined at the current place. The map must not be updated
+   * concurrently.
+   *
+   * @param f
+   *          the function to apply to each entry
+   * @param identity
+   *          the identity of {@code op}
+   * @param op
+   *          the associative function combining two results
+   * @return the result of the aggregation
+   */
+  public long aggregate(EntryFunction f, long identity, Reducer op) {
+    final long[] partials = new long[places.size()];
+    finish(() -> {
+      for (int o = 0; o < places.size(); o++) {
+        final int p = o;
+        if (o == partition) {
+          partials[p] = aggregateLocal(f, identity, op);
+          continue;
+        }
+        final Place place = places.get(o);
+        async(() -> partials[p] = at(place,
+            () -> aggregateLocal(f, identity, op)));
+      }
+    });
+    long result = identity;
+    for (final long partial : partials) {
+      result = op.applyAsLong(result, partial);
+    }
+    return result;
+  }
+
+  /**
+   * Maps every local entry using {@code f} and combines the results using
+   * {@code op}, in parallel.
+   *
+   * @param f
+   *          the function to apply to each entry
+   * @param identity
+   *          the identity of {@code op}
+   * @param op
+   *          the associative function combining two results
+   * @return the result of the local aggregation
+   * @see #aggregate(EntryFunction, long, Reducer)
+   */
+  public long aggregateLocal(EntryFunction f, long identity, Reducer op) {
+    final long[] k;
+    final long[] v;
+    final boolean z;
+    final long zv;
+    synchronized (this) {
+      k = keys;
+      v = values;
+      z = zero;
+      zv = zeroValue;
+    }
+    final long r = z ? f.apply(0, zv) : identity;
+    final long local = LocalParallel.reduce(0, k.length, (from, to) -> {
+      long s = identity;
+      for (int i = from; i < to; i++) {
+        if (k[i] != 0) {
+          s = op.applyAsLong(s, f.apply(k[i], v[i]));
+        }
+      }
+      return s;
+    }, (a, b) -> op.applyAsLong(a, b));
+    return op.applyAsLong(r, local);
+  }
+
+  private int partition(long key) {
+    return DistHashMap.partition(DistHashMap.hash(key), places.size());
+  }
+
+  /**
+   * Groups the positions of the specified keys per owner.
+   *
+   * @param keys
+   *          the keys
+   * @return the positions of the keys, per owner
+   */
+  private int[][] group(long[] keys) {
+    final int[] owners = new int[keys.length];
+    for (int k = 0; k < owners.length; k++) {
+      owners[k] = partition(keys[k]);
+    }
+    return DistHashMap.group(owners, places.size());
+  }
+
+  private static long[] select(long[] array, int[] positions) {
+    final long[] batch = new long[positions.length];
+    for (int k = 0; k < positions.length; k++) {
+      batch[k] = array[positions[k]];
+    }
+    return batch;
+  }
+
+  private static void scatter(long[] result, int[] positions, long[] values) {
+    for (int k = 0; k < positions.length; k++) {
+      result[positions[k]] = values[k];
+    }
+  }
+
+  private synchronized long[] lookup(long[] batch, long defaultValue) {
+    final long[] result = new long[batch.length];
+    for (int k = 0; k < batch.length; k++) {
+      result[k] = getLocal(batch[k], defaultValue);
+    }
+    return result;
+  }
+
+  private synchronized void store(long[] k, AtomicOp op, long[] v) {
+    for (int i = 0; i < k.length; i++) {
+      update(k[i], op, v[i]);
+    }
+  }
+
+  private synchronized void erase(long[] k) {
+    for (final long key : k) {
+      delete(key);
+    }
+  }
+
+  /**
+   * Returns the slot of a nonzero key in the local table.
+   *
+   * @param key
+   *          the key
+   * @return the slot or -1 if absent
+   */
+  private int find(long key) {
+    final int mask = keys.length - 1;
+    for (int i = (int) DistHashMap.hash(key) & mask;; i = (i + 1) & mask) {
+      if (keys[i] == 0) {
+        return -1;
+      }
+      if (keys[i] == key) {
+        return i;
+      }
+    }
+  }
+
+  private long update(long key, AtomicOp op, long operand) {
+    if (key == 0) {
+      zeroValue = zero ? op.apply(zeroValue, operand) : operand;
+      zero = true;
+      return zeroValue;
+    }
+    final int mask = keys.length - 1;
+    int i = (int) DistHashMap.hash(key) & mask;
+    for (; keys[i] != 0; i = (i + 1) & mask) {
+      if (keys[i] == key) {
+        return values[i] = op.apply(values[i], operand);
+      }
+    }
+    keys[i] = key;
+    values[i] = operand;
+    if (++size > keys.length >> 1) {
+      resize();
+    }
+    return operand;
+  }
+
+  private boolean delete(long key) {
+    if (key == 0) {
+      final boolean present = zero;
+      zero = false;
+      zeroValue = 0;
+      return present;
+    }
+    int i = find(key);
+    if (i < 0) {
+      return false;
+    }
+    final int mask = keys.length - 1;
+    // shift back the following entries of the cluster
+    for (int j = (i + 1) & mask; keys[j] != 0; j = (j + 1) & mask) {
+      final int h = (int) DistHashMap.hash(keys[j]) & mask;
+      if (((j - h) & mask) >= ((j - i) & mask)) {
+        keys[i] = keys[j];
+        values[i] = values[j];
+        i = j;
+      }
+    }
+    keys[i] = 0;
+    values[i] = 0;
+    size--;
+    return true;
+  }
+
+  private void resize() {
+    final long[] k = keys;
+    final long[] v = values;
+    keys = new long[k.length << 1];
+    values = new long[k.length << 1];
+    final int mask = keys.length - 1;
+    for (int j = 0; j < k.length; j++) {
+      if (k[j] != 0) {
+        int i = (int) DistHashMap.hash(k[j]) & mask;
+        while (keys[i] != 0) {
+          i = (i + 1) & mask;
+        }
+        keys[i] = k[j];
+        values[i] = v[j];
+      }
+    }
+  }
+
+  /**
+   * Constructs a {@link DistLongHashMap} instance.
+   *
+   * @param places
+   *          a list of places with no repetition, indexed by partition number
+   * @return the distributed hash map
+   */
+  public static DistLongHashMap make(List<? extends Place> places) {
+    final ArrayList<Place> list = new ArrayList<>(places);
+    return PlaceLocalObject.make(list, () -> new DistLongHashMap(list));
+  }
+}
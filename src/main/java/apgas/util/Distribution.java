@@ -0,0 +1,179 @@
+/*
+ *  This file is part of the X10 project (http://x10-lang.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  (C) Copyright IBM Corporation 2006-2016.
+ */
+
+package apgas.util;
+
+import java.io.Serializable;
+
+/**
+ * A {@link Distribution} maps the indices of a global index space to chunks.
+ * <p>
+ * Chunks are numbered from 0 to {@link #chunks()} - 1. Each global index is
+ * owned by exactly one chunk, at a unique offset in the chunk.
+ */
+public interface Distribution extends Serializable {
+  /**
+   * Returns the size of the global index space.
+   *
+   * @return the number of indices
+   */
+  long size();
+
+  /**
+   * Returns the number of chunks.
+   *
+   * @return the number of chunks
+   */
+  int chunks();
+
+  /**
+   * Returns the chunk owning the specified index.
+   *
+   * @param index
+   *          a global index
+   * @return the chunk number
+   */
+  int owner(long index);
+
+  /**
+   * Returns the offset of the specified index in its chunk.
+   *
+   * @param index
+   *          a global index
+   * @return the offset in the owning chunk
+   */
+  int offset(long index);
+
+  /**
+   * Returns the length of the specified chunk.
+   *
+   * @param chunk
+   *          a chunk number
+   * @return the length of the chunk
+   */
+  int length(int chunk);
+
+  /**
+   * Returns the global index at the specified offset in the specified chunk.
+   *
+   * @param chunk
+   *          a chunk number
+   * @param offset
+   *          an offset in the chunk
+   * @return the global index
+   */
+  long index(int chunk, int offset);
+
+  /**
+   * Makes a block distribution: each chunk owns a contiguous range of indices.
+   *
+   * @param size
+   *          the number of indices
+   * @param chunks
+   *          the number of chunks
+   * @return the distribution
+   */
+  static Distribution block(long size, int chunks) {
+    return new BlockCyclic(size, chunks,
+        Math.max(1, (size + chunks - 1) / chunks));
+  }
+
+  /**
+   * Makes a cyclic distribution: index {@code i} is owned by chunk
+   * {@code i % chunks}.
+   *
+   * @param size
+   *          the number of indices
+   * @param chunks
+   *          the number of chunks
+   * @return the distribution
+   */
+  static Distribution cyclic(long size, int chunks) {
+    return new BlockCyclic(size, chunks, 1);
+  }
+
+  /**
+   * Makes a block-cyclic distribution: blocks of {@code blockSize} consecutive
+   * indices are dealt to the chunks in a round-robin fashion.
+   *
+   * @param size
+   *          the number of indices
+   * @param chunks
+   *          the number of chunks
+   * @param blockSize
+   *          the size of each block
+   * @return the distribution
+   */
+  static Distribution blockCyclic(long size, int chunks, long blockSize) {
+    return new BlockCyclic(size, chunks, blockSize);
+  }
+
+  /**
+   * The block-cyclic distribution. Block and cyclic distributions are special
+   * cases.
+   */
+  final class BlockCyclic implements Distribution {
+    private static final long serialVersionUID = 2950186417826396551L;
+
+    private final long size;
+    private final int chunks;
+    private final long blockSize;
+
+    BlockCyclic(long size, int chunks, long blockSize) {
+      if (size < 0 || chunks <= 0 || blockSize <= 0) {
+        throw new IllegalArgumentException();
+      }
+      this.size = size;
+      this.chunks = chunks;
+      this.blockSize = blockSize;
+    }
+
+    @Override
+    public long size() {
+      return size;
+    }
+
+    @Override
+    public int chunks() {
+      return chunks;
+    }
+
+    @Override
+    public int owner(long index) {
+      return (int) ((index / blockSize) % chunks);
+    }
+
+    @Override
+    public int offset(long index) {
+      return (int) ((index / blockSize / chunks) * blockSize
+          + index % blockSize);
+    }
+
+    @Override
+    public int length(int chunk) {
+      final long blocks = (size + blockSize - 1) / blockSize;
+      if (chunk >= blocks) {
+        return 0;
+      }
+      long length = (blocks - chunk + chunks - 1) / chunks * blockSize;
+      if ((blocks - 1) % chunks == chunk) {
+        length -= blocks * blockSize - size; // last block may be partial
+      }
+      return (int) length;
+    }
+
+    @Override
+    public long index(int chunk, int offset) {
+      return ((offset / blockSize) * chunks + chunk) * blockSize
+          + offset % blockSize;
+    }
+  }
+}
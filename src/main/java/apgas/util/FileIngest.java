@@ -0,0 +1,627 @@
+/*
+ *  This file is part of the X10 project (http://x10-lang.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  (C) Copyright IBM Corporation 2006-2016.
+ */
+
+package apgas.util;
+
+import static apgas.Constructs.here;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+
+import apgas.Place;
+
+/**
+ * The {@link FileIngest} class loads files of records into place local arrays,
+ * with every place reading its own part of the files.
+ * <p>
+ * The files are seen as one sequence of bytes split into as many ranges of
+ * equal size as there are places. The chunk of the i-th place holds the
+ * records starting in the i-th range, in file order. Records are either lines
+ * or fixed-size records. A line ends with a {@code '\n'} or at the end of its
+ * file; a trailing {@code '\r'} is dropped and empty lines are skipped. A
+ * fixed-size record never spans two files and an incomplete record at the end
+ * of a file is ignored.
+ * <p>
+ * Each place maps its range in pieces of {@link #SPLIT} bytes and parses the
+ * pieces in parallel on its worker pool. The files must be visible at the same
+ * path from every place, e.g., on a shared file system.
+ */
+public final class FileIngest {
+  /**
+   * The record size denoting lines.
+   */
+  public static final int LINES = 0;
+
+  /**
+   * The number of bytes parsed by a task.
+   */
+  public static final int SPLIT = 1 << 26;
+
+  /**
+   * The number of bytes parsed by a task in subsequent loads, {@link #SPLIT}
+   * unless lowered by tests.
+   */
+  static volatile int split = SPLIT;
+
+  /**
+   * The number of bytes mapped past the end of a piece to complete its last
+   * line, initially.
+   */
+  private static final int OVERLAP = 1 << 20;
+
+  /**
+   * Parses a record into an {@code int}.
+   */
+  @FunctionalInterface
+  public interface IntParser extends Serializable {
+    /**
+     * Parses a record.
+     *
+     * @param buffer
+     *          the buffer containing the record, in big-endian order
+     * @param offset
+     *          the offset of the record in the buffer
+     * @param length
+     *          the length of the record
+     * @return the value of the record
+     */
+    int parse(ByteBuffer buffer, int offset, int length);
+  }
+
+  /**
+   * Parses a record into a {@code long}.
+   */
+  @FunctionalInterface
+  public interface LongParser extends Serializable {
+    /**
+     * Parses a record.
+     *
+     * @param buffer
+     *          the buffer containing the record, in big-endian order
+     * @param offset
+     *          the offset of the record in the buffer
+     * @param length
+     *          the length of the record
+     * @return the value of the record
+     */
+    long parse(ByteBuffer buffer, int offset, int length);
+  }
+
+  /**
+   * Parses a record into a {@code double}.
+   */
+  @FunctionalInterface
+  public interface DoubleParser extends Serializable {
+    /**
+     * Parses a record.
+     *
+     * @param buffer
+     *          the buffer containing the record, in big-endian order
+     * @param offset
+     *          the offset of the record in the buffer
+     * @param length
+     *          the length of the record
+     * @return the value of the record
+     */
+    double parse(ByteBuffer buffer, int offset, int length);
+  }
+
+  private FileIngest() {
+  }
+
+  /**
+   * Loads lines of decimal {@code int} values.
+   *
+   * @param places
+   *          a collection of places with no repetition
+   * @param files
+   *          the paths of the files
+   * @return the place local array
+   */
+  public static PlaceLocalIntArray readInts(Collection<? extends Place> places,
+      List<String> files) {
+    return readInts(places, files, LINES, FileIngest::parseInt);
+  }
+
+  /**
+   * Loads records of {@code int} values.
+   *
+   * @param places
+   *          a collection of places with no repetition
+   * @param files
+   *          the paths of the files
+   * @param recordSize
+   *          the size of a record in bytes or {@link #LINES}
+   * @param parser
+   *          the record parser
+   * @return the place local array
+   */
+  public static PlaceLocalIntArray readInts(Collection<? extends Place> places,
+      List<String> files, int recordSize, IntParser parser) {
+    final Input input = new Input(places, files, recordSize);
+    return PlaceLocalObject.make(input.places, () -> {
+      final Chunk[] chunks = input.read(() -> new IntChunk(parser));
+      final PlaceLocalIntArray result = new PlaceLocalIntArray(
+          Input.total(chunks));
+      Input.gather(chunks, result.array);
+      return result;
+    });
+  }
+
+  /**
+   * Loads lines of decimal {@code long} values.
+   *
+   * @param places
+   *          a collection of places with no repetition
+   * @param files
+   *          the paths of the files
+   * @return the place local array
+   */
+  public static PlaceLocalLongArray readLongs(
+      Collection<? extends Place> places, List<String> files) {
+    return readLongs(places, files, LINES, FileIngest::parseLong);
+  }
+
+  /**
+   * Loads records of {@code long} values.
+   *
+   * @param places
+   *          a collection of places with no repetition
+   * @param files
+   *          the paths of the files
+   * @param recordSize
+   *          the size of a record in bytes or {@link #LINES}
+   * @param parser
+   *          the record parser
+   * @return the place local array
+   */
+  public static PlaceLocalLongArray readLongs(
+      Collection<? extends Place> places, List<String> files, int recordSize,
+      LongParser parser) {
+    final Input input = new Input(places, files, recordSize);
+    return PlaceLocalObject.make(input.places, () -> {
+      final Chunk[] chunks = input.read(() -> new LongChunk(parser));
+      final PlaceLocalLongArray result = new PlaceLocalLongArray(
+          Input.total(chunks));
+      Input.gather(chunks, result.array);
+      return result;
+    });
+  }
+
+  /**
+   * Loads lines of decimal {@code double} values.
+   *
+   * @param places
+   *          a collection of places with no repetition
+   * @param files
+   *          the paths of the files
+   * @return the place local array
+   */
+  public static PlaceLocalDoubleArray readDoubles(
+      Collection<? extends Place> places, List<String> files) {
+    return readDoubles(places, files, LINES, FileIngest::parseDouble);
+  }
+
+  /**
+   * Loads records of {@code double} values.
+   *
+   * @param places
+   *          a collection of places with no repetition
+   * @param files
+   *          the paths of the files
+   * @param recordSize
+   *          the size of a record in bytes or {@link #LINES}
+   * @param parser
+   *          the record parser
+   * @return the place local array
+   */
+  public static PlaceLocalDoubleArray readDoubles(
+      Collection<? extends Place> places, List<String> files, int recordSize,
+      DoubleParser parser) {
+    final Input input = new Input(places, files, recordSize);
+    return PlaceLocalObject.make(input.places, () -> {
+      final Chunk[] chunks = input.read(() -> new DoubleChunk(parser));
+      final PlaceLocalDoubleArray result = new PlaceLocalDoubleArray(
+          Input.total(chunks));
+      Input.gather(chunks, result.array);
+      return result;
+    });
+  }
+
+  /**
+   * Parses a decimal {@code long} surrounded by optional blanks.
+   *
+   * @param buffer
+   *          the buffer containing the record
+   * @param offset
+   *          the offset of the record in the buffer
+   * @param length
+   *          the length of the record
+   * @return the value
+   * @throws NumberFormatException
+   *           if the record is not a {@code long}
+   */
+  public static long parseLong(ByteBuffer buffer, int offset, int length) {
+    int from = offset;
+    int to = offset + length;
+    while (from < to && blank(buffer.get(from))) {
+      from++;
+    }
+    while (to > from && blank(buffer.get(to - 1))) {
+      to--;
+    }
+    final boolean negative = from < to && buffer.get(from) == '-';
+    int i = negative || from < to && buffer.get(from) == '+' ? from + 1 : from;
+    if (i == to || to - i > 18) {
+      // empty, or possibly out of range
+      return Long.parseLong(string(buffer, from, to));
+    }
+    long r = 0;
+    for (; i < to; i++) {
+      final int d = buffer.get(i) - '0';
+      if (d < 0 || d > 9) {
+        throw new NumberFormatException(
+            "For input string: \"" + string(buffer, from, to) + "\"");
+      }
+      r = 10 * r + d;
+    }
+    return negative ? -r : r;
+  }
+
+  /**
+   * Parses a decimal {@code int} surrounded by optional blanks.
+   *
+   * @param buffer
+   *          the buffer containing the record
+   * @param offset
+   *          the offset of the record in the buffer
+   * @param length
+   *          the length of the record
+   * @return the value
+   * @throws NumberFormatException
+   *           if the record is not an {@code int}
+   */
+  public static int parseInt(ByteBuffer buffer, int offset, int length) {
+    final long r = parseLong(buffer, offset, length);
+    if (r != (int) r) {
+      throw new NumberFormatException("Value out of range. Value:\""
+          + string(buffer, offset, offset + length).trim() + "\"");
+    }
+    return (int) r;
+  }
+
+  /**
+   * Parses a {@code double} as {@link Double#parseDouble(String)}.
+   *
+   * @param buffer
+   *          the buffer containing the record
+   * @param offset
+   *          the offset of the record in the buffer
+   * @param length
+   *          the length of the record
+   * @return the value
+   * @throws NumberFormatException
+   *           if the record is not a {@code double}
+   */
+  public static double parseDouble(ByteBuffer buffer, int offset, int length) {
+    return Double.parseDouble(string(buffer, offset, offset + length));
+  }
+
+  private static boolean blank(byte b) {
+    return b == ' ' || b == '\t';
+  }
+
+  private static String string(ByteBuffer buffer, int from, int to) {
+    final byte[] bytes = new byte[to - from];
+    for (int i = from; i < to; i++) {
+      bytes[i - from] = buffer.get(i);
+    }
+    return new String(bytes, StandardCharsets.ISO_8859_1);
+  }
+
+  /**
+   * The files to load and their partition among places.
+   */
+  private static final class Input implements Serializable {
+    private static final long serialVersionUID = -3517796216497613845L;
+
+    final ArrayList<Place> places;
+
+    final ArrayList<String> files;
+
+    /**
+     * The sizes of the files.
+     */
+    final long[] sizes;
+
+    final int recordSize;
+
+    /**
+     * The number of bytes parsed by a task.
+     */
+    final int split;
+
+    Input(Collection<? extends Place> places, List<String> files,
+        int recordSize) {
+      split = FileIngest.split;
+      if (recordSize < 0 || recordSize > split) {
+        throw new IllegalArgumentException("record size " + recordSize);
+      }
+      this.places = new ArrayList<>(places);
+      this.files = new ArrayList<>(files);
+      this.recordSize = recordSize;
+      sizes = new long[files.size()];
+      for (int f = 0; f < sizes.length; f++) {
+        try {
+          sizes[f] = Files.size(Paths.get(files.get(f)));
+        } catch (final IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+    }
+
+    /**
+     * Parses the pieces of the range of the current place in parallel.
+     *
+     * @param factory
+     *          the function constructing an empty chunk
+     * @return the chunks of the pieces in file order
+     */
+    Chunk[] read(Supplier<Chunk> factory) {
+      final long total = Arrays.stream(sizes).sum();
+      final int n = places.size();
+      final int i = places.indexOf(here());
+      final long start = (total / n) * i + Math.min(i, total % n);
+      final long end = start + total / n + (i < total % n ? 1 : 0);
+      final ArrayList<long[]> pieces = new ArrayList<>();
+      long base = 0;
+      for (int f = 0; f < sizes.length; f++) {
+        final long lo = Math.max(start, base) - base;
+        final long hi = Math.min(end, base + sizes[f]) - base;
+        for (long p = lo; p < hi; p += split) {
+          pieces.add(new long[] { f, p, Math.min(hi, p + split) });
+        }
+        base += sizes[f];
+      }
+      final Chunk[] chunks = new Chunk[pieces.size()];
+      // one task per piece
+      LocalParallel.forRange(0, chunks.length, 1, (from, to) -> {
+        for (int k = from; k < to; k++) {
+          final long[] piece = pieces.get(k);
+          chunks[k] = factory.get();
+          try (FileChannel channel = FileChannel.open(
+              Paths.get(files.get((int) piece[0])), StandardOpenOption.READ)) {
+            if (recordSize == LINES) {
+              lines(channel, sizes[(int) piece[0]], piece[1], piece[2],
+                  chunks[k]);
+            } else {
+              records(channel, sizes[(int) piece[0]], piece[1], piece[2],
+                  chunks[k]);
+            }
+          } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        }
+      });
+      return chunks;
+    }
+
+    /**
+     * Parses the fixed-size records starting in a piece of a file.
+     */
+    private void records(FileChannel channel, long size, long lo, long hi,
+        Chunk chunk) throws IOException {
+      final long first = (lo + recordSize - 1) / recordSize;
+      final long last = Math.min((hi + recordSize - 1) / recordSize,
+          size / recordSize);
+      if (first >= last) {
+        return;
+      }
+      final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+          first * recordSize, (last - first) * recordSize);
+      final int limit = buffer.limit();
+      for (int p = 0; p < limit; p += recordSize) {
+        chunk.accept(buffer, p, recordSize);
+      }
+    }
+
+    /**
+     * Parses the lines starting in a piece of a file, mapping more of the file
+     * if the last line extends beyond the mapped bytes.
+     */
+    private static void lines(FileChannel channel, long size, long lo, long hi,
+        Chunk chunk) throws IOException {
+      final long from = lo == 0 ? 0 : lo - 1;
+      long overlap = OVERLAP;
+      for (;;) {
+        final long to = Math.min(size,
+            Math.min(hi + overlap, from + Integer.MAX_VALUE));
+        final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+            from, to - from);
+        if (lines(buffer, (int) (lo - from), (int) (hi - from), to == size,
+            chunk)) {
+          return;
+        }
+        if (to - from == Integer.MAX_VALUE) {
+          throw new IOException("line too long at offset " + hi);
+        }
+        overlap <<= 2;
+        chunk.clear();
+      }
+    }
+
+    /**
+     * Parses the lines starting in a range of a buffer.
+     *
+     * @return false if the last line extends beyond the buffer
+     */
+    private static boolean lines(ByteBuffer buffer, int lo, int hi, boolean eof,
+        Chunk chunk) {
+      final int limit = buffer.limit();
+      int p = lo;
+      if (lo > 0) {
+        // skip the end of the line starting in the previous piece
+        while (p < hi && buffer.get(p - 1) != '\n') {
+          p++;
+        }
+      }
+      while (p < hi) {
+        int q = p;
+        while (q < limit && buffer.get(q) != '\n') {
+          q++;
+        }
+        if (q == limit && !eof) {
+          return false;
+        }
+        int end = q;
+        if (end > p && buffer.get(end - 1) == '\r') {
+          end--;
+        }
+        if (end > p) {
+          chunk.accept(buffer, p, end - p);
+        }
+        p = q + 1;
+      }
+      return true;
+    }
+
+    static int total(Chunk[] chunks) {
+      long total = 0;
+      for (final Chunk chunk : chunks) {
+        total += chunk.size;
+      }
+      if (total > Integer.MAX_VALUE - 8) {
+        throw new IllegalStateException(
+            total + " records at " + here() + ", use more places");
+      }
+      return (int) total;
+    }
+
+    /**
+     * Copies the chunks into an array in parallel.
+     */
+    static void gather(Chunk[] chunks, Object array) {
+      final int[] offsets = new int[chunks.length + 1];
+      for (int k = 0; k < chunks.length; k++) {
+        offsets[k + 1] = offsets[k] + chunks[k].size;
+      }
+      LocalParallel.forRange(0, chunks.length, 1, (from, to) -> {
+        for (int k = from; k < to; k++) {
+          System.arraycopy(chunks[k].values(), 0, array, offsets[k],
+              chunks[k].size);
+          chunks[k] = null;
+        }
+      });
+    }
+  }
+
+  /**
+   * The values parsed from a piece.
+   */
+  private abstract static class Chunk {
+    /**
+     * The number of values.
+     */
+    int size;
+
+    abstract void accept(ByteBuffer buffer, int offset, int length);
+
+    /**
+     * Returns the array of values, of length at least {@link #size}.
+     */
+    abstract Object values();
+
+    void clear() {
+      size = 0;
+    }
+  }
+
+  private static final class IntChunk extends Chunk {
+    private final IntParser parser;
+
+    private int[] values = new int[16];
+
+    IntChunk(IntParser parser) {
+      this.parser = parser;
+    }
+
+    @Override
+    void accept(ByteBuffer buffer, int offset, int length) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size << 1);
+      }
+      values[size++] = parser.parse(buffer, offset, length);
+    }
+
+    @Override
+    Object values() {
+      return values;
+    }
+  }
+
+  private static final class LongChunk extends Chunk {
+    private final LongParser parser;
+
+    private long[] values = new long[16];
+
+    LongChunk(LongParser parser) {
+      this.parser = parser;
+    }
+
+    @Override
+    void accept(ByteBuffer buffer, int offset, int length) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size << 1);
+      }
+      values[size++] = parser.parse(buffer, offset, length);
+    }
+
+    @Override
+    Object values() {
+      return values;
+    }
+  }
+
+  private static final class DoubleChunk extends Chunk {
+    private final DoubleParser parser;
+
+    private double[] values = new double[16];
+
+    DoubleChunk(DoubleParser parser) {
+      this.parser = parser;
+    }
+
+    @Override
+    void accept(ByteBuffer buffer, int offset, int length) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size << 1);
+      }
+      values[size++] = parser.parse(buffer, offset, length);
+    }
+
+    @Override
+    Object values() {
+      return values;
+    }
+  }
+}
@@ -11,8 +11,7 @@
 
 package apgas.util;
 
-import static apgas.Constructs.async;
-import static apgas.Constructs.asyncAt;
+import static apgas.Constructs.asyncAtAll;
 import static apgas.Constructs.finish;
 import static apgas.Constructs.here;
 
@@ -151,17 +150,9 @@ public class GlobalID implements Serializable {
 	public void remove(Collection<? extends Place> places) {
 		final GlobalID that = this;
 		finish(() -> {
-			for (final Place p : places) {
-				try {
-					asyncAt(p, () -> {
-						that.removeHere();
-					});
-				} catch (final DeadPlaceException e) {
-					async(() -> {
-						throw e;
-					});
-				}
-			}
+			asyncAtAll(places, () -> {
+				that.removeHere();
+			});
 		});
 	}
 
@@ -16,7 +16,6 @@ import static apgas.Constructs.*;
 import java.io.Serializable;
 import java.util.Collection;
 
-import apgas.DeadPlaceException;
 import apgas.Place;
 import apgas.SerializableCallable;
 
@@ -61,6 +60,17 @@ public class GlobalRef<T> implements Serializable {
     places = null;
   }
 
+  /**
+   * Constructs a {@link GlobalRef} with the given {@link GlobalID}.
+   *
+   * @param id
+   *          the global ID of the reference
+   */
+  protected GlobalRef(GlobalID id) {
+    this.id = id;
+    places = null;
+  }
+
   /**
    * Constructs a {@link GlobalRef} over a collection of places.
    * <p>
@@ -83,17 +93,9 @@ public class GlobalRef<T> implements Serializable {
     this.id = id;
     this.places = places;
     finish(() -> {
-      for (final Place p : places) {
-        try {
-          asyncAt(p, () -> {
-            id.putHere(initializer.call());
-          });
-        } catch (final DeadPlaceException e) {
-          async(() -> {
-            throw e;
-          });
-        }
-      }
+      asyncAtAll(places, () -> {
+        id.putHere(initializer.call());
+      });
     });
   }
 
@@ -108,7 +110,8 @@ public class GlobalRef<T> implements Serializable {
    * <p>
    * Failing to invoke this method on a {@link GlobalRef} instance will prevent
    * the collection of the target objects of this global reference even after
-   * the global reference itself has been collected.
+   * the global reference itself has been collected. See
+   * {@link CountedGlobalRef} for global references freed automatically.
    *
    * @throws BadPlaceException
    *           if not invoked from the home place of the global reference
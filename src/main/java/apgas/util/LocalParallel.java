@@ -0,0 +1,209 @@
+/*
+ *  This file is part of the X10 project (http://x10-lang.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  (C) Copyright IBM Corporation 2006-2016.
+ */
+
+package apgas.util;
+
+import static apgas.Constructs.async;
+import static apgas.Constructs.finish;
+
+import java.util.function.BinaryOperator;
+
+import apgas.GlobalRuntime;
+
+/**
+ * The {@link LocalParallel} class splits index ranges into local tasks run by
+ * the worker pool of the current place.
+ * <p>
+ * Ranges are split recursively into chunks of at least {@link #MIN_GRAIN}
+ * indices, and about four chunks per active worker.
+ */
+final class LocalParallel {
+  /**
+   * The minimal number of indices processed by a task.
+   */
+  static final int MIN_GRAIN = 4096;
+
+  /**
+   * A loop body over an index range.
+   */
+  @FunctionalInterface
+  interface Range {
+    /**
+     * Processes the indices in the range.
+     *
+     * @param from
+     *          the first index
+     * @param to
+     *          the index after the last index
+     */
+    void run(int from, int to);
+  }
+
+  /**
+   * A function of an index range.
+   *
+   * @param <R>
+   *          the type of the result
+   */
+  @FunctionalInterface
+  interface RangeFunction<R> {
+    /**
+     * Processes the indices in the range.
+     *
+     * @param from
+     *          the first index
+     * @param to
+     *          the index after the last index
+     * @return the result for the range
+     */
+    R apply(int from, int to);
+  }
+
+  private LocalParallel() {
+  }
+
+  /**
+   * Returns the grain size for the given range.
+   *
+   * @param from
+   *          the first index
+   * @param to
+   *          the index after the last index
+   * @return the grain size
+   */
+  private static int grain(int from, int to) {
+    final int parallelism = GlobalRuntime.getRuntime().getParallelism();
+    return Math.max(MIN_GRAIN, (to - from) / (4 * parallelism));
+  }
+
+  /**
+   * Checks the bounds of a copy between two arrays like
+   * {@link System#arraycopy}, so that a copy split into parallel tasks either
+   * fails before copying anything or succeeds.
+   *
+   * @param srcLength
+   *          the length of the source array
+   * @param srcOffset
+   *          the offset of the range in the source array
+   * @param dstLength
+   *          the length of the destination array
+   * @param dstOffset
+   *          the offset of the range in the destination array
+   * @param length
+   *          the length of the range
+   * @throws IndexOutOfBoundsException
+   *           if the range does not fit both arrays
+   */
+  static void checkCopy(int srcLength, int srcOffset, int dstLength,
+      int dstOffset, int length) {
+    if (srcOffset < 0 || dstOffset < 0 || length < 0
+        || srcOffset > srcLength - length || dstOffset > dstLength - length) {
+      throw new IndexOutOfBoundsException("copy of " + length
+          + " elements from offset " + srcOffset + " of length " + srcLength
+          + " to offset " + dstOffset + " of length " + dstLength);
+    }
+  }
+
+  /**
+   * Runs {@code body} over the given range in parallel and waits for
+   * completion.
+   *
+   * @param from
+   *          the first index
+   * @param to
+   *          the index after the last index
+   * @param body
+   *          the loop body
+   */
+  static void forRange(int from, int to, Range body) {
+    final int grain = grain(from, to);
+    if (to - from <= grain) {
+      body.run(from, to);
+      return;
+    }
+    finish(() -> split(from, to, grain, body));
+  }
+
+  /**
+   * Runs {@code body} over the given range in parallel with chunks of at most
+   * {@code grain} indices and waits for completion.
+   * <p>
+   * Unlike {@link #forRange(int, int, Range)}, this method does not enforce
+   * {@link #MIN_GRAIN}. It is meant for coarse items, e.g., file pieces or
+   * blocks of elements, with a grain of one item per task.
+   *
+   * @param from
+   *          the first index
+   * @param to
+   *          the index after the last index
+   * @param grain
+   *          the maximal number of indices per task
+   * @param body
+   *          the loop body
+   */
+  static void forRange(int from, int to, int grain, Range body) {
+    if (to - from <= grain) {
+      body.run(from, to);
+      return;
+    }
+    finish(() -> split(from, to, grain, body));
+  }
+
+  private static void split(int from, int to, int grain, Range body) {
+    while (to - from > grain) {
+      final int lo = (from + to) >>> 1;
+      final int hi = to;
+      async(() -> split(lo, hi, grain, body));
+      to = lo;
+    }
+    body.run(from, to);
+  }
+
+  /**
+   * Evaluates {@code body} over the given range in parallel and combines the
+   * results.
+   *
+   * @param <R>
+   *          the type of the result
+   * @param from
+   *          the first index
+   * @param to
+   *          the index after the last index
+   * @param body
+   *          the function to evaluate on each chunk
+   * @param combine
+   *          the associative function combining the results of two adjacent
+   *          chunks
+   * @return the combined result
+   */
+  static <R> R reduce(int from, int to, RangeFunction<R> body,
+      BinaryOperator<R> combine) {
+    return reduce(from, to, grain(from, to), body, combine);
+  }
+
+  private static <R> R reduce(int from, int to, int grain,
+      RangeFunction<R> body, BinaryOperator<R> combine) {
+    if (to - from <= grain) {
+      return body.apply(from, to);
+    }
+    final int mid = (from + to) >>> 1;
+    final Object[] r = new Object[2];
+    finish(() -> {
+      async(() -> r[0] = reduce(from, mid, grain, body, combine));
+      r[1] = reduce(mid, to, grain, body, combine);
+    });
+    @SuppressWarnings("unchecked")
+    final R left = (R) r[0];
+    @SuppressWarnings("unchecked")
+    final R right = (R) r[1];
+    return combine.apply(left, right);
+  }
+}
@@ -0,0 +1,192 @@
+/*
+ *  This file is part of the X10 project (http://x10-lang.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  (C) Copyright IBM Corporation 2006-2016.
+ */
+
+package apgas.util;
+
+import static apgas.Constructs.asyncAtAll;
+import static apgas.Constructs.at;
+import static apgas.Constructs.finish;
+import static apgas.Constructs.here;
+import static apgas.Constructs.place;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoSerializable;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import apgas.DeadPlacesException;
+import apgas.Place;
+import apgas.SerializableCallable;
+
+/**
+ * A {@link PlaceLocal} instance is a handle to a value local to each place,
+ * similar to a {@link ThreadLocal}.
+ * <p>
+ * Handles are allocated collectively and use the same slot number in all
+ * places. A handle is resolved by indexing a per-place table with this slot
+ * number, without hashing, and is serialized as this slot number only. Place
+ * zero allocates the slot numbers.
+ * <p>
+ * Unlike {@link GlobalRef} and {@link PlaceLocalObject}, which resolve their
+ * {@link GlobalID} in a shared hash map, the value of a handle is obtained with
+ * {@link #get()} in constant time.
+ *
+ * @param <T>
+ *          the type of the values
+ */
+public final class PlaceLocal<T> implements Serializable, KryoSerializable {
+  private static final long serialVersionUID = -3196426306930585315L;
+
+  /**
+   * The values of the handles at this place, indexed by slot.
+   */
+  private static volatile Object[] table = new Object[16];
+
+  /**
+   * The slots in use, maintained by place zero.
+   */
+  private static final BitSet slots = new BitSet();
+
+  /**
+   * The slot of this handle.
+   */
+  private int slot;
+
+  private PlaceLocal(int slot) {
+    this.slot = slot;
+  }
+
+  /**
+   * Returns the slot number of this handle.
+   *
+   * @return the slot number
+   */
+  public int slot() {
+    return slot;
+  }
+
+  /**
+   * Returns the value of this handle at the current place.
+   *
+   * @return the value or null if none
+   */
+  @SuppressWarnings("unchecked")
+  public T get() {
+    final Object[] t = table;
+    return slot < t.length ? (T) t[slot] : null;
+  }
+
+  /**
+   * Sets the value of this handle at the current place.
+   *
+   * @param t
+   *          the desired value
+   */
+  public void set(T t) {
+    store(slot, t);
+  }
+
+  /**
+   * Clears the value of this handle in a collection of places and releases its
+   * slot.
+   * <p>
+   * The handle must not be used after this call. Masks
+   * {@link DeadPlacesException} instances if any.
+   *
+   * @param places
+   *          the places of the handle
+   */
+  public void free(Collection<? extends Place> places) {
+    final int s = slot;
+    try {
+      finish(() -> asyncAtAll(places, () -> store(s, null)));
+    } catch (final DeadPlacesException e) {
+      // dead places hold no value
+    }
+    release(s);
+  }
+
+  @Override
+  public void write(Kryo kryo, Output output) {
+    output.writeInt(slot, true);
+  }
+
+  @Override
+  public void read(Kryo kryo, Input input) {
+    slot = input.readInt(true);
+  }
+
+  @Override
+  public String toString() {
+    return "slot(" + slot + ")";
+  }
+
+  private static synchronized void store(int slot, Object value) {
+    Object[] t = table;
+    if (slot >= t.length) {
+      final Object[] u = new Object[Math.max(slot + 1, t.length << 1)];
+      System.arraycopy(t, 0, u, 0, t.length);
+      t = u;
+    }
+    t[slot] = value;
+    table = t;
+  }
+
+  private static int allocate() {
+    if (here().id != 0) {
+      return at(place(0), () -> allocate());
+    }
+    synchronized (slots) {
+      final int slot = slots.nextClearBit(0);
+      slots.set(slot);
+      return slot;
+    }
+  }
+
+  private static void release(int slot) {
+    if (here().id != 0) {
+      at(place(0), () -> release(slot));
+      return;
+    }
+    synchronized (slots) {
+      slots.clear(slot);
+    }
+  }
+
+  /**
+   * Constructs a {@link PlaceLocal} handle.
+   *
+   * @param <T>
+   *          the type of the values
+   * @param places
+   *          a collection of places with no repetition
+   * @param initializer
+   *          the function to evaluate to initialize the values
+   * @return the handle
+   */
+  public static <T> PlaceLocal<T> make(Collection<? extends Place> places,
+      SerializableCallable<T> initializer) {
+    final int slot = allocate();
+    final ArrayList<Place> list = new ArrayList<>(places);
+    try {
+      finish(() -> asyncAtAll(list, () -> store(slot, initializer.call())));
+    } catch (final DeadPlacesException e) {
+      new PlaceLocal<T>(slot).free(list);
+      throw e;
+    }
+    return new PlaceLocal<>(slot);
+  }
+}
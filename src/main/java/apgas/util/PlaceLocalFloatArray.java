@@ -0,0 +1,245 @@
+/*
+ *  This file is part of the X10 project (http://x10-lang.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  (C) Copyright IBM Corporation 2006-2016.
+ */
+
+package apgas.util;
+
+import static apgas.Constructs.asyncAt;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+
+import apgas.Place;
+
+/**
+ * The {@link PlaceLocalFloatArray} class implements a map from places to
+ * {@code float} arrays.
+ */
+public class PlaceLocalFloatArray extends PlaceLocalObject
+    implements Snapshottable {
+  /**
+   * The local array.
+   */
+  protected final float[] array;
+
+  /**
+   * Initializes the local array.
+   *
+   * @param n
+   *          the length of the local array
+   */
+  protected PlaceLocalFloatArray(int n) {
+    array = new float[n];
+  }
+
+  /**
+   * Returns the local array element at the specified index
+   *
+   * @param index
+   *          an index into the local array
+   * @return the array element
+   */
+  public float get(int index) {
+    return array[index];
+  }
+
+  /**
+   * Sets the local array element at the specified index
+   *
+   * @param index
+   *          an index into the local array
+   * @param t
+   *          the desired value
+   */
+  public void set(int index, float t) {
+    array[index] = t;
+  }
+
+  /**
+   * Asynchronously copies a range of a {@code float} array into the chunk of a
+   * place local array at the specified place.
+   * <p>
+   * The copy is a task of the current finish. Only the range is transferred.
+   * The source range may be modified as soon as this method returns if the
+   * destination place is not the current place. Otherwise, it must not be
+   * modified until the copy completes.
+   *
+   * @param src
+   *          the source array
+   * @param srcOffset
+   *          the offset of the range in the source array
+   * @param dst
+   *          the destination place local array
+   * @param place
+   *          the destination place
+   * @param dstOffset
+   *          the offset of the range in the destination chunk
+   * @param length
+   *          the length of the range
+   */
+  public static void asyncCopy(float[] src, int srcOffset,
+      PlaceLocalFloatArray dst, Place place, int dstOffset, int length) {
+    asyncAt(place, new ArrayTransfer(src, srcOffset, dst, dstOffset, length));
+  }
+
+  /**
+   * Asynchronously copies a range of the local chunk into the chunk of this
+   * place local array at the specified place.
+   *
+   * @param srcOffset
+   *          the offset of the range in the local chunk
+   * @param place
+   *          the destination place
+   * @param dstOffset
+   *          the offset of the range in the destination chunk
+   * @param length
+   *          the length of the range
+   * @see #asyncCopy(float[], int, PlaceLocalFloatArray, Place, int, int)
+   */
+  public void asyncCopy(int srcOffset, Place place, int dstOffset,
+      int length) {
+    asyncCopy(array, srcOffset, this, place, dstOffset, length);
+  }
+
+  /**
+   * Sets all the elements of the local chunk to the specified value in
+   * parallel.
+   *
+   * @param t
+   *          the desired value
+   */
+  public void fill(float t) {
+    LocalParallel.forRange(0, array.length,
+        (from, to) -> Arrays.fill(array, from, to, t));
+  }
+
+  /**
+   * Copies a range of the local chunk into an array in parallel.
+   *
+   * @param offset
+   *          the offset of the range in the local chunk
+   * @param dst
+   *          the destination array
+   * @param dstOffset
+   *          the offset of the range in the destination array
+   * @param length
+   *          the length of the range
+   * @throws IndexOutOfBoundsException
+   *           if the range exceeds the local chunk or the array
+   */
+  public void copyTo(int offset, float[] dst, int dstOffset, int length) {
+    LocalParallel.checkCopy(array.length, offset, dst.length, dstOffset,
+        length);
+    LocalParallel.forRange(0, length, (from, to) -> System.arraycopy(array,
+        offset + from, dst, dstOffset + from, to - from));
+  }
+
+  /**
+   * Copies a range of an array into the local chunk in parallel.
+   *
+   * @param src
+   *          the source array
+   * @param srcOffset
+   *          the offset of the range in the source array
+   * @param offset
+   *          the offset of the range in the local chunk
+   * @param length
+   *          the length of the range
+   * @throws IndexOutOfBoundsException
+   *           if the range exceeds the local chunk or the array
+   */
+  public void copyFrom(float[] src, int srcOffset, int offset, int length) {
+    LocalParallel.checkCopy(src.length, srcOffset, array.length, offset,
+        length);
+    LocalParallel.forRange(0, length, (from, to) -> System.arraycopy(src,
+        srcOffset + from, array, offset + from, to - from));
+  }
+
+  /**
+   * Replaces each element of the local chunk with the result of applying the
+   * specified function to this element, in parallel.
+   *
+   * @param f
+   *          the function to apply
+   *          (evaluated in double precision then rounded to {@code float})
+   */
+  public void apply(DoubleUnaryOperator f) {
+    LocalParallel.forRange(0, array.length, (from, to) -> {
+      for (int i = from; i < to; i++) {
+        array[i] = (float) f.applyAsDouble(array[i]);
+      }
+    });
+  }
+
+  /**
+   * Combines the elements of the local chunk using the specified associative
+   * function, in parallel.
+   *
+   * @param identity
+   *          the identity of the function
+   * @param f
+   *          the function combining two values
+   *          (evaluated in double precision then rounded to {@code float})
+   * @return the result of the reduction
+   */
+  public float reduce(float identity, DoubleBinaryOperator f) {
+    return LocalParallel.reduce(0, array.length, (from, to) -> {
+      float r = identity;
+      for (int i = from; i < to; i++) {
+        r = (float) f.applyAsDouble(r, array[i]);
+      }
+      return r;
+    }, (a, b) -> (float) f.applyAsDouble(a, b));
+  }
+
+  /**
+   * Returns the local array.
+   *
+   * @return the local array
+   */
+  @Override
+  public Serializable snapshot() {
+    return array;
+  }
+
+  /**
+   * Copies a snapshot into the local array.
+   *
+   * @param state
+   *          a {@code float} array of the length of the local array
+   */
+  @Override
+  public void restore(Serializable state) {
+    final float[] src = (float[]) state;
+    if (src.length != array.length) {
+      throw new IllegalArgumentException(
+          "snapshot length " + src.length + " != " + array.length);
+    }
+    copyFrom(src, 0, 0, src.length);
+  }
+
+  /**
+   * Constructs a {@link PlaceLocalFloatArray} instance.
+   *
+   * @param places
+   *          a collection of places with no repetition
+   * @param localLength
+   *          the length of each chunk
+   * @return the place local array
+   */
+  public static PlaceLocalFloatArray make(Collection<? extends Place> places,
+      int localLength) {
+    return PlaceLocalObject.make(places,
+        () -> new PlaceLocalFloatArray(localLength));
+  }
+}
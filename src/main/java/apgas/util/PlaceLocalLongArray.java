@@ -0,0 +1,357 @@
+/*
+ *  This file is part of the X10 project (http://x10-lang.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  (C) Copyright IBM Corporation 2006-2016.
+ */
+
+package apgas.util;
+
+import static apgas.Constructs.asyncAt;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongUnaryOperator;
+
+import apgas.Place;
+
+/**
+ * The {@link PlaceLocalLongArray} class implements a map from places to
+ * {@code long} arrays.
+ */
+public class PlaceLocalLongArray extends PlaceLocalObject
+    implements Snapshottable {
+  /**
+   * The local array.
+   */
+  protected final long[] array;
+
+  /**
+   * Initializes the local array.
+   *
+   * @param n
+   *          the length of the local array
+   */
+  protected PlaceLocalLongArray(int n) {
+    array = new long[n];
+  }
+
+  /**
+   * Returns the local array element at the specified index
+   *
+   * @param index
+   *          an index into the local array
+   * @return the array element
+   */
+  public long get(int index) {
+    return array[index];
+  }
+
+  /**
+   * Sets the local array element at the specified index
+   *
+   * @param index
+   *          an index into the local array
+   * @param t
+   *          the desired value
+   */
+  public void set(int index, long t) {
+    array[index] = t;
+  }
+
+  /**
+   * Asynchronously copies a range of a {@code long} array into the chunk of a
+   * place local array at the specified place.
+   * <p>
+   * The copy is a task of the current finish. Only the range is transferred.
+   * The source range may be modified as soon as this method returns if the
+   * destination place is not the current place. Otherwise, it must not be
+   * modified until the copy completes.
+   *
+   * @param src
+   *          the source array
+   * @param srcOffset
+   *          the offset of the range in the source array
+   * @param dst
+   *          the destination place local array
+   * @param place
+   *          the destination place
+   * @param dstOffset
+   *          the offset of the range in the destination chunk
+   * @param length
+   *          the length of the range
+   */
+  public static void asyncCopy(long[] src, int srcOffset,
+      PlaceLocalLongArray dst, Place place, int dstOffset, int length) {
+    asyncAt(place, new ArrayTransfer(src, srcOffset, dst, dstOffset, length));
+  }
+
+  /**
+   * Asynchronously copies a range of the local chunk into the chunk of this
+   * place local array at the specified place.
+   *
+   * @param srcOffset
+   *          the offset of the range in the local chunk
+   * @param place
+   *          the destination place
+   * @param dstOffset
+   *          the offset of the range in the destination chunk
+   * @param length
+   *          the length of the range
+   * @see #asyncCopy(long[], int, PlaceLocalLongArray, Place, int, int)
+   */
+  public void asyncCopy(int srcOffset, Place place, int dstOffset,
+      int length) {
+    asyncCopy(array, srcOffset, this, place, dstOffset, length);
+  }
+
+  /**
+   * Atomically applies an operation to the local array element at the
+   * specified index.
+   *
+   * @param index
+   *          an index into the local array
+   * @param op
+   *          the operation
+   * @param operand
+   *          the operand
+   * @return the previous value of the element
+   */
+  public long getAndApply(int index, AtomicOp op, long operand) {
+    return (long) RemoteAtomic.apply(array, index, op, operand);
+  }
+
+  /**
+   * Atomically sets the local array element at the specified index to the
+   * given value if it has the expected value.
+   *
+   * @param index
+   *          an index into the local array
+   * @param expected
+   *          the expected value
+   * @param t
+   *          the new value
+   * @return true if successful
+   */
+  public boolean compareAndSet(int index, long expected, long t) {
+    return RemoteAtomic.compareAndSet(array, index, expected, t);
+  }
+
+  /**
+   * Atomically applies an operation to the element at the specified index of
+   * the chunk at the specified place, without waiting for completion.
+   * <p>
+   * The operation is executed upon receipt by the destination place. It is not
+   * tracked by the enclosing finish. Exceptions are reported by the
+   * destination place.
+   *
+   * @param place
+   *          the place of the chunk
+   * @param index
+   *          an index into the chunk
+   * @param op
+   *          the operation
+   * @param operand
+   *          the operand
+   */
+  public void asyncApply(Place place, int index, AtomicOp op, long operand) {
+    RemoteAtomic.send(this, place, index, op, operand);
+  }
+
+  /**
+   * Atomically applies an operation to the element at the specified index of
+   * the chunk at the specified place.
+   * <p>
+   * The operation is executed upon receipt by the destination place.
+   *
+   * @param place
+   *          the place of the chunk
+   * @param index
+   *          an index into the chunk
+   * @param op
+   *          the operation
+   * @param operand
+   *          the operand
+   * @return a future of the previous value of the element
+   */
+  public CompletableFuture<Long> getAndApply(Place place, int index, AtomicOp op,
+      long operand) {
+    return RemoteAtomic.fetch(this, place, index, op, operand);
+  }
+
+  /**
+   * Atomically sets the element at the specified index of the chunk at the
+   * specified place to the given value if it has the expected value, without
+   * waiting for completion.
+   *
+   * @param place
+   *          the place of the chunk
+   * @param index
+   *          an index into the chunk
+   * @param expected
+   *          the expected value
+   * @param t
+   *          the new value
+   * @see #asyncApply(Place, int, AtomicOp, long)
+   */
+  public void asyncCompareAndSet(Place place, int index, long expected, long t) {
+    RemoteAtomic.sendCompareAndSet(this, place, index, expected, t);
+  }
+
+  /**
+   * Atomically sets the element at the specified index of the chunk at the
+   * specified place to the given value if it has the expected value.
+   *
+   * @param place
+   *          the place of the chunk
+   * @param index
+   *          an index into the chunk
+   * @param expected
+   *          the expected value
+   * @param t
+   *          the new value
+   * @return a future of true if successful
+   */
+  public CompletableFuture<Boolean> compareAndSet(Place place, int index,
+      long expected, long t) {
+    return RemoteAtomic.fetchCompareAndSet(this, place, index, expected, t)
+        .thenApply(r -> r != 0);
+  }
+
+  /**
+   * Sets all the elements of the local chunk to the specified value in
+   * parallel.
+   *
+   * @param t
+   *          the desired value
+   */
+  public void fill(long t) {
+    LocalParallel.forRange(0, array.length,
+        (from, to) -> Arrays.fill(array, from, to, t));
+  }
+
+  /**
+   * Copies a range of the local chunk into an array in parallel.
+   *
+   * @param offset
+   *          the offset of the range in the local chunk
+   * @param dst
+   *          the destination array
+   * @param dstOffset
+   *          the offset of the range in the destination array
+   * @param length
+   *          the length of the range
+   * @throws IndexOutOfBoundsException
+   *           if the range exceeds the local chunk or the array
+   */
+  public void copyTo(int offset, long[] dst, int dstOffset, int length) {
+    LocalParallel.checkCopy(array.length, offset, dst.length, dstOffset,
+        length);
+    LocalParallel.forRange(0, length, (from, to) -> System.arraycopy(array,
+        offset + from, dst, dstOffset + from, to - from));
+  }
+
+  /**
+   * Copies a range of an array into the local chunk in parallel.
+   *
+   * @param src
+   *          the source array
+   * @param srcOffset
+   *          the offset of the range in the source array
+   * @param offset
+   *          the offset of the range in the local chunk
+   * @param length
+   *          the length of the range
+   * @throws IndexOutOfBoundsException
+   *           if the range exceeds the local chunk or the array
+   */
+  public void copyFrom(long[] src, int srcOffset, int offset, int length) {
+    LocalParallel.checkCopy(src.length, srcOffset, array.length, offset,
+        length);
+    LocalParallel.forRange(0, length, (from, to) -> System.arraycopy(src,
+        srcOffset + from, array, offset + from, to - from));
+  }
+
+  /**
+   * Replaces each element of the local chunk with the result of applying the
+   * specified function to this element, in parallel.
+   *
+   * @param f
+   *          the function to apply
+   */
+  public void apply(LongUnaryOperator f) {
+    LocalParallel.forRange(0, array.length, (from, to) -> {
+      for (int i = from; i < to; i++) {
+        array[i] = f.applyAsLong(array[i]);
+      }
+    });
+  }
+
+  /**
+   * Combines the elements of the local chunk using the specified associative
+   * function, in parallel.
+   *
+   * @param identity
+   *          the identity of the function
+   * @param f
+   *          the function combining two values
+   * @return the result of the reduction
+   */
+  public long reduce(long identity, LongBinaryOperator f) {
+    return LocalParallel.reduce(0, array.length, (from, to) -> {
+      long r = identity;
+      for (int i = from; i < to; i++) {
+        r = f.applyAsLong(r, array[i]);
+      }
+      return r;
+    }, (a, b) -> f.applyAsLong(a, b));
+  }
+
+  /**
+   * Returns the local array.
+   *
+   * @return the local array
+   */
+  @Override
+  public Serializable snapshot() {
+    return array;
+  }
+
+  /**
+   * Copies a snapshot into the local array.
+   *
+   * @param state
+   *          a {@code long} array of the length of the local array
+   */
+  @Override
+  public void restore(Serializable state) {
+    final long[] src = (long[]) state;
+    if (src.length != array.length) {
+      throw new IllegalArgumentException(
+          "snapshot length " + src.length + " != " + array.length);
+    }
+    copyFrom(src, 0, 0, src.length);
+  }
+
+  /**
+   * Constructs a {@link PlaceLocalLongArray} instance.
+   *
+   * @param places
+   *          a collection of places with no repetition
+   * @param localLength
+   *          the length of each chunk
+   * @return the place local array
+   */
+  public static PlaceLocalLongArray make(Collection<? extends Place> places,
+      int localLength) {
+    return PlaceLocalObject.make(places,
+        () -> new PlaceLocalLongArray(localLength));
+  }
+}
@@ -0,0 +1,305 @@
+/*
+ *  This file is part of the X10 project (http://x10-lang.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  (C) Copyright IBM Corporation 2006-2016.
+ */
+
+package apgas.util;
+
+import static apgas.Constructs.here;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collection;
+
+import apgas.Place;
+
+/**
+ * The {@link PlaceLocalMappedIntArray} class implements a map from places to
+ * {@code int} arrays stored in memory-mapped files.
+ * <p>
+ * Each place maps its own file, named after the array and the place ID. The
+ * chunks live outside of the Java heap and may be larger than the heap or than
+ * 2^31 elements. Elements are stored in native byte order.
+ * <p>
+ * A persistent array keeps the content of an existing file and leaves the file
+ * on disk, so that a later run may reload it. A non-persistent array clears the
+ * file upon creation and deletes it on {@link #close()} or exit.
+ */
+public class PlaceLocalMappedIntArray extends PlaceLocalObject {
+  /**
+   * Log2 of the number of elements per mapped segment.
+   */
+  private static final int SHIFT = 28;
+
+  /**
+   * The number of elements per mapped segment.
+   */
+  private static final int SEGMENT = 1 << SHIFT;
+
+  /**
+   * The mapped segments.
+   */
+  private final MappedByteBuffer[] buffers;
+
+  /**
+   * The {@code int} views of the mapped segments.
+   */
+  private final IntBuffer[] segments;
+
+  /**
+   * The length of the local chunk.
+   */
+  private final long length;
+
+  /**
+   * The backing file.
+   */
+  private final File file;
+
+  /**
+   * Whether the backing file outlives this array.
+   */
+  private final boolean persistent;
+
+  /**
+   * Maps the local chunk.
+   *
+   * @param file
+   *          the backing file
+   * @param n
+   *          the length of the local chunk
+   * @param persistent
+   *          whether to keep the content and the file
+   * @throws IOException
+   *           if the file cannot be mapped
+   */
+  protected PlaceLocalMappedIntArray(File file, long n, boolean persistent)
+      throws IOException {
+    this.file = file;
+    this.length = n;
+    this.persistent = persistent;
+    final int count = (int) ((n + SEGMENT - 1) >>> SHIFT);
+    buffers = new MappedByteBuffer[count];
+    segments = new IntBuffer[count];
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        FileChannel channel = raf.getChannel()) {
+      if (!persistent) {
+        raf.setLength(0);
+        file.deleteOnExit();
+      }
+      raf.setLength(4 * n);
+      for (int i = 0; i < count; i++) {
+        final long start = (long) i << SHIFT;
+        final long size = Math.min(SEGMENT, n - start);
+        buffers[i] = channel.map(FileChannel.MapMode.READ_WRITE, 4 * start,
+            4 * size);
+        buffers[i].order(ByteOrder.nativeOrder());
+        segments[i] = buffers[i].asIntBuffer();
+      }
+    }
+  }
+
+  /**
+   * Returns the length of the local chunk.
+   *
+   * @return the length
+   */
+  public long length() {
+    return length;
+  }
+
+  /**
+   * Returns the local array element at the specified index
+   *
+   * @param index
+   *          an index into the local array
+   * @return the array element
+   */
+  public int get(long index) {
+    return segments[(int) (index >>> SHIFT)].get((int) index & (SEGMENT - 1));
+  }
+
+  /**
+   * Sets the local array element at the specified index
+   *
+   * @param index
+   *          an index into the local array
+   * @param t
+   *          the desired value
+   */
+  public void set(long index, int t) {
+    segments[(int) (index >>> SHIFT)].put((int) index & (SEGMENT - 1), t);
+  }
+
+  /**
+   * Copies a range of the local chunk into an array.
+   *
+   * @param offset
+   *          the offset of the range in the local chunk
+   * @param dst
+   *          the destination array
+   * @param dstOffset
+   *          the offset of the range in the destination array
+   * @param length
+   *          the length of the range
+   * @throws IndexOutOfBoundsException
+   *           if the range is not within the local chunk
+   */
+  public void copyTo(long offset, int[] dst, int dstOffset, int length) {
+    check(offset, length);
+    while (length > 0) {
+      final IntBuffer segment = position(offset);
+      final int n = Math.min(length, segment.remaining());
+      segment.get(dst, dstOffset, n);
+      offset += n;
+      dstOffset += n;
+      length -= n;
+    }
+  }
+
+  /**
+   * Copies a range of an array into the local chunk.
+   *
+   * @param src
+   *          the source array
+   * @param srcOffset
+   *          the offset of the range in the source array
+   * @param offset
+   *          the offset of the range in the local chunk
+   * @param length
+   *          the length of the range
+   * @throws IndexOutOfBoundsException
+   *           if the range is not within the local chunk
+   */
+  public void copyFrom(int[] src, int srcOffset, long offset, int length) {
+    check(offset, length);
+    while (length > 0) {
+      final IntBuffer segment = position(offset);
+      final int n = Math.min(length, segment.remaining());
+      segment.put(src, srcOffset, n);
+      offset += n;
+      srcOffset += n;
+      length -= n;
+    }
+  }
+
+  /**
+   * Returns a view of a range of the local chunk.
+   * <p>
+   * The range must not cross a 2^28 element boundary.
+   *
+   * @param offset
+   *          the offset of the range in the local chunk
+   * @param length
+   *          the length of the range
+   * @return a buffer sharing the content of the range
+   * @throws IllegalArgumentException
+   *           if the range crosses a segment boundary
+   */
+  public IntBuffer view(long offset, int length) {
+    final IntBuffer segment = position(offset);
+    if (length > segment.remaining()) {
+      throw new IllegalArgumentException(
+          "range crosses a segment boundary: " + offset + ", " + length);
+    }
+    segment.limit(segment.position() + length);
+    return segment.slice();
+  }
+
+  /**
+   * Writes the changes to the local chunk to disk.
+   */
+  public void force() {
+    for (final MappedByteBuffer buffer : buffers) {
+      buffer.force();
+    }
+  }
+
+  /**
+   * Releases the local chunk.
+   * <p>
+   * Writes the changes to disk if the array is persistent, deletes the backing
+   * file otherwise. The chunk must not be accessed after this call. The memory
+   * is unmapped once the chunk is garbage collected.
+   */
+  public void close() {
+    if (persistent) {
+      force();
+    } else {
+      file.delete();
+    }
+  }
+
+  /**
+   * Checks that a range is within the local chunk.
+   *
+   * @param offset
+   *          the offset of the range in the local chunk
+   * @param length
+   *          the length of the range
+   */
+  private void check(long offset, int length) {
+    if (offset < 0 || length < 0 || offset > this.length - length) {
+      throw new IndexOutOfBoundsException(offset + ", " + length);
+    }
+  }
+
+  /**
+   * Returns a private view of the segment containing the given offset,
+   * positioned at the offset.
+   *
+   * @param offset
+   *          an offset in the local chunk
+   * @return the view
+   */
+  private IntBuffer position(long offset) {
+    if (offset < 0 || offset > length) {
+      throw new IndexOutOfBoundsException(Long.toString(offset));
+    }
+    if (segments.length == 0) {
+      // empty chunk: nothing is mapped
+      return IntBuffer.allocate(0);
+    }
+    final int i = (int) (offset >>> SHIFT);
+    final IntBuffer segment = (i == segments.length ? segments[i - 1]
+        : segments[i]).duplicate();
+    segment.position(i == segments.length ? segment.limit()
+        : (int) offset & (SEGMENT - 1));
+    return segment;
+  }
+
+  /**
+   * Constructs a {@link PlaceLocalMappedIntArray} instance.
+   *
+   * @param places
+   *          a collection of places with no repetition
+   * @param directory
+   *          the directory of the backing files
+   * @param name
+   *          the name of the array, used to name the backing files
+   * @param localLength
+   *          the length of each chunk
+   * @param persistent
+   *          whether to reload existing backing files and keep them
+   * @return the place local array
+   */
+  public static PlaceLocalMappedIntArray make(
+      Collection<? extends Place> places, String directory, String name,
+      long localLength, boolean persistent) {
+    return PlaceLocalObject.make(places,
+        () -> new PlaceLocalMappedIntArray(
+            new File(directory, name + "." + here().id), localLength,
+            persistent));
+  }
+}
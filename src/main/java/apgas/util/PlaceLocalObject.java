@@ -17,8 +17,7 @@ import java.io.ObjectStreamException;
 import java.io.Serializable;
 import java.util.Collection;
 
-import apgas.Constructs;
-import apgas.DeadPlaceException;
+import apgas.DeadPlacesException;
 import apgas.Place;
 import apgas.SerializableCallable;
 
@@ -63,15 +62,13 @@ public class PlaceLocalObject implements Serializable {
     final GlobalID id = new GlobalID();
     try {
       finish(() -> {
-        for (final Place p : places) {
-          Constructs.asyncAt(p, () -> {
-            final T t = initializer.call();
-            t.id = id;
-            id.putHere(t);
-          });
-        }
+        asyncAtAll(places, () -> {
+          final T t = initializer.call();
+          t.id = id;
+          id.putHere(t);
+        });
       });
-    } catch (final DeadPlaceException e) {
+    } catch (final DeadPlacesException e) {
       id.remove(places);
       throw e;
     }
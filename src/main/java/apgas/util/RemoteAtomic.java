@@ -0,0 +1,510 @@
+/*
+ *  This file is part of the X10 project (http://x10-lang.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  (C) Copyright IBM Corporation 2006-2016.
+ */
+
+package apgas.util;
+
+import static apgas.Constructs.here;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoSerializable;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.util.UnsafeUtil;
+
+import apgas.DeadPlaceException;
+import apgas.Place;
+import apgas.impl.GlobalRuntimeImpl;
+import apgas.impl.SerializableRunnable;
+
+/**
+ * The {@link RemoteAtomic} class implements atomic operations on the elements
+ * of {@link PlaceLocalIntArray} and {@link PlaceLocalLongArray} instances at
+ * remote places.
+ * <p>
+ * A request is an immediate task with a fixed format: the reference to the
+ * array, the operation, the index, the operands, and the place and number of
+ * the request if a reply is expected. It is executed by the immediate handler
+ * threads of the destination place as soon as it is received, without
+ * scheduling a task. The reply is another immediate task completing the
+ * future of the request. The futures awaiting a reply from a place that dies
+ * complete with a {@link DeadPlaceException}.
+ */
+final class RemoteAtomic implements SerializableRunnable, KryoSerializable {
+  private static final long serialVersionUID = -2290218460318133614L;
+
+  /**
+   * The code of the compare-and-set operation.
+   */
+  private static final byte CAS = -1;
+
+  /*
+   * The atomic methods of {@code sun.misc.Unsafe}, bound to the instance and
+   * accessed via method handles as the class is not part of the Java 8 API.
+   */
+  private static final MethodHandle getAndAddInt;
+  private static final MethodHandle getAndSetInt;
+  private static final MethodHandle getIntVolatile;
+  private static final MethodHandle compareAndSwapInt;
+  private static final MethodHandle getAndAddLong;
+  private static final MethodHandle getAndSetLong;
+  private static final MethodHandle getLongVolatile;
+  private static final MethodHandle compareAndSwapLong;
+
+  static {
+    try {
+      final Class<?> unsafe = Class.forName("sun.misc.Unsafe");
+      final Field theUnsafe = unsafe.getDeclaredField("theUnsafe");
+      theUnsafe.setAccessible(true);
+      final Object u = theUnsafe.get(null);
+      final MethodHandles.Lookup lookup = MethodHandles.lookup();
+      getAndAddInt = lookup.unreflect(unsafe.getMethod("getAndAddInt",
+          Object.class, long.class, int.class)).bindTo(u);
+      getAndSetInt = lookup.unreflect(unsafe.getMethod("getAndSetInt",
+          Object.class, long.class, int.class)).bindTo(u);
+      getIntVolatile = lookup.unreflect(
+          unsafe.getMethod("getIntVolatile", Object.class, long.class))
+          .bindTo(u);
+      compareAndSwapInt = lookup.unreflect(unsafe.getMethod(
+          "compareAndSwapInt", Object.class, long.class, int.class, int.class))
+          .bindTo(u);
+      getAndAddLong = lookup.unreflect(unsafe.getMethod("getAndAddLong",
+          Object.class, long.class, long.class)).bindTo(u);
+      getAndSetLong = lookup.unreflect(unsafe.getMethod("getAndSetLong",
+          Object.class, long.class, long.class)).bindTo(u);
+      getLongVolatile = lookup.unreflect(
+          unsafe.getMethod("getLongVolatile", Object.class, long.class))
+          .bindTo(u);
+      compareAndSwapLong = lookup.unreflect(
+          unsafe.getMethod("compareAndSwapLong", Object.class, long.class,
+              long.class, long.class))
+          .bindTo(u);
+    } catch (final ReflectiveOperationException e) {
+      throw new Error(e);
+    }
+  }
+
+  /**
+   * The number of requests expecting a reply issued by this place.
+   */
+  private static final AtomicLong requests = new AtomicLong();
+
+  /**
+   * The futures of the requests awaiting a reply, by request number.
+   */
+  private static final Map<Long, Pending> futures = new ConcurrentHashMap<>();
+
+  /**
+   * The future of a request awaiting a reply.
+   */
+  private static final class Pending extends CompletableFuture<Long> {
+    /**
+     * The destination of the request.
+     */
+    private final int place;
+
+    private Pending(int place) {
+      this.place = place;
+    }
+  }
+
+  /**
+   * The target array.
+   */
+  private PlaceLocalObject target;
+
+  /**
+   * The ordinal of the {@link AtomicOp} or {@link #CAS}.
+   */
+  private byte op;
+
+  /**
+   * The index of the element.
+   */
+  private int index;
+
+  /**
+   * The operand, or the new value for compare-and-set.
+   */
+  private long operand;
+
+  /**
+   * The expected value for compare-and-set.
+   */
+  private long expected;
+
+  /**
+   * The place expecting a reply, or -1 if none.
+   */
+  private int origin;
+
+  /**
+   * The number of the request at the origin.
+   */
+  private long request;
+
+  private RemoteAtomic(PlaceLocalObject target, byte op, int index,
+      long operand, long expected) {
+    this.target = target;
+    this.op = op;
+    this.index = index;
+    this.operand = operand;
+    this.expected = expected;
+    origin = -1;
+  }
+
+  /**
+   * Applies an operation to a local element.
+   *
+   * @param array
+   *          an {@code int} or {@code long} array
+   * @param index
+   *          the index of the element
+   * @param op
+   *          the operation
+   * @param operand
+   *          the operand
+   * @return the previous value of the element
+   */
+  static long apply(Object array, int index, AtomicOp op, long operand) {
+    final long offset = offset(array, index);
+    try {
+      if (array instanceof int[]) {
+        if (op == AtomicOp.ADD) {
+          return (int) getAndAddInt.invokeExact(array, offset, (int) operand);
+        } else if (op == AtomicOp.SET) {
+          return (int) getAndSetInt.invokeExact(array, offset, (int) operand);
+        }
+        for (;;) {
+          final int value = (int) getIntVolatile.invokeExact(array, offset);
+          if ((boolean) compareAndSwapInt.invokeExact(array, offset, value,
+              (int) op.apply(value, operand))) {
+            return value;
+          }
+        }
+      }
+      if (op == AtomicOp.ADD) {
+        return (long) getAndAddLong.invokeExact(array, offset, operand);
+      } else if (op == AtomicOp.SET) {
+        return (long) getAndSetLong.invokeExact(array, offset, operand);
+      }
+      for (;;) {
+        final long value = (long) getLongVolatile.invokeExact(array, offset);
+        if ((boolean) compareAndSwapLong.invokeExact(array, offset, value,
+            op.apply(value, operand))) {
+          return value;
+        }
+      }
+    } catch (final Throwable e) {
+      throw new Error(e);
+    }
+  }
+
+  /**
+   * Sets a local element to a new value if it has the expected value.
+   *
+   * @param array
+   *          an {@code int} or {@code long} array
+   * @param index
+   *          the index of the element
+   * @param expected
+   *          the expected value
+   * @param value
+   *          the new value
+   * @return true if successful
+   */
+  static boolean compareAndSet(Object array, int index, long expected,
+      long value) {
+    final long offset = offset(array, index);
+    try {
+      if (array instanceof int[]) {
+        return (boolean) compareAndSwapInt.invokeExact(array, offset,
+            (int) expected, (int) value);
+      }
+      return (boolean) compareAndSwapLong.invokeExact(array, offset, expected,
+          value);
+    } catch (final Throwable e) {
+      throw new Error(e);
+    }
+  }
+
+  private static long offset(Object array, int index) {
+    if (array instanceof int[]) {
+      if (index < 0 || index >= ((int[]) array).length) {
+        throw new ArrayIndexOutOfBoundsException(index);
+      }
+      return UnsafeUtil.intArrayBaseOffset + 4L * index;
+    }
+    if (index < 0 || index >= ((long[]) array).length) {
+      throw new ArrayIndexOutOfBoundsException(index);
+    }
+    return UnsafeUtil.longArrayBaseOffset + 8L * index;
+  }
+
+  private static Object chunk(PlaceLocalObject target) {
+    return target instanceof PlaceLocalIntArray
+        ? ((PlaceLocalIntArray) target).array
+        : ((PlaceLocalLongArray) target).array;
+  }
+
+  /**
+   * Applies an operation to an element at the specified place and does not
+   * wait for a reply.
+   *
+   * @param target
+   *          the place local array
+   * @param place
+   *          the place of the element
+   * @param index
+   *          the index of the element
+   * @param op
+   *          the operation
+   * @param operand
+   *          the operand
+   */
+  static void send(PlaceLocalObject target, Place place, int index,
+      AtomicOp op, long operand) {
+    if (place.equals(here())) {
+      apply(chunk(target), index, op, operand);
+      return;
+    }
+    GlobalRuntimeImpl.getRuntime().immediateAsyncAt(place,
+        new RemoteAtomic(target, (byte) op.ordinal(), index, operand, 0));
+  }
+
+  /**
+   * Sets an element at the specified place to a new value if it has the
+   * expected value and does not wait for a reply.
+   *
+   * @param target
+   *          the place local array
+   * @param place
+   *          the place of the element
+   * @param index
+   *          the index of the element
+   * @param expected
+   *          the expected value
+   * @param value
+   *          the new value
+   */
+  static void sendCompareAndSet(PlaceLocalObject target, Place place,
+      int index, long expected, long value) {
+    if (place.equals(here())) {
+      compareAndSet(chunk(target), index, expected, value);
+      return;
+    }
+    GlobalRuntimeImpl.getRuntime().immediateAsyncAt(place,
+        new RemoteAtomic(target, CAS, index, value, expected));
+  }
+
+  /**
+   * Applies an operation to an element at the specified place.
+   *
+   * @param target
+   *          the place local array
+   * @param place
+   *          the place of the element
+   * @param index
+   *          the index of the element
+   * @param op
+   *          the operation
+   * @param operand
+   *          the operand
+   * @return a future of the previous value of the element
+   */
+  static CompletableFuture<Long> fetch(PlaceLocalObject target, Place place,
+      int index, AtomicOp op, long operand) {
+    return call(target, place,
+        new RemoteAtomic(target, (byte) op.ordinal(), index, operand, 0));
+  }
+
+  /**
+   * Sets an element at the specified place to a new value if it has the
+   * expected value.
+   *
+   * @param target
+   *          the place local array
+   * @param place
+   *          the place of the element
+   * @param index
+   *          the index of the element
+   * @param expected
+   *          the expected value
+   * @param value
+   *          the new value
+   * @return a future of 1 if successful, 0 otherwise
+   */
+  static CompletableFuture<Long> fetchCompareAndSet(PlaceLocalObject target,
+      Place place, int index, long expected, long value) {
+    return call(target, place,
+        new RemoteAtomic(target, CAS, index, value, expected));
+  }
+
+  private static CompletableFuture<Long> call(PlaceLocalObject target,
+      Place place, RemoteAtomic r) {
+    if (place.equals(here())) {
+      final CompletableFuture<Long> future = new CompletableFuture<>();
+      try {
+        future.complete(r.execute(chunk(target)));
+      } catch (final RuntimeException e) {
+        future.completeExceptionally(e);
+      }
+      return future;
+    }
+    final Pending future = new Pending(place.id);
+    r.origin = here().id;
+    r.request = requests.incrementAndGet();
+    futures.put(r.request, future);
+    try {
+      GlobalRuntimeImpl.getRuntime().immediateAsyncAt(place, r);
+    } catch (final RuntimeException e) {
+      futures.remove(r.request);
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
+  /**
+   * Completes with a {@link DeadPlaceException} the futures awaiting a reply
+   * from the given place.
+   *
+   * @param p
+   *          the ID of the dead place
+   */
+  static void purge(int p) {
+    final Iterator<Pending> it = futures.values().iterator();
+    while (it.hasNext()) {
+      final Pending future = it.next();
+      if (future.place == p) {
+        it.remove();
+        future.completeExceptionally(new DeadPlaceException(new Place(p)));
+      }
+    }
+  }
+
+  private long execute(Object array) {
+    if (op == CAS) {
+      return compareAndSet(array, index, expected, operand) ? 1 : 0;
+    }
+    return apply(array, index, AtomicOp.values()[op], operand);
+  }
+
+  @Override
+  public void run() {
+    long result = 0;
+    RuntimeException error = null;
+    try {
+      result = execute(chunk(target));
+    } catch (final RuntimeException e) {
+      if (origin < 0) {
+        throw e;
+      }
+      error = e;
+    }
+    if (origin >= 0) {
+      GlobalRuntimeImpl.getRuntime().immediateAsyncAt(new Place(origin),
+          new Reply(request, result, error));
+    }
+  }
+
+  @Override
+  public void write(Kryo kryo, Output output) {
+    kryo.writeClassAndObject(output, target);
+    output.writeByte(op);
+    output.writeVarInt(index, true);
+    output.writeLong(operand);
+    if (op == CAS) {
+      output.writeLong(expected);
+    }
+    output.writeVarInt(origin + 1, true);
+    if (origin >= 0) {
+      output.writeVarLong(request, true);
+    }
+  }
+
+  @Override
+  public void read(Kryo kryo, Input input) {
+    target = (PlaceLocalObject) kryo.readClassAndObject(input);
+    op = input.readByte();
+    index = input.readVarInt(true);
+    operand = input.readLong();
+    if (op == CAS) {
+      expected = input.readLong();
+    }
+    origin = input.readVarInt(true) - 1;
+    if (origin >= 0) {
+      request = input.readVarLong(true);
+    }
+  }
+
+  /**
+   * The reply to a {@link RemoteAtomic} request.
+   */
+  static final class Reply implements SerializableRunnable, KryoSerializable {
+    private static final long serialVersionUID = 7418377215617338212L;
+
+    /**
+     * The number of the request.
+     */
+    private long request;
+
+    /**
+     * The result of the request.
+     */
+    private long result;
+
+    /**
+     * The exception thrown by the request if any.
+     */
+    private RuntimeException error;
+
+    private Reply(long request, long result, RuntimeException error) {
+      this.request = request;
+      this.result = result;
+      this.error = error;
+    }
+
+    @Override
+    public void run() {
+      final Pending future = futures.remove(request);
+      if (future == null) {
+        return;
+      }
+      if (error != null) {
+        future.completeExceptionally(error);
+      } else {
+        future.complete(result);
+      }
+    }
+
+    @Override
+    public void write(Kryo kryo, Output output) {
+      output.writeVarLong(request, true);
+      output.writeLong(result);
+      kryo.writeClassAndObject(output, error);
+    }
+
+    @Override
+    public void read(Kryo kryo, Input input) {
+      request = input.readVarLong(true);
+      result = input.readLong();
+      error = (RuntimeException) kryo.readClassAndObject(input);
+    }
+  }
+}
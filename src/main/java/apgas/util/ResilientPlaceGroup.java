@@ -3,19 +3,34 @@ package apgas.util;
 import static apgas.Constructs.*;
 
 import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Set;
 
+import apgas.DeadPlacesException;
+import apgas.GlobalRuntime;
 import apgas.Place;
+import apgas.SerializableJob;
+import apgas.impl.GlobalRuntimeImpl;
 
 /**
  * Class meant to handle failure of a place.
  * <p>
  * Places are put into groups. Should one of the place fail, the group will try
  * to recover from it.
+ * <p>
+ * A group may keep a pool of spare places. Spare places are idle places that
+ * have run a user-supplied warm-up job, e.g., to trigger JIT compilation or
+ * preload data. {@link #fix()} promotes spare places to replace dead places and
+ * launches new places to refill the pool if the current place launched the
+ * initial places. New places join the pool once connected and warmed up by
+ * {@link #refill()}.
  */
 public class ResilientPlaceGroup implements Serializable {
 
@@ -28,11 +43,37 @@ public class ResilientPlaceGroup implements Serializable {
   protected final Place[] array;
 
   /**
-   * Maximum index in {@link #array} of working places. All places in the array
-   * at indeces lower or equal to {@link #max} are in use.
+   * Maximum place ID of the places in use or in the spare pool. Places with
+   * higher IDs are unknown to the group.
    */
   protected int max;
 
+  /**
+   * The index in {@link #array} of each place, by place ID, or {@code -1}.
+   */
+  private int[] indices = new int[0];
+
+  /** The warmed-up spare places, in promotion order */
+  private final ArrayDeque<Place> spares = new ArrayDeque<>();
+
+  /** The target size of the spare pool */
+  private final int target;
+
+  /** The warm-up job run by new spare places or null */
+  private final SerializableJob warmup;
+
+  /** The number of places launched but not yet in the spare pool */
+  private int launched;
+
+  /** The number of completed recoveries */
+  private long recoveries;
+
+  /** The duration of the last recovery in nanoseconds */
+  private long lastRecoveryTime;
+
+  /** The total duration of the recoveries in nanoseconds */
+  private long totalRecoveryTime;
+
   /**
    * Constructor
    *
@@ -42,46 +83,137 @@ public class ResilientPlaceGroup implements Serializable {
    *          the number of places to include in the group
    */
   public ResilientPlaceGroup(int size) {
+    this(size, 0, null);
+  }
+
+  /**
+   * Constructs a group with a pool of spare places.
+   * <p>
+   * The group consists of the first {@code size} places. The next
+   * {@code spares} places run {@code warmup} and form the spare pool. Missing
+   * spare places are launched if possible.
+   *
+   * @param size
+   *          the number of places to include in the group
+   * @param spares
+   *          the target number of spare places
+   * @param warmup
+   *          the job to run at each new spare place or null
+   */
+  public ResilientPlaceGroup(int size, int spares, SerializableJob warmup) {
     array = new Place[size];
+    target = spares;
+    this.warmup = warmup;
     int id = 0;
     for (final Place p : places()) {
-      array[id++] = p;
       if (id == size) {
-        max = p.id;
-        return;
+        break;
       }
+      array[id] = p;
+      index(p, id++);
+      max = p.id;
     }
-    System.err.println(
-        "[APGAS] Too few places to initialize the ResilientPlaceGroup. Aborting.");
-    System.exit(1);
+    if (id < size) {
+      System.err.println(
+          "[APGAS] Too few places to initialize the ResilientPlaceGroup. Aborting.");
+      System.exit(1);
+    }
+    refill();
   }
 
   /**
    * Attempts to find a spare place in the resilient place group which is not in
    * use yet.
+   * <p>
+   * Dead places are replaced with spare places from the pool if any, or else
+   * with places unknown to the group. The pool is then refilled.
    */
   public void fix() {
-    final List<? extends Place> places = places();
-    final Iterator<? extends Place> it = places.iterator();
-    Place spare;
+    final long start = System.nanoTime();
+    final Long failure = GlobalRuntime.getRuntime().lastfailureTime();
+    final Set<Place> live = new HashSet<>(places());
+    int promoted = 0;
+    Iterator<? extends Place> it = null;
     try {
       for (int id = 0; id < array.length; ++id) {
-        if (!places.contains(array[id])) {
+        if (live.contains(array[id])) {
+          continue;
+        }
+        index(array[id], -1);
+        Place spare = spares.poll();
+        while (spare != null && !live.contains(spare)) {
+          spare = spares.poll();
+        }
+        if (spare == null) {
+          if (it == null) {
+            it = places().iterator();
+          }
           for (;;) {
             spare = it.next();
             if (spare.id > max) {
               break;
             }
           }
-          array[id] = spare;
           max = spare.id;
         }
+        array[id] = spare;
+        index(spare, id);
+        promoted++;
       }
     } catch (final NoSuchElementException e) {
       System.err.println(
           "[APGAS] Too few places to fix the ResilientPlaceGroup. Aborting.");
       System.exit(1);
     }
+    if (promoted > 0) {
+      final long end = System.nanoTime();
+      lastRecoveryTime = end
+          - (failure != null && failure <= start ? failure : start);
+      totalRecoveryTime += lastRecoveryTime;
+      recoveries++;
+    }
+    spares.removeIf(p -> !live.contains(p));
+    refill();
+  }
+
+  /**
+   * Adds the places unknown to the group to the spare pool after running the
+   * warm-up job at these places, and launches new places if the pool is below
+   * its target size.
+   * <p>
+   * Places launched by a previous call join the pool in a later call, once
+   * connected. This method may be invoked at any time to warm up these places
+   * outside of {@link #fix()}.
+   */
+  public void refill() {
+    final List<Place> fresh = new ArrayList<>();
+    for (final Place p : places()) {
+      if (p.id > max) {
+        fresh.add(p);
+        max = p.id;
+      }
+    }
+    launched = Math.max(0, launched - fresh.size());
+    if (!fresh.isEmpty() && warmup != null) {
+      try {
+        finish(() -> asyncAtAll(fresh, warmup));
+      } catch (final DeadPlacesException e) {
+        fresh.retainAll(places());
+      }
+    }
+    spares.addAll(fresh);
+    final int missing = target - spares.size() - launched;
+    final GlobalRuntimeImpl runtime = GlobalRuntimeImpl.getRuntime();
+    if (missing > 0 && runtime.canLaunchPlaces()) {
+      try {
+        runtime.launchPlaces(missing);
+        launched += missing;
+      } catch (final Exception e) {
+        System.err.println(
+            "[APGAS] Failed to launch spare places for the ResilientPlaceGroup: "
+                + e);
+      }
+    }
   }
 
   /**
@@ -113,12 +245,7 @@ public class ResilientPlaceGroup implements Serializable {
    * @return true is the place is in the group, false otherwise.
    */
   public boolean contains(Place place) {
-    for (int id = 0; id < array.length; ++id) {
-      if (array[id].id == place.id) {
-        return true;
-      }
-    }
-    return false;
+    return indexOf(place) >= 0;
   }
 
   /**
@@ -130,12 +257,7 @@ public class ResilientPlaceGroup implements Serializable {
    *         contained in the array.
    */
   public int indexOf(Place place) {
-    for (int id = 0; id < array.length; ++id) {
-      if (array[id].id == place.id) {
-        return id;
-      }
-    }
-    return -1;
+    return place.id >= 0 && place.id < indices.length ? indices[place.id] : -1;
   }
 
   /**
@@ -147,4 +269,60 @@ public class ResilientPlaceGroup implements Serializable {
   public List<Place> asList() {
     return Collections.unmodifiableList(Arrays.asList(array));
   }
+
+  /**
+   * Returns the spare places ready for promotion.
+   *
+   * @return an unmodifiable list of the spare places in promotion order
+   */
+  public List<Place> spares() {
+    return Collections.unmodifiableList(new ArrayList<>(spares));
+  }
+
+  /**
+   * Returns the number of calls to {@link #fix()} that replaced dead places.
+   *
+   * @return the number of recoveries
+   */
+  public long recoveries() {
+    return recoveries;
+  }
+
+  /**
+   * Returns the duration of the last recovery in nanoseconds, from the
+   * detection of the last place failure to the completion of the replacement
+   * of the dead places.
+   *
+   * @return the duration of the last recovery or 0 if none
+   */
+  public long lastRecoveryTime() {
+    return lastRecoveryTime;
+  }
+
+  /**
+   * Returns the total duration of the recoveries in nanoseconds.
+   *
+   * @return the total duration of the recoveries
+   * @see #lastRecoveryTime()
+   */
+  public long totalRecoveryTime() {
+    return totalRecoveryTime;
+  }
+
+  /**
+   * Records the index of a place in {@link #array}.
+   *
+   * @param place
+   *          the place
+   * @param id
+   *          the index of the place or {@code -1}
+   */
+  private void index(Place place, int id) {
+    if (place.id >= indices.length) {
+      final int length = indices.length;
+      indices = Arrays.copyOf(indices, Math.max(place.id + 1, 2 * length));
+      Arrays.fill(indices, length, indices.length, -1);
+    }
+    indices[place.id] = id;
+  }
 }
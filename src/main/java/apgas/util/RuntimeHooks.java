@@ -0,0 +1,51 @@
+/*
+ *  This file is part of the X10 project (http://x10-lang.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  (C) Copyright IBM Corporation 2006-2016.
+ */
+
+package apgas.util;
+
+import com.esotericsoftware.kryo.Kryo;
+
+/**
+ * The {@link RuntimeHooks} class gives the runtime access to the internal state
+ * of the package-private classes of {@link apgas.util}.
+ * <p>
+ * This class is not part of the API and must only be used by the runtime.
+ */
+public final class RuntimeHooks {
+  private RuntimeHooks() {
+  }
+
+  /**
+   * Registers the package-private serializable classes of {@link apgas.util}
+   * with a Kryo instance.
+   * <p>
+   * The registration order determines the class IDs and must not depend on
+   * the place.
+   *
+   * @param kryo
+   *          the Kryo instance
+   */
+  public static void register(Kryo kryo) {
+    kryo.register(ArrayTransfer.class);
+    kryo.register(RemoteAtomic.class);
+    kryo.register(RemoteAtomic.Reply.class);
+  }
+
+  /**
+   * Releases the state of this place related to a dead place.
+   *
+   * @param p
+   *          the ID of the dead place
+   */
+  public static void purge(int p) {
+    RemoteAtomic.purge(p);
+  }
+}
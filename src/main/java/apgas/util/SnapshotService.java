@@ -0,0 +1,565 @@
+/*
+ *  This file is part of the X10 project (http://x10-lang.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  (C) Copyright IBM Corporation 2006-2016.
+ */
+
+package apgas.util;
+
+import static apgas.Constructs.asyncAt;
+import static apgas.Constructs.asyncAtAll;
+import static apgas.Constructs.at;
+import static apgas.Constructs.finish;
+import static apgas.Constructs.places;
+
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import apgas.DeadPlacesException;
+import apgas.Place;
+import apgas.SerializableCallable;
+
+/**
+ * The {@link SnapshotService} class implements in-memory checkpoints of
+ * {@link PlaceLocalObject} instances over a {@link ResilientPlaceGroup}.
+ * <p>
+ * Each place of the group copies the state of its registered objects to the
+ * memory of its buddy, the next place in the group. Buddies keep the last
+ * committed state and stage the next one separately, so a checkpoint
+ * interrupted by a failure leaves the previous checkpoint intact. Primitive
+ * array states are transferred incrementally by blocks of {@link #BLOCK}
+ * elements: each place also keeps a copy of its last committed state and only
+ * sends the blocks that differ from it.
+ * <p>
+ * After {@link ResilientPlaceGroup#fix()}, {@link #restore()} rolls back all
+ * the places of the group to the last committed checkpoint. Surviving places
+ * restore their local copies. The objects of a dead place are rebuilt at the
+ * place that replaced it from the copy held by its buddy. A checkpoint is lost
+ * if a place and its buddy fail together.
+ * <p>
+ * A {@link SnapshotService} instance must be used from a single place, while
+ * the registered objects are not being modified.
+ */
+public class SnapshotService {
+  /**
+   * The number of elements per block of a primitive array state.
+   */
+  public static final int BLOCK = 4096;
+
+  /**
+   * The checkpoint data held by this place, by service.
+   */
+  private static final Map<GlobalID, Store> stores = new ConcurrentHashMap<>();
+
+  /**
+   * The ID of this service.
+   */
+  private final GlobalID id = new GlobalID();
+
+  /**
+   * The group of places to checkpoint.
+   */
+  private final ResilientPlaceGroup group;
+
+  /**
+   * The IDs of the registered objects.
+   */
+  private final ArrayList<GlobalID> objects = new ArrayList<>();
+
+  /**
+   * The factories of the registered objects.
+   */
+  private final ArrayList<SerializableCallable<? extends PlaceLocalObject>> factories = new ArrayList<>();
+
+  /**
+   * The last committed epoch.
+   */
+  private long epoch;
+
+  /**
+   * The places of the group at the last committed epoch, by index.
+   */
+  private List<Place> members;
+
+  /**
+   * Whether the next checkpoint must transfer full states.
+   */
+  private boolean full = true;
+
+  /**
+   * Constructs a snapshot service for the given group.
+   *
+   * @param group
+   *          the group of places to checkpoint
+   */
+  public SnapshotService(ResilientPlaceGroup group) {
+    this.group = group;
+  }
+
+  /**
+   * Registers an object to checkpoint.
+   *
+   * @param <T>
+   *          the type of the object
+   * @param object
+   *          a place local object defined at every place of the group
+   * @param factory
+   *          the function constructing the object at a place replacing a dead
+   *          place before its state is restored
+   */
+  public <T extends PlaceLocalObject & Snapshottable> void register(T object,
+      SerializableCallable<T> factory) {
+    objects.add(PlaceLocalObject.getId(object));
+    factories.add(factory);
+    full = true;
+  }
+
+  /**
+   * Returns the last committed epoch.
+   *
+   * @return the number of committed checkpoints
+   */
+  public long epoch() {
+    return epoch;
+  }
+
+  /**
+   * Checkpoints the registered objects at every place of the group.
+   * <p>
+   * The places send their updates to their buddies in parallel. The new
+   * checkpoint is committed once all the updates have been received.
+   *
+   * @throws DeadPlacesException
+   *           if a place of the group died, in which case the last committed
+   *           checkpoint remains valid
+   */
+  public void checkpoint() {
+    final List<Place> list = new ArrayList<>(group.asList());
+    final boolean f = full || !list.equals(members);
+    final long e = epoch + 1;
+    final GlobalID sid = id;
+    final GlobalID[] ids = objects.toArray(new GlobalID[objects.size()]);
+    final int n = list.size();
+    finish(() -> {
+      for (int i = 0; i < n; i++) {
+        final Place buddy = list.get((i + 1) % n);
+        asyncAt(list.get(i), () -> {
+          final Update[] updates = store(sid).prepare(ids, e, f);
+          asyncAt(buddy, () -> store(sid).stage(updates, e));
+        });
+      }
+    });
+    try {
+      finish(() -> asyncAtAll(list, () -> store(sid).commit(e)));
+    } catch (final DeadPlacesException x) {
+      // some places may be ahead, restore from the previous epoch
+      full = true;
+      throw x;
+    }
+    epoch = e;
+    members = list;
+    full = false;
+  }
+
+  /**
+   * Restores the registered objects at every place of the group to the last
+   * committed checkpoint.
+   * <p>
+   * Objects missing at a place, i.e., at places that replaced dead places, are
+   * constructed using their factories first.
+   *
+   * @throws IllegalStateException
+   *           if there is no checkpoint or if the checkpoint of a place is lost
+   */
+  public void restore() {
+    if (members == null) {
+      throw new IllegalStateException("no checkpoint");
+    }
+    final List<Place> list = new ArrayList<>(group.asList());
+    final int n = list.size();
+    if (n != members.size()) {
+      throw new IllegalStateException("group size changed");
+    }
+    final Set<Place> live = new HashSet<>(places());
+    for (int i = 0; i < n; i++) {
+      if (!list.get(i).equals(members.get(i))
+          && !live.contains(members.get((i + 1) % n))) {
+        throw new IllegalStateException(
+            "checkpoint of " + members.get(i) + " lost");
+      }
+    }
+    final long e = epoch;
+    final GlobalID sid = id;
+    final GlobalID[] ids = objects.toArray(new GlobalID[objects.size()]);
+    final ArrayList<SerializableCallable<? extends PlaceLocalObject>> fs = factories;
+    final List<Place> buddies = members;
+    full = true;
+    finish(() -> {
+      for (int i = 0; i < n; i++) {
+        final boolean local = list.get(i).equals(buddies.get(i));
+        final Place buddy = buddies.get((i + 1) % n);
+        asyncAt(list.get(i), () -> {
+          final Serializable[] states = local ? store(sid).states(true, e)
+              : at(buddy, () -> store(sid).states(false, e));
+          for (int k = 0; k < ids.length; k++) {
+            PlaceLocalObject object = (PlaceLocalObject) ids[k].getHere();
+            if (object == null) {
+              object = fs.get(k).call();
+              object.id = ids[k];
+              ids[k].putHere(object);
+            }
+            ((Snapshottable) object).restore(states[k]);
+          }
+        });
+      }
+    });
+  }
+
+  /**
+   * Discards the checkpoint data at every place of the group. Masks
+   * {@link DeadPlacesException} instances if any.
+   */
+  public void close() {
+    final GlobalID sid = id;
+    try {
+      finish(() -> asyncAtAll(group.asList(), () -> stores.remove(sid)));
+    } catch (final DeadPlacesException e) {
+    }
+    members = null;
+  }
+
+  private static Store store(GlobalID sid) {
+    return stores.computeIfAbsent(sid, k -> new Store());
+  }
+
+  /**
+   * The checkpoint data of a service at a place.
+   */
+  private static final class Store {
+    /**
+     * The replicas of the states of the local objects.
+     */
+    private Replica[] own = new Replica[0];
+
+    /**
+     * The replicas of the states of the objects of the ward of this place,
+     * i.e., the previous place in the group.
+     */
+    private Replica[] ward = new Replica[0];
+
+    /**
+     * Computes and stages the updates of the local objects.
+     *
+     * @param ids
+     *          the IDs of the objects
+     * @param e
+     *          the epoch of the checkpoint
+     * @param full
+     *          whether to transfer full states
+     * @return the updates for the buddy
+     */
+    synchronized Update[] prepare(GlobalID[] ids, long e, boolean full) {
+      own = grow(own, ids.length);
+      final Update[] updates = new Update[ids.length];
+      for (int k = 0; k < ids.length; k++) {
+        final Serializable state = ((Snapshottable) ids[k].getHere())
+            .snapshot();
+        final Replica replica = own[k];
+        updates[k] = Update.diff(
+            full || !Update.primitive(replica.current) ? null : replica.current,
+            state);
+        replica.pending = updates[k].blocks == null
+            && Update.primitive(updates[k].data)
+                ? new Update(null, Update.copy(updates[k].data))
+                : updates[k];
+        replica.pendingEpoch = e;
+      }
+      return updates;
+    }
+
+    synchronized void stage(Update[] updates, long e) {
+      ward = grow(ward, updates.length);
+      for (int k = 0; k < updates.length; k++) {
+        ward[k].pending = updates[k];
+        ward[k].pendingEpoch = e;
+      }
+    }
+
+    synchronized void commit(long e) {
+      for (final Replica replica : own) {
+        replica.commit(e);
+      }
+      for (final Replica replica : ward) {
+        replica.commit(e);
+      }
+    }
+
+    /**
+     * Returns the states of the local objects or of the objects of the ward of
+     * this place at the specified epoch.
+     *
+     * @param local
+     *          true for the local objects
+     * @param e
+     *          the epoch
+     * @return the states
+     */
+    synchronized Serializable[] states(boolean local, long e) {
+      final Replica[] replicas = local ? own : ward;
+      final Serializable[] states = new Serializable[replicas.length];
+      for (int k = 0; k < replicas.length; k++) {
+        states[k] = replicas[k].state(e);
+      }
+      return states;
+    }
+
+    private static Replica[] grow(Replica[] replicas, int n) {
+      if (replicas.length >= n) {
+        return replicas;
+      }
+      final Replica[] result = Arrays.copyOf(replicas, n);
+      for (int k = replicas.length; k < n; k++) {
+        result[k] = new Replica();
+      }
+      return result;
+    }
+  }
+
+  /**
+   * The replica of the state of an object.
+   */
+  private static final class Replica {
+    /**
+     * The committed state.
+     */
+    Serializable current;
+
+    /**
+     * The epoch of the committed state.
+     */
+    long epoch;
+
+    /**
+     * The update restoring the previous committed state.
+     */
+    Update undo;
+
+    /**
+     * The epoch of the previous committed state.
+     */
+    long previous = -1;
+
+    /**
+     * The staged update.
+     */
+    Update pending;
+
+    /**
+     * The epoch of the staged update.
+     */
+    long pendingEpoch;
+
+    void commit(long e) {
+      if (pending == null || pendingEpoch != e) {
+        return;
+      }
+      if (pending.blocks == null) {
+        undo = current == null ? null : new Update(null, current);
+        current = pending.data;
+      } else if (current == null) {
+        throw new IllegalStateException("incremental update without base");
+      } else {
+        undo = Update.save(current, pending.blocks);
+        pending.applyTo(current);
+      }
+      previous = epoch;
+      epoch = e;
+      pending = null;
+    }
+
+    Serializable state(long e) {
+      if (epoch == e) {
+        return Update.primitive(current) ? Update.copy(current) : current;
+      }
+      if (previous == e && undo != null) {
+        if (undo.blocks == null) {
+          return undo.data;
+        }
+        final Serializable state = Update.copy(current);
+        undo.applyTo(state);
+        return state;
+      }
+      throw new IllegalStateException("no checkpoint for epoch " + e);
+    }
+  }
+
+  /**
+   * A full state or a set of modified blocks of a primitive array state.
+   */
+  static final class Update implements Serializable {
+    private static final long serialVersionUID = 8128329764357128447L;
+
+    /**
+     * The indices of the modified blocks or null for a full state.
+     */
+    final int[] blocks;
+
+    /**
+     * The full state or the concatenated modified blocks.
+     */
+    final Serializable data;
+
+    Update(int[] blocks, Serializable data) {
+      this.blocks = blocks;
+      this.data = data;
+    }
+
+    /**
+     * Computes the update from a committed state to a new state.
+     *
+     * @param shadow
+     *          the committed primitive array state or null
+     * @param state
+     *          the new state
+     * @return the update
+     */
+    static Update diff(Object shadow, Serializable state) {
+      if (!primitive(state)) {
+        return new Update(null, state);
+      }
+      final int length = Array.getLength(state);
+      if (shadow == null || shadow.getClass() != state.getClass()
+          || Array.getLength(shadow) != length) {
+        return new Update(null, copy(state));
+      }
+      final int count = (length + BLOCK - 1) / BLOCK;
+      final boolean[] dirty = new boolean[count];
+      // one task per block
+      LocalParallel.forRange(0, count, 1, (from, to) -> {
+        for (int b = from; b < to; b++) {
+          dirty[b] = !same(shadow, state, b * BLOCK,
+              Math.min(length, (b + 1) * BLOCK));
+        }
+      });
+      int n = 0;
+      for (final boolean d : dirty) {
+        if (d) {
+          n++;
+        }
+      }
+      final int[] blocks = new int[n];
+      n = 0;
+      for (int b = 0; b < count; b++) {
+        if (dirty[b]) {
+          blocks[n++] = b;
+        }
+      }
+      return save(state, blocks);
+    }
+
+    /**
+     * Extracts the specified blocks of a primitive array.
+     *
+     * @param array
+     *          the array
+     * @param blocks
+     *          the indices of the blocks
+     * @return the update setting these blocks
+     */
+    static Update save(Object array, int[] blocks) {
+      final int length = Array.getLength(array);
+      int size = 0;
+      for (final int b : blocks) {
+        size += Math.min(BLOCK, length - b * BLOCK);
+      }
+      final Object data = Array.newInstance(array.getClass().getComponentType(),
+          size);
+      int offset = 0;
+      for (final int b : blocks) {
+        final int n = Math.min(BLOCK, length - b * BLOCK);
+        System.arraycopy(array, b * BLOCK, data, offset, n);
+        offset += n;
+      }
+      return new Update(blocks, (Serializable) data);
+    }
+
+    /**
+     * Copies the modified blocks into a primitive array.
+     *
+     * @param array
+     *          the array
+     */
+    void applyTo(Object array) {
+      final int length = Array.getLength(array);
+      int offset = 0;
+      for (final int b : blocks) {
+        final int n = Math.min(BLOCK, length - b * BLOCK);
+        System.arraycopy(data, offset, array, b * BLOCK, n);
+        offset += n;
+      }
+    }
+
+    static boolean primitive(Object state) {
+      return state instanceof int[] || state instanceof long[]
+          || state instanceof double[] || state instanceof float[];
+    }
+
+    static Serializable copy(Object array) {
+      final int length = Array.getLength(array);
+      final Object copy = Array.newInstance(array.getClass().getComponentType(),
+          length);
+      System.arraycopy(array, 0, copy, 0, length);
+      return (Serializable) copy;
+    }
+
+    static boolean same(Object a, Object b, int from, int to) {
+      if (a instanceof int[]) {
+        final int[] x = (int[]) a;
+        final int[] y = (int[]) b;
+        for (int i = from; i < to; i++) {
+          if (x[i] != y[i]) {
+            return false;
+          }
+        }
+      } else if (a instanceof long[]) {
+        final long[] x = (long[]) a;
+        final long[] y = (long[]) b;
+        for (int i = from; i < to; i++) {
+          if (x[i] != y[i]) {
+            return false;
+          }
+        }
+      } else if (a instanceof double[]) {
+        final double[] x = (double[]) a;
+        final double[] y = (double[]) b;
+        for (int i = from; i < to; i++) {
+          if (Double.doubleToRawLongBits(x[i]) != Double
+              .doubleToRawLongBits(y[i])) {
+            return false;
+          }
+        }
+      } else {
+        final float[] x = (float[]) a;
+        final float[] y = (float[]) b;
+        for (int i = from; i < to; i++) {
+          if (Float.floatToRawIntBits(x[i]) != Float.floatToRawIntBits(y[i])) {
+            return false;
+          }
+        }
+      }
+      return true;
+    }
+  }
+}
@@ -0,0 +1,44 @@
+/*
+ *  This file is part of the X10 project (http://x10-lang.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  (C) Copyright IBM Corporation 2006-2016.
+ */
+
+package apgas.util;
+
+import java.io.Serializable;
+
+/**
+ * The {@link Snapshottable} interface is implemented by the
+ * {@link PlaceLocalObject} classes whose state can be checkpointed by a
+ * {@link SnapshotService}.
+ * <p>
+ * A state that is an {@code int}, {@code long}, {@code float} or
+ * {@code double} array is checkpointed incrementally: only the blocks of the
+ * array modified since the last checkpoint are transferred. Other states are
+ * transferred in full.
+ */
+public interface Snapshottable {
+  /**
+   * Returns the state of this object at the current place.
+   * <p>
+   * The state must not be modified until the checkpoint completes. Non-array
+   * states must not be modified afterwards either.
+   *
+   * @return the state
+   */
+  Serializable snapshot();
+
+  /**
+   * Restores the state of this object at the current place.
+   *
+   * @param state
+   *          a state returned by {@link #snapshot()}
+   */
+  void restore(Serializable state);
+}
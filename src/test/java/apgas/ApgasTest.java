@@ -13,16 +13,29 @@ package apgas;
 
 import static apgas.Constructs.async;
 import static apgas.Constructs.asyncAt;
+import static apgas.Constructs.asyncAtAll;
+import static apgas.Constructs.asyncAtFuture;
 import static apgas.Constructs.at;
 import static apgas.Constructs.finish;
 import static apgas.Constructs.here;
 import static apgas.Constructs.place;
 import static apgas.Constructs.places;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
 
 import java.io.IOException;
 import java.io.NotSerializableException;
 import java.io.ObjectInputStream;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import org.junit.After;
 import org.junit.AfterClass;
@@ -31,10 +44,22 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TestName;
 
+import apgas.collectives.Clock;
+import apgas.collectives.Team;
 import apgas.impl.Config;
 import apgas.impl.DebugFinish;
+import apgas.util.AtomicOp;
+import apgas.util.CountedGlobalRef;
+import apgas.util.DistArray;
+import apgas.util.DistHashMap;
+import apgas.util.DistLongHashMap;
+import apgas.util.Distribution;
 import apgas.util.GlobalRef;
+import apgas.util.PlaceLocal;
 import apgas.util.PlaceLocalArray;
+import apgas.util.PlaceLocalDoubleArray;
+import apgas.util.PlaceLocalIntArray;
+import apgas.util.PlaceLocalLongArray;
 
 @SuppressWarnings("javadoc")
 public class ApgasTest {
@@ -106,6 +131,16 @@ public class ApgasTest {
 		plh.free();
 	}
 
+	@Test
+	public void testPlaceLocal() {
+		final PlaceLocal<int[]> counter = PlaceLocal.make(places(), () -> new int[] { here().id });
+		finish(() -> asyncAtAll(places(), () -> counter.get()[0]++));
+		for (final Place p : places()) {
+			assertEquals(p.id + 1, at(p, () -> counter.get()[0]).intValue());
+		}
+		counter.free(places());
+	}
+
 	@Test
 	public void testPlaceLocalArray() {
 		final PlaceLocalArray<Place> pla = PlaceLocalArray.make(places(), 1);
@@ -119,6 +154,216 @@ public class ApgasTest {
 		}
 	}
 
+	@Test
+	public void testAsyncAtAll() {
+		final GlobalRef<int[]> counter = new GlobalRef<>(places(), () -> new int[1]);
+		finish(() -> asyncAtAll(places(), () -> counter.get()[0]++));
+		for (final Place p : places()) {
+			assertEquals(at(p, () -> counter.get()[0]).intValue(), 1);
+		}
+		counter.free();
+	}
+
+	@Test
+	public void testAsyncCopy() {
+		final PlaceLocalIntArray array = PlaceLocalIntArray.make(places(), 8);
+		final int[] src = { 1, 2, 3, 4 };
+		finish(() -> PlaceLocalIntArray.asyncCopy(src, 1, array, place(1), 2, 3));
+		for (int i = 0; i < 8; i++) {
+			final int index = i;
+			assertEquals(at(place(1), () -> array.get(index)).intValue(), i >= 2 && i < 5 ? i : 0);
+		}
+	}
+
+	@Test
+	public void testPlaceLocalDoubleArray() {
+		final PlaceLocalDoubleArray array = PlaceLocalDoubleArray.make(places(), 10000);
+		final double sum = at(place(1), () -> {
+			array.fill(0.5);
+			array.apply(x -> 2 * x);
+			return array.reduce(0, (x, y) -> x + y);
+		});
+		assertEquals(sum, 10000, 0);
+	}
+
+	@Test
+	public void testPlaceLocalArrayCopyBounds() {
+		final PlaceLocalDoubleArray array = PlaceLocalDoubleArray.make(places(), 10000);
+		final double sum = at(place(1), () -> {
+			final double[] src = new double[10000];
+			Arrays.fill(src, 1);
+			try {
+				array.copyFrom(src, 0, 1, 10000);
+				fail();
+			} catch (final IndexOutOfBoundsException e) {
+			}
+			try {
+				array.copyTo(0, src, -1, 100);
+				fail();
+			} catch (final IndexOutOfBoundsException e) {
+			}
+			array.copyFrom(src, 1, 0, 9999);
+			return array.reduce(0, (x, y) -> x + y);
+		});
+		assertEquals(sum, 9999, 0);
+	}
+
+	@Test
+	public void testDistArray() {
+		final DistArray<Integer> array = DistArray.make(places(), Distribution.blockCyclic(20, places().size(), 3));
+		final List<Integer> values = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			values.add(i);
+		}
+		array.put(0, values);
+		array.update((i, t) -> t + 1);
+		final List<Integer> result = array.get(0, 20);
+		for (int i = 0; i < 20; i++) {
+			assertEquals(result.get(i).intValue(), i + 1);
+		}
+		assertEquals(array.owner(4), place(1));
+	}
+
+	@Test
+	public void testDistHashMap() {
+		final DistHashMap<String, Integer> map = DistHashMap.make(places());
+		final Map<String, Integer> entries = new HashMap<>();
+		for (int i = 0; i < 100; i++) {
+			entries.put("k" + i, i);
+		}
+		map.putAll(entries);
+		assertEquals(100, map.size());
+		assertEquals(42, map.get("k42").intValue());
+		final List<Integer> result = map.getAll(Arrays.asList("k7", "k99", "none"));
+		assertEquals(Arrays.asList(7, 99, null), result);
+		assertEquals(4950, map.aggregate((k, v) -> v, 0, Integer::sum).intValue());
+		map.removeAll(Arrays.asList("k0", "k1"));
+		assertEquals(98, map.size());
+		final DistLongHashMap counts = DistLongHashMap.make(places());
+		final long[] keys = { 0, 1, 2, 1, 0, 1 };
+		counts.applyAll(keys, AtomicOp.ADD, new long[] { 1, 1, 1, 1, 1, 1 });
+		assertEquals(3, counts.size());
+		assertEquals(3, counts.get(1, 0));
+		assertEquals(6, counts.aggregate((k, v) -> v, 0, Long::sum));
+		assertEquals(-1, counts.getAll(new long[] { 2, 3 }, -1)[1]);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDistHashMapEnumKey() {
+		final DistHashMap<AtomicOp, Integer> map = DistHashMap.make(places());
+		map.put(AtomicOp.ADD, 1);
+	}
+
+	@Test
+	public void testTeam() {
+		final Team team = Team.make(places().subList(1, places().size()));
+		finish(() -> asyncAtAll(team.places(), () -> {
+			final int n = team.size();
+			final int rank = team.rank();
+			final double[] values = { rank, 1 };
+			team.allreduce(values, Double::sum);
+			assertEquals(n * (n - 1) / 2, values[0], 0);
+			assertEquals(n, values[1], 0);
+			final String s = team.reduce(1, Integer.toString(rank), String::concat);
+			assertEquals(rank == 1 ? "012".substring(0, n) : null, s);
+			assertEquals("root", team.broadcast(n - 1, rank == n - 1 ? "root" : null));
+			final List<Integer> ranks = team.gather(0, rank);
+			if (rank == 0) {
+				for (int r = 0; r < n; r++) {
+					assertEquals(r, ranks.get(r).intValue());
+				}
+			}
+			assertEquals(2 * rank, team.scatter(1, rank == 1 ? Arrays.asList(0, 2, 4).subList(0, n) : null).intValue());
+			team.barrier();
+			assertEquals(n - 1, team.allreduce(rank, Integer::max));
+		}));
+	}
+
+	@Test
+	public void testClock() {
+		finish(() -> {
+			final Clock clock = Clock.make(places());
+			for (final Place p : places()) {
+				clock.asyncAt(p, c -> {
+					for (int i = 0; i < 3; i++) {
+						c.advance();
+					}
+					assertEquals(3, c.phase());
+				});
+			}
+			clock.advance();
+			clock.drop();
+		});
+	}
+
+	@Test
+	public void testCountedGlobalRef() {
+		final CountedGlobalRef<String> ref = new CountedGlobalRef<>("target");
+		assertEquals("target", at(place(1), () -> at(place(2), () -> at(ref.home(), () -> ref.get()))));
+		ref.free();
+	}
+
+	private static WeakReference<int[]> shareCountedGlobalRef(PlaceLocal<Object> keep) {
+		final int[] target = new int[] { 42 };
+		final CountedGlobalRef<int[]> ref = new CountedGlobalRef<>(target);
+		assertEquals(42, at(place(1), () -> at(ref.home(), () -> ref.get()[0])).intValue());
+		// broadcast copies share the weight of the serialized reference
+		finish(() -> asyncAtAll(places(), () -> keep.set(ref)));
+		return new WeakReference<>(target);
+	}
+
+	private static void collect() throws InterruptedException {
+		finish(() -> asyncAtAll(places(), () -> System.gc()));
+		// lets the cleaners send their batched returns
+		Thread.sleep(200);
+		System.gc();
+	}
+
+	@Test
+	public void testCountedGlobalRefCollection() throws InterruptedException {
+		final PlaceLocal<Object> keep = PlaceLocal.make(places(), () -> null);
+		final WeakReference<int[]> target = shareCountedGlobalRef(keep);
+		collect();
+		assertNotNull(target.get());
+		finish(() -> asyncAtAll(places(), () -> keep.set(null)));
+		for (int i = 0; i < 50 && target.get() != null; i++) {
+			collect();
+		}
+		assertNull(target.get());
+		keep.free(places());
+	}
+
+	@Test
+	public void testRemoteAtomic() throws Exception {
+		final PlaceLocalLongArray array = PlaceLocalLongArray.make(places(), 1);
+		for (int i = 0; i < 3; i++) {
+			assertEquals(2 * i, array.getAndApply(place(1), 0, AtomicOp.ADD, 2).get().longValue());
+		}
+		assertEquals(6, array.getAndApply(place(1), 0, AtomicOp.MAX, 4).get().longValue());
+		assertEquals(true, array.compareAndSet(place(1), 0, 6, 1).get());
+		assertEquals(1, at(place(1), () -> array.get(0)).longValue());
+	}
+
+	@Test
+	public void testAsyncAtFuture() throws Exception {
+		final List<CompletableFuture<Integer>> futures = new ArrayList<>();
+		for (final Place p : places()) {
+			futures.add(asyncAtFuture(p, () -> here().id));
+		}
+		for (int i = 0; i < futures.size(); i++) {
+			assertEquals(places().get(i).id, futures.get(i).get().intValue());
+		}
+		final CompletableFuture<Integer> failed = asyncAtFuture(place(1), () -> {
+			throw new IllegalStateException();
+		});
+		try {
+			failed.get();
+			fail();
+		} catch (final ExecutionException e) {
+			assertEquals(IllegalStateException.class, e.getCause().getClass());
+		}
+	}
+
 	@Test(expected = IllegalArgumentException.class)
 	public void testIllegalArgumentException() {
 		place(-1);
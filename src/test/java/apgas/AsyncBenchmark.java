@@ -0,0 +1,110 @@
+/*
+ *  This file is part of the X10 project (http://x10-lang.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  (C) Copyright IBM Corporation 2006-2016.
+ */
+
+package apgas;
+
+import static apgas.Constructs.async;
+import static apgas.Constructs.finish;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import apgas.impl.Config;
+
+/**
+ * JMH benchmark measuring the cost of spawning fine-grained local tasks with
+ * {@link Constructs#async(Job)}, with and without task pooling.
+ * <p>
+ * Each trial runs in a fresh JVM hosting a single place as the runtime reads
+ * {@link Config#APGAS_ASYNC_FUSED} and {@link Config#APGAS_TASK_POOL} at
+ * initialization. With {@code fused=false}, local asyncs take the previous
+ * path, i.e., separate spawn and submit notifications and a new task per call,
+ * which gives the reference numbers. The task pool only applies to the fused
+ * path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class AsyncBenchmark {
+
+	@Param({ "false", "true" })
+	public boolean fused;
+
+	@Param({ "0", "64" })
+	public int taskPool;
+
+	@Param({ "1000" })
+	public int tasks;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		System.setProperty(Configuration.APGAS_PLACES, "1");
+		System.setProperty(Config.APGAS_ASYNC_FUSED, Boolean.toString(fused));
+		System.setProperty(Config.APGAS_TASK_POOL, Integer.toString(taskPool));
+		GlobalRuntime.getRuntime();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		GlobalRuntime.getRuntime().shutdown();
+	}
+
+	/**
+	 * Spawns {@link #tasks} empty tasks from a single parent.
+	 */
+	@Benchmark
+	public void flatAsync() {
+		finish(() -> {
+			for (int i = 0; i < tasks; i++) {
+				async(() -> {
+				});
+			}
+		});
+	}
+
+	/**
+	 * Recursive fork/join kernel spawning one task per call.
+	 *
+	 * @return fib(20)
+	 */
+	@Benchmark
+	public int recursiveAsync() {
+		return fib(20);
+	}
+
+	private static int fib(int n) {
+		if (n < 2) {
+			return n;
+		}
+		final int a[] = new int[2];
+		finish(() -> {
+			async(() -> a[0] = fib(n - 2));
+			a[1] = fib(n - 1);
+		});
+		return a[0] + a[1];
+	}
+}
@@ -0,0 +1,179 @@
+/*
+ *  This file is part of the X10 project (http://x10-lang.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  (C) Copyright IBM Corporation 2006-2016.
+ */
+
+package apgas;
+
+import static apgas.Constructs.async;
+import static apgas.Constructs.asyncAt;
+import static apgas.Constructs.asyncAtAll;
+import static apgas.Constructs.finish;
+import static apgas.Constructs.place;
+import static apgas.Constructs.places;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import apgas.impl.Config;
+
+/**
+ * Tests of the default finish implementation, with local task pooling and at
+ * most four distinct exceptions per finish.
+ */
+@SuppressWarnings("javadoc")
+public class DefaultFinishTest {
+
+	/**
+	 * An exception without stack trace, so that all instances with the same
+	 * message are identical.
+	 */
+	static class Failure extends RuntimeException {
+		private static final long serialVersionUID = -5036394315563720457L;
+
+		Failure(String message) {
+			super(message, null, false, false);
+		}
+	}
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		System.setProperty(Configuration.APGAS_PLACES, "4");
+		System.setProperty(Config.APGAS_TASK_POOL, "16");
+		System.setProperty(Config.APGAS_EXCEPTIONS_MAX, "4");
+		GlobalRuntime.getRuntime();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		GlobalRuntime.getRuntime().shutdown();
+	}
+
+	@Test
+	public void testManyLocalAsyncs() {
+		for (int round = 0; round < 10; round++) {
+			final AtomicInteger counter = new AtomicInteger();
+			finish(() -> {
+				for (int i = 0; i < 100000; i++) {
+					async(() -> counter.incrementAndGet());
+				}
+			});
+			assertEquals(100000, counter.get());
+		}
+	}
+
+	@Test
+	public void testNestedLocalAsyncs() {
+		for (int round = 0; round < 10; round++) {
+			assertEquals(6765, fib(20));
+		}
+	}
+
+	@Test
+	public void testLocalExceptions() {
+		final AtomicInteger counter = new AtomicInteger();
+		try {
+			finish(() -> {
+				for (int i = 0; i < 1000; i++) {
+					final int j = i;
+					async(() -> {
+						counter.incrementAndGet();
+						if (j % 10 == 0) {
+							throw new Failure("local");
+						}
+					});
+				}
+			});
+			fail();
+		} catch (final MultipleException e) {
+			assertEquals(1, e.getSuppressed().length);
+			assertEquals(100, e.getOccurrences(e.getSuppressed()[0]));
+		}
+		assertEquals(1000, counter.get());
+		// recycled tasks must still be counted correctly
+		testManyLocalAsyncs();
+	}
+
+	@Test
+	public void testRemoteIdenticalExceptions() {
+		try {
+			finish(() -> asyncAt(place(1), () -> {
+				for (int i = 0; i < 1000; i++) {
+					async(() -> {
+						throw new Failure("remote");
+					});
+				}
+			}));
+			fail();
+		} catch (final MultipleException e) {
+			assertEquals(1, e.getSuppressed().length);
+			assertEquals("remote", e.getSuppressed()[0].getMessage());
+			assertEquals(1000, e.getOccurrences(e.getSuppressed()[0]));
+			assertEquals(0, e.getOmitted());
+		}
+	}
+
+	@Test
+	public void testIdenticalExceptionsFromManyPlaces() {
+		try {
+			finish(() -> asyncAtAll(places(), () -> {
+				for (int i = 0; i < 100; i++) {
+					async(() -> {
+						throw new Failure("everywhere");
+					});
+				}
+			}));
+			fail();
+		} catch (final MultipleException e) {
+			assertEquals(1, e.getSuppressed().length);
+			assertEquals(100 * places().size(), e.getOccurrences(e.getSuppressed()[0]));
+			assertEquals(0, e.getOmitted());
+		}
+	}
+
+	@Test
+	public void testDistinctExceptionsBeyondMax() {
+		try {
+			finish(() -> asyncAtAll(places(), () -> {
+				for (int i = 0; i < 10; i++) {
+					final int j = i;
+					async(() -> {
+						throw new Failure("distinct " + j);
+					});
+				}
+			}));
+			fail();
+		} catch (final MultipleException e) {
+			// apgas.exceptions.max is 4
+			assertEquals(4, e.getSuppressed().length);
+			long total = e.getOmitted();
+			for (final Throwable t : e.getSuppressed()) {
+				total += e.getOccurrences(t);
+			}
+			assertEquals(10 * places().size(), total);
+		}
+	}
+
+	public static int fib(int n) {
+		if (n < 2) {
+			return n;
+		}
+		final int a[] = new int[2];
+		finish(() -> {
+			async(() -> a[0] = fib(n - 2));
+			a[1] = fib(n - 1);
+		});
+		return a[0] + a[1];
+	}
+}
@@ -3,6 +3,7 @@ package apgas;
 import static apgas.Constructs.async;
 import static apgas.Constructs.finish;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
 
 import java.io.ByteArrayOutputStream;
 import java.io.Serializable;
@@ -43,6 +44,8 @@ public class KryoThreadLocalTest implements Serializable {
 
 	@BeforeClass
 	public static void setupBeforClass() {
+		// before the runtime starts; Point instances are never sent to other places
+		KryoSerializer.registerAcyclicClass(Point.class);
 		System.setProperty(Configuration.APGAS_PLACES, "4");
 		// System.setProperty("apgas.serialization", "java");
 		GlobalRuntime.getRuntime();
@@ -103,4 +106,24 @@ public class KryoThreadLocalTest implements Serializable {
 		}
 
 	}
+
+	static class Point implements Serializable {
+		private static final long serialVersionUID = -5275734318930623468L;
+
+		int x;
+		int y;
+	}
+
+	@Test
+	public void testAcyclicClass() {
+		final Kryo k = KryoSerializer.getKryoInstance();
+		final Point p = new Point();
+		p.x = 1;
+		p.y = 2;
+		final Output out = new Output(256, -1);
+		k.writeClassAndObject(out, new Object[] { p, p });
+		final Object[] points = (Object[]) k.readClassAndObject(new Input(out.toBytes()));
+		assertEquals(((Point) points[1]).y, 2);
+		assertNotSame(points[0], points[1]); // references are not tracked
+	}
 }
@@ -0,0 +1,94 @@
+/*
+ *  This file is part of the X10 project (http://x10-lang.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  (C) Copyright IBM Corporation 2006-2016.
+ */
+
+package apgas.impl;
+
+import static apgas.Constructs.at;
+import static apgas.Constructs.place;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.lang.reflect.Array;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.esotericsoftware.kryo.Kryo;
+
+import apgas.Configuration;
+import apgas.GlobalRuntime;
+
+@SuppressWarnings("javadoc")
+public class ClassDictionaryTest {
+
+	static class Payload implements Serializable {
+		private static final long serialVersionUID = -2240395893725530873L;
+
+		final int value;
+
+		Payload(int value) {
+			this.value = value;
+		}
+	}
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		System.setProperty(Configuration.APGAS_PLACES, "4");
+		System.setProperty(Config.APGAS_CLASS_DICTIONARY, "true");
+		GlobalRuntime.getRuntime();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		GlobalRuntime.getRuntime().shutdown();
+	}
+
+	@Test
+	public void testAnnouncedClassDecodesAtAnotherPlace() throws InterruptedException {
+		final String name = Payload.class.getName();
+		boolean resolved = false;
+		for (int i = 0; i < 100 && !resolved; i++) {
+			final int v = i;
+			assertEquals(v, at(place(1), () -> {
+				final Payload payload = new Payload(v);
+				return at(place(2), () -> payload.value);
+			}).intValue());
+			resolved = at(place(2), () -> ClassDictionary.lookup(name) != null);
+			Thread.sleep(10);
+		}
+		assertTrue(resolved);
+		// the class is now sent as an ID only
+		assertEquals(42, at(place(1), () -> {
+			final Payload payload = new Payload(42);
+			return at(place(2), () -> payload.value);
+		}).intValue());
+	}
+
+	@Test
+	public void testRegistrationsBelowOffset() {
+		final ClassDictionary.Resolver resolver = new ClassDictionary.Resolver();
+		KryoSerializer.getKryoInstance(resolver);
+		resolver.check();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testRegistrationsBeyondOffset() {
+		final ClassDictionary.Resolver resolver = new ClassDictionary.Resolver();
+		final Kryo kryo = KryoSerializer.getKryoInstance(resolver);
+		for (int dimensions = 1; dimensions <= ClassDictionary.OFFSET / 2; dimensions++) {
+			kryo.register(Array.newInstance(int.class, new int[dimensions]).getClass());
+			kryo.register(Array.newInstance(long.class, new int[dimensions]).getClass());
+		}
+		resolver.check();
+	}
+}
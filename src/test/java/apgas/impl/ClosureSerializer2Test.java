@@ -0,0 +1,104 @@
+/*
+ *  This file is part of the X10 project (http://x10-lang.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  (C) Copyright IBM Corporation 2006-2016.
+ */
+
+package apgas.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
+
+import org.junit.Test;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Tests of the factory cache of {@link ClosureSerializer2}.
+ * <p>
+ * Each lambda is deserialized several times, so that later copies are created
+ * by the cached factory if any.
+ */
+@SuppressWarnings("javadoc")
+public class ClosureSerializer2Test {
+
+	interface Fn extends Serializable {
+		int apply(int x);
+	}
+
+	interface Marker {
+	}
+
+	final Kryo kryo = KryoSerializer.getKryoInstance();
+
+	@SuppressWarnings("unchecked")
+	<T> T copy(T object) {
+		final Output output = new Output(256, -1);
+		kryo.writeClassAndObject(output, object);
+		return (T) kryo.readClassAndObject(new Input(output.toBytes()));
+	}
+
+	static Fn adder(int n) {
+		return x -> x + n;
+	}
+
+	static Fn indexer(int[] a) {
+		return i -> a[i];
+	}
+
+	@Test
+	public void testCapturedValues() {
+		final Fn first = copy(adder(10));
+		final Fn second = copy(adder(20));
+		final Fn third = copy(adder(30));
+		assertEquals(11, first.apply(1));
+		assertEquals(21, second.apply(1));
+		assertEquals(31, third.apply(1));
+		assertEquals(11, first.apply(1));
+	}
+
+	@Test
+	public void testCapturedArrays() {
+		final int[] a = { 1, 2 };
+		final Fn first = copy(indexer(a));
+		a[0] = 3;
+		final Fn second = copy(indexer(a));
+		a[0] = 5;
+		final Fn third = copy(indexer(a));
+		assertEquals(1, first.apply(0));
+		assertEquals(3, second.apply(0));
+		assertEquals(5, third.apply(0));
+	}
+
+	@Test
+	public void testMethodReferences() {
+		for (int i = 0; i < 3; i++) {
+			final Fn abs = copy((Fn) Math::abs);
+			assertEquals(i, abs.apply(-i));
+			final String s = "abc" + i;
+			final Fn charAt = copy((Fn) s::charAt);
+			assertEquals('0' + i, charAt.apply(3));
+		}
+	}
+
+	@Test
+	public void testUncacheable() {
+		// a factory would lose the marker interface, so every copy must be
+		// resolved through $deserializeLambda$
+		for (int i = 0; i < 3; i++) {
+			final int n = i;
+			final Fn marked = copy((Fn & Marker) x -> x * n);
+			assertTrue(marked instanceof Marker);
+			assertEquals(2 * i, marked.apply(2));
+		}
+	}
+}
@@ -0,0 +1,111 @@
+/*
+ *  This file is part of the X10 project (http://x10-lang.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  (C) Copyright IBM Corporation 2006-2016.
+ */
+
+package apgas.impl;
+
+import static apgas.Constructs.asyncAt;
+import static apgas.Constructs.finish;
+import static apgas.Constructs.place;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import apgas.Configuration;
+import apgas.GlobalRuntime;
+
+/**
+ * Tests of {@link ImmediateExecutor} with two places of two worker threads.
+ */
+@SuppressWarnings("javadoc")
+public class ImmediateExecutorTest {
+
+	static final int THREADS = 2;
+
+	/**
+	 * Counted down by the tasks blocking the workers of the current place
+	 */
+	static final CountDownLatch blocked = new CountDownLatch(THREADS);
+
+	/**
+	 * Releases the tasks blocking the workers of the current place
+	 */
+	static final CountDownLatch release = new CountDownLatch(1);
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		System.setProperty(Configuration.APGAS_PLACES, "2");
+		System.setProperty(Configuration.APGAS_THREADS, Integer.toString(THREADS));
+		GlobalRuntime.getRuntime();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		GlobalRuntime.getRuntime().shutdown();
+	}
+
+	static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (final InterruptedException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Test
+	public void testOverBudget() {
+		// a budget of 1ms, handlers run on the calling thread
+		final ImmediateExecutor executor = new ImmediateExecutor(0, 1000);
+		executor.execute(() -> {
+		});
+		assertEquals(1, executor.completed());
+		assertEquals(0, executor.overBudget());
+
+		executor.execute(() -> sleep(5));
+		assertEquals(1, executor.overBudget());
+		assertTrue(executor.maxTime() >= TimeUnit.MILLISECONDS.toNanos(5));
+
+		// every overrun is counted, not only the reported ones
+		executor.execute(() -> sleep(10));
+		assertEquals(2, executor.overBudget());
+		assertTrue(executor.maxTime() >= TimeUnit.MILLISECONDS.toNanos(10));
+		assertEquals(3, executor.completed());
+	}
+
+	@Test
+	public void testBlockedWorkers() {
+		// the immediate task is the only one able to release the workers of
+		// place 1, which fails if it waits for a worker
+		finish(() -> {
+			for (int i = 0; i < THREADS; i++) {
+				asyncAt(place(1), () -> {
+					blocked.countDown();
+					if (!release.await(10, TimeUnit.SECONDS)) {
+						throw new IllegalStateException("immediate task starved");
+					}
+				});
+			}
+			GlobalRuntimeImpl.getRuntime().immediateAsyncAt(place(1), () -> {
+				try {
+					if (blocked.await(10, TimeUnit.SECONDS)) {
+						release.countDown();
+					}
+				} catch (final InterruptedException e) {
+				}
+			});
+		});
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ *  This file is part of the X10 project (http://x10-lang.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  (C) Copyright IBM Corporation 2006-2016.
+ */
+
+package apgas.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import apgas.Configuration;
+import apgas.GlobalRuntime;
+
+/**
+ * Tests of {@link Parallelism} with places of at most eight worker threads.
+ */
+@SuppressWarnings("javadoc")
+public class ParallelismTest {
+
+	static final int MAX_THREADS = 8;
+
+	/** Stops the spinning tasks */
+	static volatile boolean done;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		System.setProperty(Configuration.APGAS_PLACES, "2");
+		System.setProperty(Configuration.APGAS_THREADS, "2");
+		System.setProperty(Config.APGAS_MAX_THREADS, Integer.toString(MAX_THREADS));
+		GlobalRuntime.getRuntime();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		GlobalRuntime.getRuntime().shutdown();
+	}
+
+	@Test
+	public void testSetParallelism() {
+		final GlobalRuntime runtime = GlobalRuntime.getRuntime();
+		assertEquals(2, runtime.getParallelism());
+		assertEquals(3, runtime.setParallelism(3));
+		assertEquals(3, runtime.getParallelism());
+		assertEquals(1, runtime.setParallelism(0));
+		assertEquals(1, runtime.getParallelism());
+		assertEquals(MAX_THREADS, runtime.setParallelism(MAX_THREADS + 1));
+		assertEquals(MAX_THREADS, runtime.getParallelism());
+		assertEquals(2, runtime.setParallelism(2));
+	}
+
+	/**
+	 * Returns true if the pool has neither queued tasks nor running workers. The
+	 * quiescence methods of the pool do not account for the offset of the
+	 * active count.
+	 */
+	static boolean idle(ForkJoinPool pool) {
+		return pool.getQueuedTaskCount() + pool.getQueuedSubmissionCount() == 0 && pool.getRunningThreadCount() == 0;
+	}
+
+	@Test
+	public void testStep() throws InterruptedException {
+		final ForkJoinPool pool = new ForkJoinPool(4);
+		final Parallelism parallelism = new Parallelism(pool, 4, 1);
+		try {
+			// a single worker is active and tasks are queued
+			for (int i = 0; i < 8; i++) {
+				pool.execute(() -> {
+					while (!done) {
+					}
+				});
+			}
+			for (int i = 0; i < 100 && pool.getRunningThreadCount() == 0; i++) {
+				Thread.sleep(10);
+			}
+			parallelism.step(1, 4);
+			assertEquals(2, parallelism.get());
+			// the upper bound is enforced
+			parallelism.step(1, 2);
+			assertEquals(2, parallelism.get());
+
+			// the pool is idle
+			done = true;
+			for (int i = 0; i < 1000 && !idle(pool); i++) {
+				Thread.sleep(10);
+			}
+			assertTrue(idle(pool));
+			parallelism.step(2, 4);
+			assertEquals(2, parallelism.get());
+			parallelism.step(1, 4);
+			assertEquals(1, parallelism.get());
+		} finally {
+			done = true;
+			pool.shutdownNow();
+		}
+	}
+}
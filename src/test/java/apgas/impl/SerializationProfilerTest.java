@@ -0,0 +1,83 @@
+/*
+ *  This file is part of the X10 project (http://x10-lang.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  (C) Copyright IBM Corporation 2006-2016.
+ */
+
+package apgas.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import apgas.SerializableJob;
+
+/**
+ * Tests of {@link SerializationProfiler} sampling one in two messages.
+ */
+@SuppressWarnings("javadoc")
+public class SerializationProfilerTest {
+
+	static SerializationProfiler profiler;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		SerializationProfiler.start(2, 0);
+		profiler = SerializationProfiler.get();
+	}
+
+	@Before
+	public void setUp() {
+		profiler.reset();
+	}
+
+	static byte[] write(Kryo kryo, Object object) {
+		final Output output = new Output(1024, -1);
+		kryo.writeClassAndObject(output, object);
+		return output.toBytes();
+	}
+
+	@Test
+	public void testClosureAttribution() {
+		final long[] data = new long[100000];
+		// large values take at least 8 bytes with any encoding
+		Arrays.fill(data, Long.MAX_VALUE);
+		final SerializableJob job = () -> data[0]++;
+		final UncountedTask task = new UncountedTask(job);
+		final Kryo kryo = KryoSerializer.getKryoInstance();
+
+		// the first message is not sampled
+		write(kryo, task);
+		assertEquals(0, profiler.getSampledWrites());
+		assertEquals(0, profiler.bytesWritten(job.getClass()));
+
+		final byte[] bytes = write(kryo, task);
+		assertEquals(1, profiler.getSampledWrites());
+		// the message is attributed to the lambda, not to the task
+		assertEquals(bytes.length, profiler.bytesWritten(job.getClass()));
+		assertEquals(0, profiler.bytesWritten(UncountedTask.class));
+		// and so is the captured array
+		assertTrue(profiler.bytesWritten(job.getClass(), long[].class) >= 8L * data.length);
+		assertEquals(0, profiler.bytesWritten(UncountedTask.class, long[].class));
+
+		kryo.readClassAndObject(new Input(bytes));
+		assertEquals(0, profiler.getSampledReads());
+		kryo.readClassAndObject(new Input(bytes));
+		assertEquals(1, profiler.getSampledReads());
+		assertEquals(0, profiler.bytesRead(UncountedTask.class));
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ *  This file is part of the X10 project (http://x10-lang.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  (C) Copyright IBM Corporation 2006-2016.
+ */
+
+package apgas.impl;
+
+import static apgas.Constructs.asyncAt;
+import static apgas.Constructs.at;
+import static apgas.Constructs.finish;
+import static apgas.Constructs.place;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.Serializable;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoSerializable;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import apgas.Configuration;
+import apgas.GlobalRuntime;
+import apgas.MultipleException;
+
+/**
+ * Tests of the decoding of {@link TaskFrame} instances.
+ */
+@SuppressWarnings("javadoc")
+public class TaskFrameTest {
+
+	/**
+	 * Records whether it was decoded by a worker thread.
+	 */
+	static class Probe implements Serializable, KryoSerializable {
+		private static final long serialVersionUID = 2968613305251541725L;
+
+		boolean decodedOnWorker;
+
+		@Override
+		public void write(Kryo kryo, Output output) {
+		}
+
+		@Override
+		public void read(Kryo kryo, Input input) {
+			decodedOnWorker = Thread.currentThread() instanceof Worker;
+		}
+	}
+
+	/**
+	 * Fails to decode.
+	 */
+	static class Poison implements Serializable, KryoSerializable {
+		private static final long serialVersionUID = -5101418757360390716L;
+
+		@Override
+		public void write(Kryo kryo, Output output) {
+		}
+
+		@Override
+		public void read(Kryo kryo, Input input) {
+			throw new IllegalStateException("poison");
+		}
+	}
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		System.setProperty(Configuration.APGAS_PLACES, "2");
+		GlobalRuntime.getRuntime();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		GlobalRuntime.getRuntime().shutdown();
+	}
+
+	static boolean mentions(Throwable t, String text) {
+		for (; t != null; t = t.getCause()) {
+			if (String.valueOf(t.getMessage()).contains(text)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Test
+	public void testDecodedOnWorker() {
+		final Probe probe = new Probe();
+		// the probe is not decoded by the transport thread receiving the frame
+		assertTrue(at(place(1), () -> probe.decodedOnWorker));
+	}
+
+	@Test
+	public void testUndecodableClosure() {
+		final Poison poison = new Poison();
+		try {
+			finish(() -> asyncAt(place(1), () -> poison.hashCode()));
+			fail();
+		} catch (final MultipleException e) {
+			assertEquals(1, e.getSuppressed().length);
+			assertTrue(mentions(e.getSuppressed()[0], "poison"));
+		}
+		// the place is still usable
+		assertEquals(1, at(place(1), () -> 1).intValue());
+	}
+}
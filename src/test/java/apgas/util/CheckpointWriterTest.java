@@ -0,0 +1,284 @@
+/*
+ *  This file is part of the X10 project (http://x10-lang.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  (C) Copyright IBM Corporation 2006-2016.
+ */
+
+package apgas.util;
+
+import static apgas.Constructs.asyncAtAll;
+import static apgas.Constructs.at;
+import static apgas.Constructs.finish;
+import static apgas.Constructs.here;
+import static apgas.Constructs.place;
+import static apgas.Constructs.places;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import apgas.Configuration;
+import apgas.GlobalRuntime;
+import apgas.Place;
+
+/**
+ * Tests of {@link CheckpointWriter} with states of several chunks.
+ */
+@SuppressWarnings("javadoc")
+public class CheckpointWriterTest {
+
+	/** The length of a state: four full chunks and a partial one */
+	static final int LENGTH = 4 * CheckpointWriter.CHUNK + 10;
+
+	/** The size of an uncompressed chunk in bytes */
+	static final long CHUNK_BYTES = 8L * CheckpointWriter.CHUNK;
+
+	static class Counter extends PlaceLocalObject implements Snapshottable {
+		private static final long serialVersionUID = 4174338522406138402L;
+
+		long[] values = new long[LENGTH];
+
+		@Override
+		public Serializable snapshot() {
+			return values;
+		}
+
+		@Override
+		public void restore(Serializable state) {
+			values = ((long[]) state).clone();
+		}
+	}
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	String dir;
+
+	Counter counter;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		System.setProperty(Configuration.APGAS_PLACES, "4");
+		GlobalRuntime.getRuntime();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		GlobalRuntime.getRuntime().shutdown();
+	}
+
+	@Before
+	public void setUp() throws IOException {
+		dir = folder.newFolder().getPath();
+		counter = PlaceLocalObject.make(places(), () -> new Counter());
+	}
+
+	/**
+	 * Returns a value that does not compress well, specific to an index, an
+	 * epoch and a place.
+	 */
+	static long value(int i, long e, int p) {
+		long x = (i + 1) * 0x9E3779B97F4A7C15L ^ e << 48 ^ p;
+		x ^= x >>> 29;
+		x *= 0xBF58476D1CE4E5B9L;
+		return x ^ x >>> 32;
+	}
+
+	/**
+	 * Sets all the elements of the counter at every place for an epoch.
+	 */
+	void fill(long e) {
+		final Counter c = counter;
+		finish(() -> asyncAtAll(places(), () -> {
+			for (int i = 0; i < LENGTH; i++) {
+				c.values[i] = value(i, e, here().id);
+			}
+		}));
+	}
+
+	/**
+	 * Sets all the elements of the counter at every place to -1.
+	 */
+	void clobber() {
+		final Counter c = counter;
+		finish(() -> asyncAtAll(places(), () -> Arrays.fill(c.values, -1)));
+	}
+
+	/**
+	 * Checks the counter at every place against an epoch, except for the
+	 * elements set by {@link #touch(int, long)} if any.
+	 */
+	void check(long e, int touched, long t) {
+		final Counter c = counter;
+		for (final Place p : places()) {
+			assertTrue(at(p, () -> {
+				for (int i = 0; i < LENGTH; i++) {
+					if (c.values[i] != (i == touched ? t : value(i, e, here().id))) {
+						return false;
+					}
+				}
+				return true;
+			}));
+		}
+	}
+
+	void check(long e) {
+		check(e, -1, 0);
+	}
+
+	/**
+	 * Sets one element of the counter at every place.
+	 */
+	void touch(int i, long t) {
+		final Counter c = counter;
+		finish(() -> asyncAtAll(places(), () -> c.values[i] = t));
+	}
+
+	Path path(int index, String file) {
+		return Paths.get(dir, "place-" + index, file);
+	}
+
+	CheckpointWriter writer() {
+		final CheckpointWriter writer = new CheckpointWriter(places(), dir);
+		writer.register("counter", counter);
+		return writer;
+	}
+
+	@Test
+	public void testRestart() {
+		final CheckpointWriter writer = writer();
+		for (long e = 1; e <= 2; e++) {
+			fill(e);
+			assertEquals(e, writer.checkpoint());
+		}
+		clobber();
+		writer.close();
+		final CheckpointWriter restarted = writer();
+		assertEquals(2, restarted.restore());
+		check(2);
+		restarted.close();
+	}
+
+	@Test
+	public void testIncremental() throws IOException {
+		final CheckpointWriter writer = writer();
+		fill(1);
+		writer.checkpoint();
+		writer.await();
+		final long full = Files.size(path(0, "data.0"));
+		assertTrue(full > 4 * CHUNK_BYTES);
+
+		// a single modified chunk is appended
+		final int i = 2 * CheckpointWriter.CHUNK + 7;
+		touch(i, 42);
+		writer.checkpoint();
+		writer.await();
+		final long grown = Files.size(path(0, "data.0")) - full;
+		assertTrue(grown > CHUNK_BYTES / 2);
+		assertTrue(grown < 2 * CHUNK_BYTES);
+
+		// an unmodified state appends nothing
+		writer.checkpoint();
+		writer.await();
+		assertEquals(full + grown, Files.size(path(0, "data.0")));
+
+		clobber();
+		assertEquals(3, writer.restore());
+		check(1, i, 42);
+		writer.close();
+	}
+
+	@Test
+	public void testRotation() throws IOException {
+		final CheckpointWriter writer = writer();
+		// every checkpoint rewrites all the chunks, so the data file is
+		// rewritten once less than half of it is in use
+		for (long e = 1; e <= 5; e++) {
+			fill(e);
+			writer.checkpoint();
+			writer.await();
+			assertTrue(Files.exists(path(0, "data." + (e < 4 ? 0 : 1))));
+		}
+		for (int index = 0; index < places().size(); index++) {
+			assertFalse(Files.exists(path(index, "data.0")));
+			assertTrue(Files.exists(path(index, "data.1")));
+			assertTrue(Files.exists(path(index, "manifest.0")));
+			assertTrue(Files.exists(path(index, "manifest.1")));
+		}
+		clobber();
+		assertEquals(5, writer.restore());
+		check(5);
+		writer.close();
+	}
+
+	@Test
+	public void testCorruptedManifest() throws IOException {
+		checkFallback(place(1), file -> {
+			final byte[] bytes = Files.readAllBytes(file);
+			// keep the magic number, break the CRC
+			bytes[bytes.length / 2] ^= 1;
+			Files.write(file, bytes);
+		});
+	}
+
+	@Test
+	public void testMissingManifest() throws IOException {
+		checkFallback(place(2), Files::delete);
+	}
+
+	interface Damage {
+		void apply(Path file) throws IOException;
+	}
+
+	/**
+	 * Damages the last manifest of a place and checks that the previous
+	 * checkpoint is restored everywhere and that the newer checkpoint is
+	 * discarded at the other places.
+	 */
+	void checkFallback(Place damaged, Damage damage) throws IOException {
+		final CheckpointWriter writer = writer();
+		for (long e = 1; e <= 2; e++) {
+			fill(e);
+			writer.checkpoint();
+		}
+		writer.close();
+		damage.apply(path(damaged.id, "manifest.0"));
+
+		clobber();
+		final CheckpointWriter restarted = writer();
+		assertEquals(1, restarted.restore());
+		check(1);
+		for (int index = 0; index < places().size(); index++) {
+			if (index != damaged.id) {
+				assertFalse(Files.exists(path(index, "manifest.0")));
+			}
+			assertTrue(Files.exists(path(index, "manifest.1")));
+		}
+
+		// the epoch of the discarded checkpoint is reused
+		fill(3);
+		assertEquals(2, restarted.checkpoint());
+		clobber();
+		assertEquals(2, restarted.restore());
+		check(3);
+		restarted.close();
+	}
+}
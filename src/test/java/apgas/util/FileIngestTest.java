@@ -0,0 +1,199 @@
+/*
+ *  This file is part of the X10 project (http://x10-lang.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  (C) Copyright IBM Corporation 2006-2016.
+ */
+
+package apgas.util;
+
+import static apgas.Constructs.at;
+import static apgas.Constructs.place;
+import static apgas.Constructs.places;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import apgas.Configuration;
+import apgas.GlobalRuntime;
+import apgas.Place;
+
+/**
+ * Tests of {@link FileIngest} with four places of four worker threads.
+ */
+@SuppressWarnings("javadoc")
+public class FileIngestTest {
+
+	/**
+	 * Counted down by the first two pieces parsed at the current place
+	 */
+	static final CountDownLatch started = new CountDownLatch(2);
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		System.setProperty(Configuration.APGAS_PLACES, "4");
+		System.setProperty(Configuration.APGAS_THREADS, "4");
+		GlobalRuntime.getRuntime();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		GlobalRuntime.getRuntime().shutdown();
+	}
+
+	/**
+	 * Returns the local chunk of the array at the specified place.
+	 */
+	static long[] chunk(PlaceLocalLongArray array, Place p) {
+		return at(p, () -> {
+			final long[] values = new long[array.array.length];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = array.get(i);
+			}
+			return values;
+		});
+	}
+
+	/**
+	 * Returns the chunks of the array, in place order.
+	 */
+	static List<Long> values(PlaceLocalLongArray array) {
+		final List<Long> values = new ArrayList<>();
+		for (final Place p : places()) {
+			for (final long value : chunk(array, p)) {
+				values.add(value);
+			}
+		}
+		return values;
+	}
+
+	static List<Long> range(long from, long to) {
+		final List<Long> values = new ArrayList<>();
+		for (long i = from; i < to; i++) {
+			values.add(i);
+		}
+		return values;
+	}
+
+	String write(String text) throws IOException {
+		final File file = folder.newFile();
+		Files.write(file.toPath(), text.getBytes());
+		return file.getPath();
+	}
+
+	@Test
+	public void testLines() throws IOException {
+		final StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			text.append(i).append(i % 3 == 0 ? "\r\n" : "\n");
+			if (i % 100 == 0) {
+				text.append('\n');
+			}
+		}
+		final PlaceLocalLongArray array = FileIngest.readLongs(places(), Arrays.asList(write(text.toString())));
+		assertEquals(range(0, 1000), values(array));
+	}
+
+	@Test
+	public void testLineSpanningPlaces() throws IOException {
+		final StringBuilder text = new StringBuilder("7\n");
+		for (int i = 0; i < 200; i++) {
+			text.append('0');
+		}
+		text.append("42\n9");
+		final PlaceLocalLongArray array = FileIngest.readLongs(places(), Arrays.asList(write(text.toString())));
+		// the long line starts in the range of place 0 and ends in the range
+		// of the last place
+		assertArrayEquals(new long[] { 7, 42 }, chunk(array, place(0)));
+		for (int i = 1; i < places().size() - 1; i++) {
+			assertEquals(0, chunk(array, place(i)).length);
+		}
+		assertArrayEquals(new long[] { 9 }, chunk(array, place(places().size() - 1)));
+	}
+
+	@Test
+	public void testFixedSizeRecords() throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(8 * 1000 + 3);
+		for (int i = 0; i < 1000; i++) {
+			buffer.putLong(-i);
+		}
+		final File file = folder.newFile();
+		Files.write(file.toPath(), buffer.array());
+		final PlaceLocalLongArray array = FileIngest.readLongs(places(), Arrays.asList(file.getPath()), 8,
+				(b, offset, length) -> -b.getLong(offset));
+		// the incomplete record at the end of the file is ignored
+		assertEquals(range(0, 1000), values(array));
+	}
+
+	@Test
+	public void testMultipleFiles() throws IOException {
+		final List<String> files = new ArrayList<>();
+		for (int f = 0; f < 3; f++) {
+			final StringBuilder text = new StringBuilder();
+			for (int i = 100 * f; i < 100 * (f + 1); i++) {
+				text.append(i).append('\n');
+			}
+			// the last line of a file ends at the end of the file
+			text.setLength(text.length() - 1);
+			files.add(write(text.toString()));
+		}
+		final PlaceLocalLongArray array = FileIngest.readLongs(places(), files);
+		assertEquals(range(0, 300), values(array));
+	}
+
+	@Test
+	public void testPiecesInParallel() throws IOException {
+		// 8 pieces of 4096 bytes per place
+		final int n = 8 * 512 * places().size();
+		final ByteBuffer buffer = ByteBuffer.allocate(8 * n);
+		for (int i = 0; i < n; i++) {
+			buffer.putLong(i);
+		}
+		final File file = folder.newFile();
+		Files.write(file.toPath(), buffer.array());
+		final PlaceLocalLongArray array;
+		FileIngest.split = 4096;
+		try {
+			// the first record of a piece waits for another piece to start,
+			// which never happens if the pieces are parsed one after another
+			array = FileIngest.readLongs(places(), Arrays.asList(file.getPath()), 8, (b, offset, length) -> {
+				if (offset == 0 && started.getCount() > 0) {
+					started.countDown();
+					try {
+						if (!started.await(10, TimeUnit.SECONDS)) {
+							throw new IllegalStateException("pieces parsed sequentially");
+						}
+					} catch (final InterruptedException e) {
+						throw new IllegalStateException(e);
+					}
+				}
+				return b.getLong(offset);
+			});
+		} finally {
+			FileIngest.split = FileIngest.SPLIT;
+		}
+		assertEquals(range(0, n), values(array));
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ *  This file is part of the X10 project (http://x10-lang.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  (C) Copyright IBM Corporation 2006-2016.
+ */
+
+package apgas.util;
+
+import static apgas.Constructs.asyncAt;
+import static apgas.Constructs.at;
+import static apgas.Constructs.finish;
+import static apgas.Constructs.place;
+import static apgas.Constructs.places;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.Collections;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import apgas.Configuration;
+import apgas.GlobalRuntime;
+import apgas.Place;
+
+/**
+ * Tests of {@link PlaceLocalMappedIntArray}.
+ */
+@SuppressWarnings("javadoc")
+public class PlaceLocalMappedIntArrayTest {
+
+	/** The first index of the second segment */
+	static final long BOUNDARY = 1L << 28;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		System.setProperty(Configuration.APGAS_PLACES, "4");
+		GlobalRuntime.getRuntime();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		GlobalRuntime.getRuntime().shutdown();
+	}
+
+	@Test
+	public void testSegmentBoundary() throws Exception {
+		final String directory = folder.getRoot().getPath();
+		final Place p = place(1);
+		final long n = BOUNDARY + 1024;
+		final int[] expected = new int[1024];
+		for (int i = 0; i < expected.length; i++) {
+			expected[i] = i + 1;
+		}
+
+		final PlaceLocalMappedIntArray written = PlaceLocalMappedIntArray
+				.make(Collections.singletonList(p), directory, "array", n, true);
+		at(p, () -> {
+			assertEquals(n, written.length());
+			written.copyFrom(expected, 0, BOUNDARY - 512, expected.length);
+			written.set(n - 1, -1);
+			written.close();
+		});
+		assertEquals(4 * n, new File(directory, "array." + p.id).length());
+
+		final PlaceLocalMappedIntArray read = PlaceLocalMappedIntArray
+				.make(Collections.singletonList(p), directory, "array", n, true);
+		at(p, () -> {
+			final int[] actual = new int[expected.length];
+			read.copyTo(BOUNDARY - 512, actual, 0, actual.length);
+			assertArrayEquals(expected, actual);
+			assertEquals(512, read.get(BOUNDARY - 1));
+			assertEquals(513, read.get(BOUNDARY));
+			assertEquals(0, read.get(0));
+			assertEquals(-1, read.get(n - 1));
+			assertEquals(512, read.view(BOUNDARY - 1, 1).get(0));
+			assertEquals(513, read.view(BOUNDARY, 1).get(0));
+			try {
+				read.view(BOUNDARY - 1, 2);
+				fail();
+			} catch (final IllegalArgumentException e) {
+			}
+			try {
+				read.copyTo(n - 1, actual, 0, 2);
+				fail();
+			} catch (final IndexOutOfBoundsException e) {
+			}
+			read.close();
+		});
+	}
+
+	@Test
+	public void testZeroLength() {
+		final String directory = folder.getRoot().getPath();
+		final PlaceLocalMappedIntArray array = PlaceLocalMappedIntArray
+				.make(places(), directory, "empty", 0, false);
+		finish(() -> {
+			for (final Place p : places()) {
+				asyncAt(p, () -> {
+					assertEquals(0, array.length());
+					assertEquals(0, array.view(0, 0).remaining());
+					array.copyTo(0, new int[0], 0, 0);
+					array.copyFrom(new int[0], 0, 0, 0);
+					try {
+						array.view(1, 0);
+						fail();
+					} catch (final IndexOutOfBoundsException e) {
+					}
+					try {
+						array.copyTo(0, new int[1], 0, 1);
+						fail();
+					} catch (final IndexOutOfBoundsException e) {
+					}
+					array.force();
+					array.close();
+				});
+			}
+		});
+		for (final Place p : places()) {
+			assertFalse(new File(directory, "empty." + p.id).exists());
+		}
+	}
+}
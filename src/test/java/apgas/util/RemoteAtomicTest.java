@@ -0,0 +1,135 @@
+/*
+ *  This file is part of the X10 project (http://x10-lang.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  (C) Copyright IBM Corporation 2006-2016.
+ */
+
+package apgas.util;
+
+import static apgas.Constructs.at;
+import static apgas.Constructs.here;
+import static apgas.Constructs.place;
+import static apgas.Constructs.places;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import apgas.Configuration;
+import apgas.DeadPlaceException;
+import apgas.GlobalRuntime;
+import apgas.Place;
+import apgas.impl.Config;
+import apgas.impl.GlobalRuntimeImpl;
+
+/**
+ * Tests of {@link RemoteAtomic} with three places of two immediate handler
+ * threads.
+ */
+@SuppressWarnings("javadoc")
+public class RemoteAtomicTest {
+
+	static final int HANDLERS = 2;
+
+	/**
+	 * Releases the immediate handlers of the current place
+	 */
+	static final CountDownLatch release = new CountDownLatch(1);
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		System.setProperty(Configuration.APGAS_PLACES, "3");
+		System.setProperty(Config.APGAS_IMMEDIATE_THREADS, Integer.toString(HANDLERS));
+		GlobalRuntime.getRuntime();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		GlobalRuntime.getRuntime().shutdown();
+	}
+
+	static int value(PlaceLocalIntArray array, Place p) {
+		return at(p, () -> array.get(0));
+	}
+
+	static int apply(PlaceLocalIntArray array, Place p, AtomicOp op, int operand) throws Exception {
+		return array.getAndApply(p, 0, op, operand).get();
+	}
+
+	@Test
+	public void testIntOperations() throws Exception {
+		final PlaceLocalIntArray array = PlaceLocalIntArray.make(places(), 1);
+		final Place p = place(1);
+
+		// additions wrap around
+		assertEquals(0, apply(array, p, AtomicOp.SET, Integer.MAX_VALUE));
+		assertEquals(Integer.MAX_VALUE, apply(array, p, AtomicOp.ADD, 1));
+		assertEquals(Integer.MIN_VALUE, value(array, p));
+
+		// comparisons are signed
+		assertEquals(Integer.MIN_VALUE, apply(array, p, AtomicOp.MAX, -1));
+		assertEquals(-1, apply(array, p, AtomicOp.MIN, 5));
+		assertEquals(-1, apply(array, p, AtomicOp.MIN, -7));
+		assertEquals(-7, value(array, p));
+
+		// bitwise operations keep the upper bit of the element
+		assertEquals(-7, apply(array, p, AtomicOp.SET, 0xF0F0F0F0));
+		assertEquals(0xF0F0F0F0, apply(array, p, AtomicOp.AND, 0xFF00FF00));
+		assertEquals(0xF000F000, apply(array, p, AtomicOp.OR, 0x0F000000));
+		assertEquals(0xFF00F000, apply(array, p, AtomicOp.XOR, -1));
+		assertEquals(0x00FF0FFF, value(array, p));
+
+		assertTrue(array.compareAndSet(p, 0, 0x00FF0FFF, -2).get());
+		assertFalse(array.compareAndSet(p, 0, 0x00FF0FFF, 0).get());
+		assertEquals(-2, value(array, p));
+		// the other places are not affected
+		assertEquals(0, value(array, place(2)));
+	}
+
+	@Test
+	public void testPurge() throws Exception {
+		final PlaceLocalIntArray array = PlaceLocalIntArray.make(places(), 2);
+		// occupy the immediate handlers of this place so that replies wait
+		for (int i = 0; i < HANDLERS; i++) {
+			GlobalRuntimeImpl.getRuntime().immediateAsyncAt(here(), () -> {
+				try {
+					release.await();
+				} catch (final InterruptedException e) {
+				}
+			});
+		}
+		final CompletableFuture<Integer> dead;
+		final CompletableFuture<Integer> live;
+		try {
+			dead = array.getAndApply(place(1), 0, AtomicOp.ADD, 1);
+			live = array.getAndApply(place(2), 0, AtomicOp.ADD, 1);
+			RemoteAtomic.purge(1);
+			assertTrue(dead.isCompletedExceptionally());
+			assertFalse(live.isDone());
+		} finally {
+			release.countDown();
+		}
+		try {
+			dead.get();
+			fail();
+		} catch (final ExecutionException e) {
+			assertTrue(e.getCause() instanceof DeadPlaceException);
+		}
+		assertEquals(0, live.get().intValue());
+		// later requests to the purged place are unaffected
+		assertEquals(0, array.getAndApply(place(1), 1, AtomicOp.SET, 5).get().intValue());
+	}
+}
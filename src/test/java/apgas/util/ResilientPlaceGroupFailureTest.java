@@ -0,0 +1,102 @@
+/*
+ *  This file is part of the X10 project (http://x10-lang.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  (C) Copyright IBM Corporation 2006-2016.
+ */
+
+package apgas.util;
+
+import static apgas.Constructs.at;
+import static apgas.Constructs.place;
+import static apgas.Constructs.places;
+import static apgas.Constructs.uncountedAsyncAt;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import apgas.Configuration;
+import apgas.GlobalRuntime;
+import apgas.Place;
+import apgas.impl.GlobalRuntimeImpl;
+
+/**
+ * Tests of the recovery of a {@link ResilientPlaceGroup} of two places with two
+ * spare places in resilient mode.
+ */
+@SuppressWarnings("javadoc")
+public class ResilientPlaceGroupFailureTest {
+
+	/** Set by the warm-up job at the place running it */
+	static volatile boolean warm;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		System.setProperty(Configuration.APGAS_PLACES, "4");
+		System.setProperty(Configuration.APGAS_RESILIENT, "true");
+		GlobalRuntime.getRuntime();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		GlobalRuntime.getRuntime().shutdown();
+	}
+
+	/**
+	 * Waits up to 30s for a condition to hold.
+	 */
+	static void await(BooleanSupplier condition) throws InterruptedException {
+		for (int i = 0; i < 300 && !condition.getAsBoolean(); i++) {
+			Thread.sleep(100);
+		}
+		assertTrue(condition.getAsBoolean());
+	}
+
+	@Test
+	public void testFailure() throws InterruptedException {
+		assertTrue(GlobalRuntimeImpl.getRuntime().canLaunchPlaces());
+		final ResilientPlaceGroup group = new ResilientPlaceGroup(2, 2, () -> warm = true);
+		assertEquals(Arrays.asList(place(2), place(3)), group.spares());
+
+		final Place victim = group.get(1);
+		uncountedAsyncAt(victim, () -> Runtime.getRuntime().halt(1));
+		await(() -> !places().contains(victim));
+
+		// the first spare takes the index of the dead place
+		group.fix();
+		assertEquals(place(2), group.get(1));
+		assertEquals(1, group.indexOf(place(2)));
+		assertEquals(-1, group.indexOf(victim));
+		assertFalse(group.contains(victim));
+		assertEquals(Arrays.asList(place(0), place(2)), group.asList());
+		assertTrue(at(place(2), () -> warm));
+		assertEquals(1, group.recoveries());
+		assertTrue(group.lastRecoveryTime() > 0);
+		assertEquals(group.lastRecoveryTime(), group.totalRecoveryTime());
+
+		// fix launched a place to refill the pool, which joins it once
+		// connected and warmed up
+		assertEquals(Arrays.asList(place(3)), group.spares());
+		await(() -> places().size() == 4);
+		group.refill();
+		final List<Place> spares = group.spares();
+		assertEquals(2, spares.size());
+		assertEquals(place(3), spares.get(0));
+		final Place launched = spares.get(1);
+		assertTrue(launched.id > 3);
+		assertTrue(at(launched, () -> warm));
+		assertFalse(group.contains(launched));
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ *  This file is part of the X10 project (http://x10-lang.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  (C) Copyright IBM Corporation 2006-2016.
+ */
+
+package apgas.util;
+
+import static apgas.Constructs.at;
+import static apgas.Constructs.place;
+import static apgas.Constructs.places;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import apgas.Configuration;
+import apgas.GlobalRuntime;
+import apgas.Place;
+
+/**
+ * Tests of {@link ResilientPlaceGroup} with four places, two of them in the
+ * group and two in the spare pool.
+ */
+@SuppressWarnings("javadoc")
+public class ResilientPlaceGroupTest {
+
+	/** Set by the warm-up job at the place running it */
+	static volatile boolean warm;
+
+	static ResilientPlaceGroup group;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		System.setProperty(Configuration.APGAS_PLACES, "4");
+		GlobalRuntime.getRuntime();
+		group = new ResilientPlaceGroup(2, 2, () -> warm = true);
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		GlobalRuntime.getRuntime().shutdown();
+	}
+
+	@Test
+	public void testMembers() {
+		assertEquals(2, group.size());
+		final List<Place> list = group.asList();
+		assertEquals(2, list.size());
+		for (int i = 0; i < list.size(); i++) {
+			assertEquals(place(i), list.get(i));
+			assertEquals(list.get(i), group.get(i));
+		}
+	}
+
+	@Test
+	public void testIndexOf() {
+		final List<Place> list = group.asList();
+		for (final Place p : places()) {
+			assertEquals(list.indexOf(p), group.indexOf(p));
+			assertEquals(list.contains(p), group.contains(p));
+		}
+		assertEquals(-1, group.indexOf(new Place(places().size() + 10)));
+		assertFalse(group.contains(new Place(places().size() + 10)));
+	}
+
+	@Test
+	public void testSpares() {
+		final List<Place> expected = new ArrayList<>();
+		for (final Place p : places()) {
+			if (!group.contains(p)) {
+				expected.add(p);
+			}
+		}
+		assertEquals(2, expected.size());
+		assertEquals(expected, group.spares());
+	}
+
+	@Test
+	public void testWarmup() {
+		for (final Place p : group.spares()) {
+			assertTrue(at(p, () -> warm));
+		}
+		for (final Place p : group.asList()) {
+			assertFalse(at(p, () -> warm));
+		}
+	}
+
+	@Test
+	public void testNoRecovery() {
+		group.fix();
+		assertEquals(0, group.recoveries());
+		assertEquals(0, group.lastRecoveryTime());
+		assertEquals(2, group.spares().size());
+	}
+}
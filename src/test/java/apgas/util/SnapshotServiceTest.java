@@ -0,0 +1,191 @@
+/*
+ *  This file is part of the X10 project (http://x10-lang.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  (C) Copyright IBM Corporation 2006-2016.
+ */
+
+package apgas.util;
+
+import static apgas.Constructs.asyncAtAll;
+import static apgas.Constructs.at;
+import static apgas.Constructs.finish;
+import static apgas.Constructs.here;
+import static apgas.Constructs.place;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import apgas.Configuration;
+import apgas.GlobalRuntime;
+import apgas.Place;
+import apgas.util.SnapshotService.Update;
+
+/**
+ * Tests of {@link SnapshotService}.
+ */
+@SuppressWarnings("javadoc")
+public class SnapshotServiceTest {
+
+	static class Counter extends PlaceLocalObject implements Snapshottable {
+		private static final long serialVersionUID = -4350524934417232398L;
+
+		long[] values = new long[3 * SnapshotService.BLOCK + 10];
+
+		@Override
+		public Serializable snapshot() {
+			return values;
+		}
+
+		@Override
+		public void restore(Serializable state) {
+			values = ((long[]) state).clone();
+		}
+	}
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		System.setProperty(Configuration.APGAS_PLACES, "4");
+		GlobalRuntime.getRuntime();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		GlobalRuntime.getRuntime().shutdown();
+	}
+
+	@Test
+	public void testFullUpdate() {
+		final long[] state = { 1, 2, 3 };
+		Update update = Update.diff(null, state);
+		assertNull(update.blocks);
+		assertNotSame(state, update.data);
+		assertArrayEquals(state, (long[]) update.data);
+
+		update = Update.diff(new long[2], state);
+		assertNull(update.blocks);
+		assertArrayEquals(state, (long[]) update.data);
+
+		update = Update.diff(new int[3], state);
+		assertNull(update.blocks);
+
+		final Serializable other = "state";
+		update = Update.diff(null, other);
+		assertNull(update.blocks);
+		assertEquals(other, update.data);
+	}
+
+	@Test
+	public void testLongUpdate() {
+		final int n = 3 * SnapshotService.BLOCK + 10;
+		final long[] shadow = new long[n];
+		for (int i = 0; i < n; i++) {
+			shadow[i] = i;
+		}
+		final long[] state = shadow.clone();
+		state[SnapshotService.BLOCK] = -1;
+		state[n - 1] = -1;
+
+		final Update update = Update.diff(shadow, state);
+		assertArrayEquals(new int[] { 1, 3 }, update.blocks);
+		assertEquals(SnapshotService.BLOCK + 10, ((long[]) update.data).length);
+
+		final long[] copy = shadow.clone();
+		final Update undo = Update.save(copy, update.blocks);
+		update.applyTo(copy);
+		assertArrayEquals(state, copy);
+		undo.applyTo(copy);
+		assertArrayEquals(shadow, copy);
+
+		assertEquals(0, Update.diff(shadow, shadow.clone()).blocks.length);
+	}
+
+	@Test
+	public void testIntUpdate() {
+		final int[] shadow = new int[2 * SnapshotService.BLOCK];
+		final int[] state = shadow.clone();
+		state[0] = 1;
+		final Update update = Update.diff(shadow, state);
+		assertArrayEquals(new int[] { 0 }, update.blocks);
+		update.applyTo(shadow);
+		assertArrayEquals(state, shadow);
+	}
+
+	@Test
+	public void testFloatingPointUpdate() {
+		final double[] doubles = new double[SnapshotService.BLOCK + 1];
+		final double[] nextDoubles = doubles.clone();
+		nextDoubles[SnapshotService.BLOCK] = -0.0;
+		Update update = Update.diff(doubles, nextDoubles);
+		assertArrayEquals(new int[] { 1 }, update.blocks);
+		update.applyTo(doubles);
+		assertEquals(Double.doubleToRawLongBits(-0.0),
+				Double.doubleToRawLongBits(doubles[SnapshotService.BLOCK]));
+
+		final float[] floats = new float[] { Float.NaN };
+		final float[] nextFloats = new float[] { Float.intBitsToFloat(0x7fc00001) };
+		update = Update.diff(floats, nextFloats);
+		assertArrayEquals(new int[] { 0 }, update.blocks);
+		update.applyTo(floats);
+		assertEquals(0x7fc00001, Float.floatToRawIntBits(floats[0]));
+	}
+
+	@Test
+	public void testPrimitive() {
+		assertTrue(Update.primitive(new float[0]));
+		assertFalse(Update.primitive(new byte[0]));
+		assertFalse(Update.primitive(null));
+	}
+
+	@Test
+	public void testReplacedPlace() {
+		final ResilientPlaceGroup group = new ResilientPlaceGroup(2);
+		final Counter counter = PlaceLocalObject.make(group.asList(), () -> new Counter());
+		final SnapshotService service = new SnapshotService(group);
+		service.register(counter, () -> new Counter());
+		for (int i = 0; i < 2; i++) {
+			finish(() -> asyncAtAll(group.asList(), () -> counter.values[10] += here().id + 1));
+			service.checkpoint();
+		}
+
+		// replace place 1 with place 2 without killing place 1: place 2 has
+		// neither the object nor local checkpoint data
+		final Place replacement = place(2);
+		final GlobalID id = PlaceLocalObject.getId(counter);
+		assertTrue(at(replacement, () -> id.getHere() == null));
+		group.array[1] = replacement;
+
+		service.restore();
+		assertEquals(2, at(place(0), () -> counter.values[10]).longValue());
+		assertEquals(4, at(replacement, () -> counter.values[10]).longValue());
+
+		// the next checkpoint is full and later ones incremental
+		for (int i = 0; i < 2; i++) {
+			finish(() -> asyncAtAll(group.asList(), () -> counter.values[counter.values.length - 1]++));
+			service.checkpoint();
+		}
+		finish(() -> asyncAtAll(group.asList(), () -> Arrays.fill(counter.values, -1)));
+		service.restore();
+		for (final Place p : group.asList()) {
+			final long[] values = at(p, () -> counter.values);
+			assertEquals(2, values[values.length - 1]);
+			assertEquals(p.id == 0 ? 2 : 4, values[10]);
+			assertEquals(0, values[0]);
+		}
+		service.close();
+	}
+}